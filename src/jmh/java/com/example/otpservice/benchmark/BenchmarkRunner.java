@@ -0,0 +1,41 @@
+package com.example.otpservice.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the selected benchmarks once per thread count and writes the results of every run as JSON.
+ *
+ * Arguments are regular JMH command line options (benchmark regexps, {@code -f}, {@code -wi}, {@code -prof}, ...).
+ * Thread counts are taken from {@code -Djmh.threads} (default {@code 1,4,16,32}); the results go to
+ * {@code <jmh.resultDir>/threads-<n>.json}, by default under {@code target/jmh}. The JSON files can be
+ * compared between commits, e.g. with https://jmh.morethan.io.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File resultDir = new File(System.getProperty("jmh.resultDir", "target/jmh"));
+        if (!resultDir.isDirectory() && !resultDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + resultDir);
+        }
+
+        for (String threads : System.getProperty("jmh.threads", "1,4,16,32").split(",")) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "threads-" + threads.trim() + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
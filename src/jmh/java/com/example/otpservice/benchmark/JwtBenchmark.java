@@ -0,0 +1,62 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.model.User;
+import com.example.otpservice.security.JwtKeyProvider;
+import com.example.otpservice.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Average time to issue a token with JwtUtil and to verify one with the shared parser of JwtKeyProvider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String SECRET = "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=";
+
+    private JwtKeyProvider keyProvider;
+    private JwtUtil jwtUtil;
+    private User user;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keyProvider = new JwtKeyProvider();
+        ReflectionTestUtils.setField(keyProvider, "secret", SECRET);
+        ReflectionTestUtils.invokeMethod(keyProvider, "init");
+        jwtUtil = new JwtUtil(keyProvider);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+
+        user = new User(7L, "alice", "alice@example.com", "hash", User.Role.USER);
+        token = jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return keyProvider.getParser()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.model.User;
+import com.example.otpservice.security.JwtFilter;
+import com.example.otpservice.security.JwtKeyProvider;
+import com.example.otpservice.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Average time per request spent in JwtFilter for a valid token.
+ *
+ * {@code perRequestParser} reproduces the former filter, which built a parser and derived the key from
+ * the String secret on every request. {@code filter} runs the current JwtFilter; with {@code tokenCache=0}
+ * every request is verified by the shared parser, otherwise a repeated token is served from the cache of
+ * verified tokens. Run with {@code -prof gc} to compare allocations per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+    private static final String SECRET = "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=";
+
+    @Param({"0", "10000"})
+    public long tokenCache;
+
+    private JwtFilter jwtFilter;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JwtKeyProvider keyProvider = new JwtKeyProvider();
+        ReflectionTestUtils.setField(keyProvider, "secret", SECRET);
+        ReflectionTestUtils.invokeMethod(keyProvider, "init");
+        jwtFilter = new JwtFilter(keyProvider, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtFilter, "cacheMaxSize", tokenCache);
+        ReflectionTestUtils.invokeMethod(jwtFilter, "init");
+
+        JwtUtil jwtUtil = new JwtUtil(keyProvider);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+        token = jwtUtil.generateToken(new User(7L, "alice", "alice@example.com", "hash", User.Role.USER));
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Claims perRequestParser() {
+        return Jwts.parser()
+                .setSigningKey(SECRET)
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/otp/status");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        try {
+            jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.service.OtpConfigService;
+import com.example.otpservice.service.SecureRandomOtpCodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Throughput of OTP code generation.
+ *
+ * {@code sharedSecureRandom} reproduces the former OtpService: one SecureRandom shared by all threads,
+ * one {@code nextInt(10)} per digit and a new StringBuilder per code. {@code generator} uses
+ * SecureRandomOtpCodeGenerator with per-thread DRBGs; {@code prefetchSize > 0} serves codes from the
+ * background-filled buffer. Compare with {@code -Djmh.threads=32}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtpCodeGenerationBenchmark {
+
+    @Param({"6"})
+    public int codeLength;
+
+    @Param({"0", "4096"})
+    public int prefetchSize;
+
+    private final SecureRandom sharedRandom = new SecureRandom();
+    private SecureRandomOtpCodeGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OtpConfigService otpConfigService = mock(OtpConfigService.class);
+        when(otpConfigService.getConfig()).thenReturn(new OtpConfig(codeLength, 300, 1));
+        generator = new SecureRandomOtpCodeGenerator(otpConfigService);
+        ReflectionTestUtils.setField(generator, "alphabetValue", "0123456789");
+        ReflectionTestUtils.setField(generator, "prefetchSize", prefetchSize);
+        ReflectionTestUtils.invokeMethod(generator, "init");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(generator, "shutdown");
+    }
+
+    @Benchmark
+    public String sharedSecureRandom() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < codeLength; i++) {
+            sb.append(sharedRandom.nextInt(10));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String generator() {
+        return generator.generate(codeLength);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.security.OtpCodeHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of storing and checking OTP codes as HMACs.
+ *
+ * {@code hash} is paid once per generated code, {@code matches} once per validation. {@code threadLocalMac}
+ * checks with a per-thread {@code Mac} whose {@code doFinal} allocates the result, as a baseline for the buffer
+ * {@code OtpCodeHasher} reuses ({@code -prof gc}), and {@code plainEquals} is the former plain-text comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtpCodeHashingBenchmark {
+    private static final String KEY = "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=";
+    private static final String CODE = "482913";
+
+    private OtpCodeHasher otpCodeHasher;
+    private ThreadLocal<Mac> macs;
+    private byte[] storedHash;
+    private final String storedCode = new String(CODE.toCharArray());
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        otpCodeHasher = new OtpCodeHasher();
+        ReflectionTestUtils.setField(otpCodeHasher, "key", KEY);
+        ReflectionTestUtils.invokeMethod(otpCodeHasher, "init");
+        SecretKeySpec secretKey = new SecretKeySpec(Base64.getDecoder().decode(KEY), "HmacSHA256");
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        storedHash = otpCodeHasher.hash(CODE);
+    }
+
+    @Benchmark
+    public byte[] hash() {
+        return otpCodeHasher.hash(CODE);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return otpCodeHasher.matches(CODE, storedHash);
+    }
+
+    @Benchmark
+    public boolean threadLocalMac() {
+        return MessageDigest.isEqual(macs.get().doFinal(CODE.getBytes(StandardCharsets.UTF_8)), storedHash);
+    }
+
+    @Benchmark
+    public boolean plainEquals() {
+        return storedCode.equals(CODE);
+    }
+}
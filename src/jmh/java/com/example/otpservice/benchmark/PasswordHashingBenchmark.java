@@ -0,0 +1,78 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.model.User;
+import com.example.otpservice.service.LoginAttemptLimiter;
+import com.example.otpservice.service.PasswordHasher;
+import com.example.otpservice.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Logins per second through UserService.authenticateUser, which is dominated by the BCrypt check.
+ * The user is served by a repository stub, so the database is not part of the measurement.
+ * The BCrypt cost is a parameter; each step up doubles the time of one check ({@code -p cost=12}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordHashingBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10"})
+    private int cost;
+
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        User user = new User(7L, "alice", "alice@example.com", new BCryptPasswordEncoder(cost).encode(PASSWORD), User.Role.USER);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
+
+        PasswordHasher passwordHasher = new PasswordHasher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordHasher, "cost", cost);
+        ReflectionTestUtils.setField(passwordHasher, "concurrency", 1);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 32);
+        ReflectionTestUtils.setField(passwordHasher, "timeoutMs", 5000L);
+        ReflectionTestUtils.invokeMethod(passwordHasher, "init");
+        LoginAttemptLimiter loginAttemptLimiter = new LoginAttemptLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(loginAttemptLimiter, "maxFailures", 5);
+        ReflectionTestUtils.setField(loginAttemptLimiter, "blockSeconds", 900L);
+        ReflectionTestUtils.setField(loginAttemptLimiter, "trackedEmails", 1000L);
+        ReflectionTestUtils.invokeMethod(loginAttemptLimiter, "init");
+
+        userService = new UserService(userRepository, passwordHasher, loginAttemptLimiter, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userService, "cacheMaxSize", 10_000L);
+        ReflectionTestUtils.setField(userService, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.invokeMethod(userService, "init");
+    }
+
+    @Benchmark
+    public User authenticateUser() {
+        return userService.authenticateUser("alice@example.com", PASSWORD);
+    }
+}
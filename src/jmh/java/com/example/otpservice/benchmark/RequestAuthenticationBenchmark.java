@@ -0,0 +1,151 @@
+package com.example.otpservice.benchmark;
+
+import com.example.otpservice.controller.OtpController;
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.dto.OtpStatusResponse;
+import com.example.otpservice.model.User;
+import com.example.otpservice.security.JwtFilter;
+import com.example.otpservice.security.JwtKeyProvider;
+import com.example.otpservice.security.JwtUtil;
+import com.example.otpservice.security.OtpCodeHasher;
+import com.example.otpservice.service.DeliveryRoutingService;
+import com.example.otpservice.service.LoginAttemptLimiter;
+import com.example.otpservice.service.OtpAttemptTracker;
+import com.example.otpservice.service.OtpCodeGenerator;
+import com.example.otpservice.service.OtpConfigService;
+import com.example.otpservice.service.OtpDeliveryDispatcher;
+import com.example.otpservice.service.OtpOutboxService;
+import com.example.otpservice.service.OtpService;
+import com.example.otpservice.service.PasswordHasher;
+import com.example.otpservice.service.UserService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Requests per second of an authenticated {@code GET /otp/status}: JwtFilter followed by OtpController.
+ *
+ * {@code emailOnlyToken} uses a token as issued before the {@code uid} claim, for which the controller
+ * resolves the user id by email; {@code userIdToken} uses a current token. The users table is simulated
+ * with a fixed round trip of {@code dbRoundTripMicros}, and {@code userCache=false} disables the identity
+ * cache in UserService to show the cost of going to the database on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestAuthenticationBenchmark {
+    private static final String SECRET = "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=";
+
+    @Param({"200"})
+    public long dbRoundTripMicros;
+
+    @Param({"false", "true"})
+    public boolean userCache;
+
+    private JwtFilter jwtFilter;
+    private OtpController otpController;
+    private String emailOnlyToken;
+    private String userIdToken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        User user = new User(7L, "alice", "alice@example.com", "hash", User.Role.USER);
+        user.setPhoneNumber("79990000007");
+
+        UserRepository userRepository = mock(UserRepository.class);
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(dbRoundTripMicros);
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(roundTripNanos);
+            return Optional.of(user);
+        });
+        when(userRepository.findById(anyLong())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(roundTripNanos);
+            return Optional.of(user);
+        });
+        UserService userService = new UserService(userRepository, mock(PasswordHasher.class), mock(LoginAttemptLimiter.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userService, "cacheMaxSize", userCache ? 10_000L : 0L);
+        ReflectionTestUtils.setField(userService, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.invokeMethod(userService, "init");
+
+        OtpCodeRepository otpCodeRepository = mock(OtpCodeRepository.class);
+        when(otpCodeRepository.findLatest(any(), any())).thenReturn(Optional.empty());
+        OtpService otpService = new OtpService(otpCodeRepository, mock(OtpDeliveryDispatcher.class), userService,
+                mock(OtpCodeGenerator.class), mock(OtpConfigService.class), mock(DeliveryRoutingService.class),
+                mock(OtpOutboxService.class), mock(OtpAttemptTracker.class), mock(OtpCodeHasher.class));
+        otpController = new OtpController(otpService, userService);
+
+        JwtKeyProvider keyProvider = new JwtKeyProvider();
+        ReflectionTestUtils.setField(keyProvider, "secret", SECRET);
+        ReflectionTestUtils.invokeMethod(keyProvider, "init");
+        jwtFilter = new JwtFilter(keyProvider, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtFilter, "cacheMaxSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(jwtFilter, "init");
+        JwtUtil jwtUtil = new JwtUtil(keyProvider);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+
+        userIdToken = jwtUtil.generateToken(user);
+        emailOnlyToken = Jwts.builder()
+                .setSubject(user.getEmail())
+                .claim("role", user.getRole().name())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+    }
+
+    @Benchmark
+    public ResponseEntity<OtpStatusResponse> emailOnlyToken() throws Exception {
+        return handle(emailOnlyToken);
+    }
+
+    @Benchmark
+    public ResponseEntity<OtpStatusResponse> userIdToken() throws Exception {
+        return handle(userIdToken);
+    }
+
+    private ResponseEntity<OtpStatusResponse> handle(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/otp/status");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        try {
+            jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return otpController.getStatus("op-1", SecurityContextHolder.getContext().getAuthentication());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.OtpCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to map a result set of otp_codes rows with the row mapper of OtpCodeRepositoryImpl.
+ *
+ * The rows come from an in-memory CachedRowSet, so only the mapping (column lookup by name, enum and
+ * timestamp conversion) is measured, without a database round trip. Each thread maps its own copy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OtpCodeRowMappingBenchmark {
+    private static final String[] COLUMNS = {
+            "id", "user_id", "code_hash", "operation_id", "status", "created_at", "expires_at", "delivery_status"};
+    private static final int[] TYPES = {
+            Types.BIGINT, Types.BIGINT, Types.VARBINARY, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR};
+
+    @Param({"1", "1000"})
+    public int rows;
+
+    private final OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(null, null);
+    private CachedRowSet resultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMNS.length);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            metaData.setColumnName(i + 1, COLUMNS[i]);
+            metaData.setColumnType(i + 1, TYPES[i]);
+        }
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiresAt = Timestamp.valueOf(LocalDateTime.now().plusMinutes(5));
+        for (int i = 0; i < rows; i++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateLong(1, i);
+            resultSet.updateLong(2, i % 100);
+            resultSet.updateBytes(3, new byte[32]);
+            resultSet.updateString(4, "op-" + i);
+            resultSet.updateString(5, "ACTIVE");
+            resultSet.updateTimestamp(6, createdAt);
+            resultSet.updateTimestamp(7, expiresAt);
+            resultSet.updateString(8, "SENT");
+            resultSet.insertRow();
+        }
+        resultSet.moveToCurrentRow();
+    }
+
+    @Benchmark
+    public List<OtpCode> mapRows() throws SQLException {
+        List<OtpCode> codes = new ArrayList<>(rows);
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            codes.add(repository.otpCodeMapper.mapRow(resultSet, rowNum++));
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.otpservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests processed at once when requests run on virtual threads.
+ *
+ * With platform threads the Tomcat pool caps the work in progress and further requests wait in the
+ * connection queue. With {@code spring.threads.virtual.enabled=true} every connection gets its own thread,
+ * so thousands of requests would queue for the few JDBC connections at once, each waiting once per query,
+ * until all of them time out together. Instead, at most {@code otp.threads.virtual.max-concurrent-requests}
+ * requests are processed and the rest wait for a slot in arrival order; a request that has not got one within
+ * {@code otp.threads.virtual.admission-timeout-ms} is answered with 503.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestConcurrencyLimitFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private Semaphore permits;
+    private Counter rejectedCounter;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${otp.threads.virtual.max-concurrent-requests:200}")
+    private int maxConcurrentRequests;
+
+    @Value("${otp.threads.virtual.admission-timeout-ms:10000}")
+    private long admissionTimeoutMs;
+
+    public RequestConcurrencyLimitFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!virtualThreads) {
+            return;
+        }
+        permits = new Semaphore(maxConcurrentRequests, true);
+        rejectedCounter = Counter.builder("otp.threads.virtual.rejected-requests")
+                .description("Requests answered with 503 because no processing slot became free in time")
+                .register(meterRegistry);
+        Gauge.builder("otp.threads.virtual.waiting-requests", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a processing slot")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return permits == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(admissionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            logger.warn("No processing slot for {} within {} ms, rejecting", request.getRequestURI(), admissionTimeoutMs);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is busy, try again later");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
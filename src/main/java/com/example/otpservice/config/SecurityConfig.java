@@ -17,6 +17,7 @@ public class SecurityConfig {
      * Configures the security filter chain.
      *
      * - /register is publicly accessible.
+     * - /admin/** and /actuator/** (metrics) require the ADMIN role.
      * - All other endpoints require authentication.
      * - CSRF is disabled (typical for stateless REST APIs).
      *
@@ -31,6 +32,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/register", "/login").permitAll() // Allow open access
                         .requestMatchers("/admin/**").hasAuthority("ADMIN")
+                        .requestMatchers("/actuator/**").hasAuthority("ADMIN")
                         .anyRequest().authenticated()             // Require auth for others
                 )
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class); // JWT before standard auth
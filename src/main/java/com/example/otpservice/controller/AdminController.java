@@ -1,18 +1,36 @@
 package com.example.otpservice.controller;
 
+import com.example.otpservice.dto.OtpBulkGenerateRequest;
+import com.example.otpservice.dto.OtpBulkGenerateResult;
 import com.example.otpservice.dto.OtpConfigRequest;
+import com.example.otpservice.dto.OtpPolicyRequest;
 import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.model.OtpPolicy;
 import com.example.otpservice.model.User;
 import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.service.OtpBulkService;
 import com.example.otpservice.service.OtpConfigService;
 import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -23,11 +41,20 @@ public class AdminController {
     private final OtpConfigService configService;
     private final UserRepository userRepository;
     private final OtpCodeRepository otpCodeRepository;
+    private final UserService userService;
+    private final OtpBulkService otpBulkService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader bulkRequestReader;
 
-    public AdminController(OtpConfigService configService, UserRepository userRepository, OtpCodeRepository otpCodeRepository) {
+    public AdminController(OtpConfigService configService, UserRepository userRepository, OtpCodeRepository otpCodeRepository,
+                           UserService userService, OtpBulkService otpBulkService, ObjectMapper objectMapper) {
         this.configService = configService;
         this.userRepository = userRepository;
         this.otpCodeRepository = otpCodeRepository;
+        this.userService = userService;
+        this.otpBulkService = otpBulkService;
+        this.objectMapper = objectMapper;
+        this.bulkRequestReader = objectMapper.readerFor(OtpBulkGenerateRequest.class);
     }
 
     @GetMapping("/otp-config")
@@ -44,6 +71,84 @@ public class AdminController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/otp-policies")
+    public List<OtpPolicy> listPolicies() {
+        logger.info("[ADMIN] Requested OTP policies");
+        return configService.getPolicies();
+    }
+
+    @PostMapping("/otp-policies")
+    public ResponseEntity<OtpPolicy> createPolicy(@RequestBody @Valid OtpPolicyRequest request) {
+        logger.info("[ADMIN] Creating OTP policy for operationPrefix={}", request.getOperationPrefix());
+        OtpPolicy policy = request.toPolicy(null);
+        configService.createPolicy(policy);
+        return ResponseEntity.status(HttpStatus.CREATED).body(policy);
+    }
+
+    @PutMapping("/otp-policies/{id}")
+    public ResponseEntity<OtpPolicy> updatePolicy(@PathVariable Long id, @RequestBody @Valid OtpPolicyRequest request) {
+        logger.info("[ADMIN] Updating OTP policy id={} for operationPrefix={}", id, request.getOperationPrefix());
+        OtpPolicy policy = request.toPolicy(id);
+        if (!configService.updatePolicy(policy)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(policy);
+    }
+
+    @DeleteMapping("/otp-policies/{id}")
+    public ResponseEntity<Void> deletePolicy(@PathVariable Long id) {
+        logger.warn("[ADMIN] Deleting OTP policy id={}", id);
+        if (!configService.deletePolicy(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Generates codes for many users at once. The body is a JSON array or NDJSON of
+     * {@code {"userId": ..., "operationId": "..."}} objects and is read as it arrives; the result of every
+     * item is written back as one NDJSON line as soon as its chunk is saved. Malformed input ends the
+     * response with an INVALID line without userId; the items before it have been processed.
+     */
+    @PostMapping(value = "/otp/bulk-generate",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void bulkGenerate(InputStream body, HttpServletResponse response) throws IOException {
+        logger.info("[ADMIN] Bulk OTP generation started");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        try (MappingIterator<OtpBulkGenerateRequest> requests = bulkRequestReader.readValues(body)) {
+            int processed = otpBulkService.generate(requests, results -> writeLines(out, results));
+            logger.info("[ADMIN] Bulk OTP generation finished, {} requests processed", processed);
+        } catch (JsonProcessingException e) {
+            writeMalformedInput(out, e);
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors in a plain RuntimeException and mapping errors in RuntimeJsonMappingException
+            if (!(e instanceof RuntimeJsonMappingException) && !(e.getCause() instanceof JsonProcessingException)) {
+                throw e;
+            }
+            writeMalformedInput(out, e);
+        }
+    }
+
+    private void writeMalformedInput(OutputStream out, Exception e) {
+        logger.warn("[ADMIN] Bulk OTP generation stopped on malformed input: {}", e.getMessage());
+        writeLines(out, List.of(new OtpBulkGenerateResult(null, null, OtpBulkGenerateResult.Status.INVALID,
+                "Malformed request body, the following items were not processed")));
+    }
+
+    private void writeLines(OutputStream out, List<OtpBulkGenerateResult> results) {
+        try {
+            for (OtpBulkGenerateResult result : results) {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @GetMapping("/users")
     public List<User> listNonAdmins() {
         logger.info("[ADMIN] Requested list of all non-admin users");
@@ -54,7 +159,7 @@ public class AdminController {
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
         logger.warn("[ADMIN] Deleting user with id={} and related OTP codes", id);
         otpCodeRepository.deleteByUserId(id);
-        userRepository.deleteById(id);
+        userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
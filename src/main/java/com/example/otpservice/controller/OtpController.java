@@ -1,7 +1,10 @@
 package com.example.otpservice.controller;
 
 import com.example.otpservice.dto.OtpGenerateRequest;
+import com.example.otpservice.dto.OtpStatusResponse;
 import com.example.otpservice.dto.OtpValidateRequest;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.security.AuthenticatedUser;
 import com.example.otpservice.service.OtpService;
 import com.example.otpservice.service.UserService;
 import jakarta.validation.Valid;
@@ -36,11 +39,11 @@ public class OtpController {
     @PostMapping("/generate")
     public ResponseEntity<Void> generateOtp(@RequestBody @Valid OtpGenerateRequest request,
                                             Authentication authentication) {
-        String email = authentication.getName();
-        Long userId = userService.getUserIdByEmail(email);
+        OtpRecipient recipient = resolveRecipient(authentication);
+        Long userId = recipient.getUserId();
         logger.info("Received OTP generation request for userId={} and operationId={}", userId, request.getOperationId());
 
-        otpService.generateOtp(userId, request.getOperationId());
+        otpService.generateOtp(recipient, request.getOperationId());
         logger.info("OTP code successfully processed for userId={} and operationId={}", userId, request.getOperationId());
 
         return ResponseEntity.status(201).build();
@@ -57,8 +60,7 @@ public class OtpController {
     public ResponseEntity<String> validateOtp(@RequestBody @Valid OtpValidateRequest request,
                                               Authentication authentication) {
 
-        String email = authentication.getName();
-        Long userId = userService.getUserIdByEmail(email);
+        Long userId = resolveRecipient(authentication).getUserId();
         logger.info("Received OTP validation request for userId={} and operationId={}", userId, request.getOperationId());
         boolean isValid = otpService.validateOtp(userId, request.getOperationId(), request.getCode());
         if (isValid) {
@@ -69,4 +71,33 @@ public class OtpController {
             return ResponseEntity.badRequest().body("Invalid or expired OTP code");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the status and delivery status of the latest OTP code for a specific operation.
+     *
+     * @param operationId     the operation ID
+     * @param authentication  the authenticated user information
+     * @return 200 OK with the code status, 404 Not Found if no code was generated
+     */
+    @GetMapping("/status")
+    public ResponseEntity<OtpStatusResponse> getStatus(@RequestParam String operationId,
+                                                       Authentication authentication) {
+        Long userId = resolveRecipient(authentication).getUserId();
+        logger.info("Received OTP status request for userId={} and operationId={}", userId, operationId);
+        return otpService.findLatestCode(userId, operationId)
+                .map(otp -> ResponseEntity.ok(new OtpStatusResponse(operationId, otp.getStatus(), otp.getDeliveryStatus())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Builds the recipient from the token claims published by JwtFilter. Only tokens issued
+     * before the user id was added to the claims need a lookup.
+     */
+    private OtpRecipient resolveRecipient(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.getUserId() != null) {
+            return new OtpRecipient(user.getUserId(), user.getEmail(), user.getPhoneNumber());
+        }
+        String email = authentication.getName();
+        return new OtpRecipient(userService.getUserIdByEmail(email), email, null);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.otpservice.controller;
+
+import com.example.otpservice.dto.DeliveryChannelsRequest;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.security.AuthenticatedUser;
+import com.example.otpservice.service.DeliveryRoutingService;
+import com.example.otpservice.service.UserService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for the settings of the authenticated user.
+ */
+@RestController
+@RequestMapping("/me")
+public class ProfileController {
+    private static final Logger logger = LoggerFactory.getLogger(ProfileController.class);
+    private final DeliveryRoutingService deliveryRoutingService;
+    private final UserService userService;
+
+    public ProfileController(DeliveryRoutingService deliveryRoutingService, UserService userService) {
+        this.deliveryRoutingService = deliveryRoutingService;
+        this.userService = userService;
+    }
+
+    /**
+     * Returns the channels through which the user receives OTP codes.
+     */
+    @GetMapping("/delivery-channels")
+    public DeliveryRoute getDeliveryChannels(Authentication authentication) {
+        return deliveryRoutingService.getRoute(resolveUserId(authentication));
+    }
+
+    /**
+     * Sets the channels through which the user receives OTP codes, in the order they are tried.
+     *
+     * @return 200 OK with the stored channels
+     */
+    @PutMapping("/delivery-channels")
+    public ResponseEntity<DeliveryRoute> updateDeliveryChannels(@RequestBody @Valid DeliveryChannelsRequest request,
+                                                                Authentication authentication) {
+        Long userId = resolveUserId(authentication);
+        logger.info("Updating delivery channels for userId={}: {}, fanOut={}", userId, request.getChannels(), request.isFanOut());
+        DeliveryRoute route = request.toRoute();
+        deliveryRoutingService.updateRoute(userId, route);
+        return ResponseEntity.ok(route);
+    }
+
+    /**
+     * Returns the user to the default channels.
+     *
+     * @return 204 No Content
+     */
+    @DeleteMapping("/delivery-channels")
+    public ResponseEntity<Void> resetDeliveryChannels(Authentication authentication) {
+        Long userId = resolveUserId(authentication);
+        logger.info("Resetting delivery channels for userId={}", userId);
+        deliveryRoutingService.resetRoute(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private Long resolveUserId(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.getUserId() != null) {
+            return user.getUserId();
+        }
+        return userService.getUserIdByEmail(authentication.getName());
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.otpservice.dao;
+
+/**
+ * DAO interface for cluster-wide locks based on PostgreSQL advisory locks.
+ */
+public interface AdvisoryLockRepository {
+    /**
+     * Runs the task while holding the advisory lock with the given key.
+     * Does not wait: if another session already holds the lock, the task is not run.
+     *
+     * @param key  lock key shared by all instances running the same job
+     * @param task the work to do under the lock
+     * @return true if the lock was acquired and the task was run
+     */
+    boolean runWithLock(long key, Runnable task);
+}
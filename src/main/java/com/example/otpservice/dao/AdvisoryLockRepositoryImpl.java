@@ -0,0 +1,48 @@
+package com.example.otpservice.dao;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Implementation of the AdvisoryLockRepository interface using session-level advisory locks.
+ * The lock is taken and released on one connection, which is kept for the duration of the task.
+ */
+@Repository
+public class AdvisoryLockRepositoryImpl implements AdvisoryLockRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public AdvisoryLockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean runWithLock(long key, Runnable task) {
+        Boolean acquired = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!call(connection, "SELECT pg_try_advisory_lock(?)", key)) {
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                call(connection, "SELECT pg_advisory_unlock(?)", key);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    private static boolean call(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryRoute;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * DAO interface for the delivery channels chosen by users.
+ */
+public interface DeliveryPreferenceRepository {
+
+    /**
+     * Returns the route the user has chosen, or empty if the user relies on the default.
+     */
+    Optional<DeliveryRoute> findByUserId(Long userId);
+
+    /**
+     * Returns the routes chosen by the given users; users relying on the default are left out.
+     */
+    Map<Long, DeliveryRoute> findByUserIds(Collection<Long> userIds);
+
+    /**
+     * Stores the route, replacing the one chosen before.
+     */
+    void save(Long userId, DeliveryRoute route);
+
+    void deleteByUserId(Long userId);
+}
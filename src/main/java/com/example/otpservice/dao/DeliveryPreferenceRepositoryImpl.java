@@ -0,0 +1,52 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryRoute;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class DeliveryPreferenceRepositoryImpl implements DeliveryPreferenceRepository {
+    private final JdbcTemplate jdbc;
+
+    private final RowMapper<DeliveryRoute> routeMapper = (rs, rowNum) ->
+            DeliveryRoute.parse(rs.getString("channels"), rs.getBoolean("fan_out"));
+
+    public DeliveryPreferenceRepositoryImpl(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public Optional<DeliveryRoute> findByUserId(Long userId) {
+        return jdbc.query("SELECT channels, fan_out FROM user_delivery_preferences WHERE user_id = ?", routeMapper, userId)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public Map<Long, DeliveryRoute> findByUserIds(Collection<Long> userIds) {
+        Map<Long, DeliveryRoute> routes = new HashMap<>();
+        jdbc.query("SELECT user_id, channels, fan_out FROM user_delivery_preferences WHERE user_id = ANY(?)",
+                rs -> {
+                    routes.put(rs.getLong("user_id"), routeMapper.mapRow(rs, 0));
+                }, (Object) userIds.toArray(new Long[0]));
+        return routes;
+    }
+
+    @Override
+    public void save(Long userId, DeliveryRoute route) {
+        jdbc.update("INSERT INTO user_delivery_preferences (user_id, channels, fan_out) VALUES (?, ?, ?) "
+                        + "ON CONFLICT (user_id) DO UPDATE SET channels = EXCLUDED.channels, fan_out = EXCLUDED.fan_out",
+                userId, route.format(), route.isFanOut());
+    }
+
+    @Override
+    public void deleteByUserId(Long userId) {
+        jdbc.update("DELETE FROM user_delivery_preferences WHERE user_id = ?", userId);
+    }
+}
@@ -0,0 +1,427 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.security.OtpCodeHasher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OtpCodeRepository that keeps ACTIVE codes in memory and writes changes to PostgreSQL in batches.
+ *
+ * Enabled with {@code otp.store.mode=memory}. Lookups of active codes are answered from a
+ * concurrent index keyed by (userId, operationId); inserts and status changes are queued and
+ * flushed to {@code otp_codes} by a background task every {@code otp.store.flush-interval-ms}, each
+ * batch in one transaction, so a batch that fails is retried whole without replaying committed writes.
+ * Ids are reserved from the table sequence in blocks, so a code has its final id before it is written.
+ * Like in the table, only the HMAC of a code is kept; the index holds copies without the plain value.
+ *
+ * Crash semantics:
+ * <ul>
+ *     <li>On startup the index is rebuilt from ACTIVE, not yet expired rows of {@code otp_codes}.</li>
+ *     <li>On graceful shutdown all queued writes are flushed.</li>
+ *     <li>On a crash, writes queued since the last flush are lost: a generated code that was not yet
+ *     inserted cannot be validated after restart and has to be requested again, and delivery statuses
+ *     may stay PENDING.</li>
+ *     <li>Transitions to USED are written through synchronously (unless
+ *     {@code otp.store.write-through-consume=false}), so a consumed code never becomes valid again after a crash.</li>
+ * </ul>
+ * The index is local to the node, so this mode is meant for a single instance or for deployments that
+ * route all requests of a user to the same instance.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(name = "otp.store.mode", havingValue = "memory")
+public class InMemoryOtpCodeRepository implements OtpCodeRepository {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryOtpCodeRepository.class);
+
+    private final OtpCodeRepositoryImpl jdbcRepository;
+    private final OtpCodeHasher otpCodeHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<ActiveKey, OtpCode> activeCodes = new ConcurrentHashMap<>();
+    private final Map<Long, ActiveKey> keysById = new ConcurrentHashMap<>();
+    private final LinkedBlockingDeque<PendingWrite> pendingWrites = new LinkedBlockingDeque<>();
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock idLock = new ReentrantLock();
+    private ScheduledExecutorService flusher;
+
+    @Value("${otp.store.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    @Value("${otp.store.batch-size:500}")
+    private int batchSize;
+
+    @Value("${otp.store.max-pending:100000}")
+    private int maxPending;
+
+    @Value("${otp.store.id-block-size:100}")
+    private int idBlockSize;
+
+    @Value("${otp.store.write-through-consume:true}")
+    private boolean writeThroughConsume;
+
+    public InMemoryOtpCodeRepository(OtpCodeRepositoryImpl jdbcRepository, OtpCodeHasher otpCodeHasher,
+                                     PlatformTransactionManager transactionManager) {
+        this.jdbcRepository = jdbcRepository;
+        this.otpCodeHasher = otpCodeHasher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Rebuilds the index from the database and starts the write-behind task.
+     */
+    @PostConstruct
+    void init() {
+        LocalDateTime now = LocalDateTime.now();
+        for (OtpCode otpCode : jdbcRepository.findAllActive()) {
+            if (otpCode.getExpiresAt().isAfter(now)) {
+                index(otpCode);
+            }
+        }
+        logger.info("Loaded {} active OTP codes into memory", activeCodes.size());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("otp-store-flush-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("OTP store flushed on shutdown");
+    }
+
+    @Override
+    public List<OtpCode> findAllActive() {
+        return new ArrayList<>(activeCodes.values());
+    }
+
+    @Override
+    public void save(OtpCode otpCode) {
+        if (otpCode.getId() == null) {
+            otpCode.setId(nextId());
+        }
+        if (otpCode.getDeliveryStatus() == null) {
+            otpCode.setDeliveryStatus(DeliveryStatus.PENDING);
+        }
+        if (otpCode.getCodeHash() == null) {
+            otpCode.setCodeHash(otpCodeHasher.hash(otpCode.getCode()));
+        }
+        if (otpCode.getStatus() == OtpStatus.ACTIVE) {
+            index(copy(otpCode));
+        }
+        enqueue(new PendingWrite(WriteType.INSERT, copy(otpCode)));
+    }
+
+    /**
+     * Ids are taken from the block reserved for this node, so they are usually assigned without a query.
+     */
+    @Override
+    public List<Long> nextIds(int count) {
+        idLock.lock();
+        try {
+            List<Long> ids = new ArrayList<>(count);
+            while (ids.size() < count) {
+                if (reservedIds.isEmpty()) {
+                    reservedIds.addAll(jdbcRepository.nextIds(Math.max(idBlockSize, count - ids.size())));
+                }
+                ids.add(reservedIds.poll());
+            }
+            return ids;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * Indexes and queues the codes like {@link #save(OtpCode)}; they are written by the next flush,
+     * not in the caller's transaction.
+     */
+    @Override
+    public void saveAll(List<OtpCode> otpCodes) {
+        for (OtpCode otpCode : otpCodes) {
+            save(otpCode);
+        }
+    }
+
+    @Override
+    public boolean existsByUserIdAndOperationId(Long userId, String operationId) {
+        return activeCodes.containsKey(new ActiveKey(userId, operationId));
+    }
+
+    @Override
+    public Map<Long, Set<String>> findActiveOperations(List<Long> userIds, List<String> operationIds) {
+        Map<Long, Set<String>> active = new HashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            if (activeCodes.containsKey(new ActiveKey(userIds.get(i), operationIds.get(i)))) {
+                active.computeIfAbsent(userIds.get(i), id -> new HashSet<>()).add(operationIds.get(i));
+            }
+        }
+        return active;
+    }
+
+    /**
+     * The code is removed from the index inside {@code computeIfPresent}, so of several concurrent
+     * validations only one finds it.
+     */
+    @Override
+    public Optional<OtpStatus> consumeActiveCode(Long userId, String operationId, String code, LocalDateTime now) {
+        OtpCode[] consumed = new OtpCode[1];
+        activeCodes.computeIfPresent(new ActiveKey(userId, operationId), (key, otpCode) -> {
+            if (!otpCodeHasher.matches(code, otpCode.getCodeHash())) {
+                return otpCode;
+            }
+            consumed[0] = otpCode;
+            return null;
+        });
+        if (consumed[0] == null) {
+            return Optional.empty();
+        }
+
+        OtpStatus status = consumed[0].getExpiresAt().isAfter(now) ? OtpStatus.USED : OtpStatus.EXPIRED;
+        consumed[0].setStatus(status);
+        updateStatus(consumed[0].getId(), consumed[0].getCreatedAt(), status);
+        return Optional.of(status);
+    }
+
+    @Override
+    public boolean expireActiveCode(Long userId, String operationId) {
+        OtpCode otpCode = activeCodes.remove(new ActiveKey(userId, operationId));
+        if (otpCode == null) {
+            return false;
+        }
+        otpCode.setStatus(OtpStatus.EXPIRED);
+        updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.EXPIRED);
+        return true;
+    }
+
+    /**
+     * Active codes are answered from memory; older codes are read from the database after
+     * flushing queued writes, so the result reflects every change made on this node.
+     */
+    @Override
+    public Optional<OtpCode> findLatest(Long userId, String operationId) {
+        OtpCode otpCode = activeCodes.get(new ActiveKey(userId, operationId));
+        if (otpCode != null) {
+            return Optional.of(copy(otpCode));
+        }
+        flush();
+        return jdbcRepository.findLatest(userId, operationId);
+    }
+
+    @Override
+    public void updateStatus(Long id, LocalDateTime createdAt, OtpStatus status) {
+        if (status != OtpStatus.ACTIVE) {
+            unindex(id);
+        }
+        if (status == OtpStatus.USED && writeThroughConsume) {
+            flush();
+            jdbcRepository.updateStatus(id, createdAt, status);
+            return;
+        }
+        OtpCode change = change(id, createdAt);
+        change.setStatus(status);
+        enqueue(new PendingWrite(WriteType.STATUS, change));
+    }
+
+    @Override
+    public void updateDeliveryStatus(Long id, LocalDateTime createdAt, DeliveryStatus deliveryStatus) {
+        ActiveKey key = keysById.get(id);
+        OtpCode otpCode = key != null ? activeCodes.get(key) : null;
+        if (otpCode != null) {
+            otpCode.setDeliveryStatus(deliveryStatus);
+        }
+        OtpCode change = change(id, createdAt);
+        change.setDeliveryStatus(deliveryStatus);
+        enqueue(new PendingWrite(WriteType.DELIVERY_STATUS, change));
+    }
+
+    @Override
+    public void deleteByUserId(Long userId) {
+        activeCodes.keySet().removeIf(key -> key.userId() == userId);
+        keysById.values().removeIf(key -> key.userId() == userId);
+        flush();
+        jdbcRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Every ACTIVE code is in the index, so expired ones are found in memory and their new status
+     * is queued like any other change.
+     */
+    @Override
+    public int expireBatch(LocalDateTime cutoff, int limit) {
+        int expired = 0;
+        for (OtpCode otpCode : activeCodes.values()) {
+            if (expired >= limit) {
+                break;
+            }
+            if (otpCode.getExpiresAt().isBefore(cutoff)
+                    && activeCodes.remove(new ActiveKey(otpCode.getUserId(), otpCode.getOperationId()), otpCode)) {
+                otpCode.setStatus(OtpStatus.EXPIRED);
+                updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.EXPIRED);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of writes waiting to be flushed.
+     */
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Writes all queued changes to the database, in the order they were made.
+     * Consecutive writes of the same type are sent as one JDBC batch.
+     */
+    public void flush() {
+        // A lock rather than synchronized: a virtual thread blocked in JDBC inside a monitor would pin its carrier
+        flushLock.lock();
+        try {
+            List<PendingWrite> drained = new ArrayList<>(batchSize);
+            while (pendingWrites.drainTo(drained, batchSize) > 0) {
+                try {
+                    // All JDBC batches of the drained writes commit or roll back together, so none is replayed
+                    transactionTemplate.executeWithoutResult(status -> writeBatch(drained));
+                } catch (RuntimeException e) {
+                    // Put the batch back in front so that ordering is kept, and retry on the next flush
+                    for (int i = drained.size() - 1; i >= 0; i--) {
+                        pendingWrites.addFirst(drained.get(i));
+                    }
+                    throw e;
+                }
+                drained.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush OTP store, {} writes pending: {}", pendingWrites.size(), e.getMessage(), e);
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> writes) {
+        int start = 0;
+        while (start < writes.size()) {
+            WriteType type = writes.get(start).type();
+            int end = start;
+            while (end < writes.size() && writes.get(end).type() == type) {
+                end++;
+            }
+            List<OtpCode> run = writes.subList(start, end).stream().map(PendingWrite::otpCode).toList();
+            switch (type) {
+                case INSERT -> jdbcRepository.saveAll(run);
+                case STATUS -> jdbcRepository.updateStatuses(run);
+                case DELIVERY_STATUS -> jdbcRepository.updateDeliveryStatuses(run);
+            }
+            start = end;
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (pendingWrites.size() >= maxPending) {
+            // The database is not keeping up: flush in the caller's thread instead of growing the queue
+            flush();
+        }
+        pendingWrites.add(write);
+    }
+
+    private long nextId() {
+        // Not synchronized, for the same reason as flush()
+        idLock.lock();
+        try {
+            if (reservedIds.isEmpty()) {
+                reservedIds.addAll(jdbcRepository.nextIds(idBlockSize));
+            }
+            return reservedIds.poll();
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private void index(OtpCode otpCode) {
+        ActiveKey key = new ActiveKey(otpCode.getUserId(), otpCode.getOperationId());
+        activeCodes.put(key, otpCode);
+        keysById.put(otpCode.getId(), key);
+    }
+
+    private void unindex(Long id) {
+        ActiveKey key = keysById.remove(id);
+        if (key != null) {
+            activeCodes.computeIfPresent(key, (k, otpCode) -> otpCode.getId().equals(id) ? null : otpCode);
+        }
+    }
+
+    /**
+     * Returns a code holding only the primary key, on which a queued status change is set.
+     */
+    private static OtpCode change(Long id, LocalDateTime createdAt) {
+        OtpCode change = new OtpCode();
+        change.setId(id);
+        change.setCreatedAt(createdAt);
+        return change;
+    }
+
+    /**
+     * Copies a code without its plain value.
+     */
+    private static OtpCode copy(OtpCode otpCode) {
+        OtpCode copy = new OtpCode(otpCode.getId(), otpCode.getUserId(), null, otpCode.getOperationId(),
+                otpCode.getStatus(), otpCode.getCreatedAt(), otpCode.getExpiresAt());
+        copy.setCodeHash(otpCode.getCodeHash());
+        copy.setDeliveryStatus(otpCode.getDeliveryStatus());
+        return copy;
+    }
+
+    private record ActiveKey(long userId, String operationId) {
+    }
+
+    private enum WriteType {
+        INSERT,
+        STATUS,
+        DELIVERY_STATUS
+    }
+
+    private record PendingWrite(WriteType type, OtpCode otpCode) {
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.otpservice.dao;
 
+import com.example.otpservice.model.DeliveryStatus;
 import com.example.otpservice.model.OtpCode;
 import com.example.otpservice.model.OtpStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 
 /**
@@ -12,10 +16,74 @@ import java.util.Optional;
  */
 public interface OtpCodeRepository {
     List<OtpCode> findAllActive();
+
+    /**
+     * Persists a new OTP code and assigns the generated id to it.
+     */
     void save(OtpCode otpCode);
+
+    /**
+     * Reserves ids from the otp_codes sequence so that codes can be given an id before they are inserted.
+     *
+     * @param count number of ids to reserve
+     * @return reserved ids in ascending order
+     */
+    List<Long> nextIds(int count);
+
+    /**
+     * Inserts codes that already have an id.
+     *
+     * @param otpCodes codes to insert
+     */
+    void saveAll(List<OtpCode> otpCodes);
     boolean existsByUserIdAndOperationId(Long userId, String operationId);
 
-    Optional<OtpCode> findActiveCode(Long userId, String operationId, String code);
-    void updateStatus(Long id, OtpStatus status);
+    /**
+     * Looks up which of the given (userId, operationId) pairs already have an ACTIVE code.
+     *
+     * @param userIds      user ids of the pairs
+     * @param operationIds operation ids of the pairs, in the same order
+     * @return operation ids with an active code, keyed by user id
+     */
+    Map<Long, Set<String>> findActiveOperations(List<Long> userIds, List<String> operationIds);
+
+    /**
+     * Atomically consumes an ACTIVE code matching the user, operation and value.
+     * A code that has not expired by {@code now} is marked USED, an expired one is marked EXPIRED.
+     *
+     * @return the status the code was moved to, or empty if there was no matching ACTIVE code
+     */
+    Optional<OtpStatus> consumeActiveCode(Long userId, String operationId, String code, LocalDateTime now);
+
+    /**
+     * Marks the ACTIVE code of the user and operation as EXPIRED, e.g. after too many wrong attempts.
+     *
+     * @return true if there was an ACTIVE code
+     */
+    boolean expireActiveCode(Long userId, String operationId);
+
+    /**
+     * Returns the most recently created code for the user and operation, regardless of its status.
+     */
+    Optional<OtpCode> findLatest(Long userId, String operationId);
+
+    /**
+     * Sets the status of a code. {@code createdAt} is the partition key of otp_codes, so only the
+     * partition holding the code is touched.
+     */
+    void updateStatus(Long id, LocalDateTime createdAt, OtpStatus status);
+
+    /**
+     * Sets the delivery status of a code; {@code createdAt} is used as in {@link #updateStatus}.
+     */
+    void updateDeliveryStatus(Long id, LocalDateTime createdAt, DeliveryStatus deliveryStatus);
     void deleteByUserId(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * Marks up to {@code limit} ACTIVE codes that expired before {@code cutoff} as EXPIRED.
+     * Rows locked by a concurrent batch are skipped.
+     *
+     * @return number of codes expired
+     */
+    int expireBatch(LocalDateTime cutoff, int limit);
+}
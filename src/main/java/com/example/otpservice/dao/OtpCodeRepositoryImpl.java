@@ -1,16 +1,25 @@
 package com.example.otpservice.dao;
 
+import com.example.otpservice.model.DeliveryStatus;
 import com.example.otpservice.model.OtpCode;
 import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.security.OtpCodeHasher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Implementation of the OtpCodeRepository interface using JDBC for data access.
@@ -18,77 +27,204 @@ import java.util.Optional;
  */
 @Repository
 public class OtpCodeRepositoryImpl implements OtpCodeRepository {
+    // The indexes on otp_codes in schema.sql are designed for these statements (see OtpCodeQueryPlanTest)
+    static final String EXISTS_ACTIVE_SQL = "SELECT COUNT(*) FROM otp_codes WHERE user_id = ? AND operation_id = ? AND status = 'ACTIVE'";
+    static final String FIND_ACTIVE_HASHES_SQL = "SELECT id, created_at, code_hash FROM otp_codes "
+            + "WHERE user_id = ? AND operation_id = ? AND status = 'ACTIVE'";
+    // created_at is the partition key, so only the partition holding the code is touched
+    static final String CONSUME_ACTIVE_CODE_SQL = "UPDATE otp_codes SET status = CASE WHEN expires_at > ? THEN 'USED' ELSE 'EXPIRED' END "
+            + "WHERE id = ? AND created_at = ? AND status = 'ACTIVE' RETURNING status";
+    // Pairs are passed as two arrays of equal length, so the statement is the same for any number of them
+    static final String FIND_ACTIVE_OPERATIONS_SQL = "SELECT user_id, operation_id FROM otp_codes "
+            + "WHERE status = 'ACTIVE' AND (user_id, operation_id) IN (SELECT * FROM unnest(?::bigint[], ?::varchar[]))";
+    static final String EXPIRE_ACTIVE_CODE_SQL = "UPDATE otp_codes SET status = 'EXPIRED' "
+            + "WHERE user_id = ? AND operation_id = ? AND status = 'ACTIVE'";
+    static final String FIND_LATEST_SQL = "SELECT * FROM otp_codes WHERE user_id = ? AND operation_id = ? ORDER BY created_at DESC LIMIT 1";
+    // As in CONSUME_ACTIVE_CODE_SQL, created_at restricts the update to one partition
+    static final String UPDATE_STATUS_SQL = "UPDATE otp_codes SET status = ? WHERE id = ? AND created_at = ?";
+    static final String UPDATE_DELIVERY_STATUS_SQL = "UPDATE otp_codes SET delivery_status = ? WHERE id = ? AND created_at = ?";
+    static final String FIND_ALL_ACTIVE_SQL = "SELECT * FROM otp_codes WHERE status = 'ACTIVE'";
+    // ANY(ARRAY(...)) makes the outer UPDATE look rows up by primary key; with IN (...) the planner hash-joins against a full scan
+    static final String EXPIRE_BATCH_SQL = "UPDATE otp_codes SET status = 'EXPIRED' WHERE id = ANY(ARRAY("
+            + "SELECT id FROM otp_codes WHERE status = 'ACTIVE' AND expires_at < ? LIMIT ? FOR UPDATE SKIP LOCKED))";
+    static final String DELETE_BY_USER_ID_SQL = "DELETE FROM otp_codes WHERE user_id = ?";
+
     private final JdbcTemplate jdbcTemplate;
+    private final OtpCodeHasher otpCodeHasher;
 
-    public OtpCodeRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    public OtpCodeRepositoryImpl(JdbcTemplate jdbcTemplate, OtpCodeHasher otpCodeHasher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.otpCodeHasher = otpCodeHasher;
     }
 
+    final RowMapper<OtpCode> otpCodeMapper = (rs, rowNum) -> {
+        OtpCode otpCode = new OtpCode();
+        otpCode.setId(rs.getLong("id"));
+        otpCode.setUserId(rs.getLong("user_id"));
+        otpCode.setCodeHash(rs.getBytes("code_hash"));
+        otpCode.setOperationId(rs.getString("operation_id"));
+        otpCode.setStatus(OtpStatus.valueOf(rs.getString("status")));
+        otpCode.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        otpCode.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
+        otpCode.setDeliveryStatus(DeliveryStatus.valueOf(rs.getString("delivery_status")));
+        return otpCode;
+    };
+
     @Override
     public void save(OtpCode otpCode) {
-        String sql = "INSERT INTO otp_codes (user_id, code, operation_id, status, created_at, expires_at) VALUES (?, ?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql,
-                otpCode.getUserId(),
-                otpCode.getCode(),
-                otpCode.getOperationId(),
-                otpCode.getStatus().name(),
-                otpCode.getCreatedAt(),
-                otpCode.getExpiresAt()
-        );
+        String sql = "INSERT INTO otp_codes (user_id, code_hash, operation_id, status, created_at, expires_at, delivery_status) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        DeliveryStatus deliveryStatus = otpCode.getDeliveryStatus() != null ? otpCode.getDeliveryStatus() : DeliveryStatus.PENDING;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, new String[]{"id"});
+            ps.setLong(1, otpCode.getUserId());
+            ps.setBytes(2, codeHash(otpCode));
+            ps.setString(3, otpCode.getOperationId());
+            ps.setString(4, otpCode.getStatus().name());
+            ps.setTimestamp(5, Timestamp.valueOf(otpCode.getCreatedAt()));
+            ps.setTimestamp(6, Timestamp.valueOf(otpCode.getExpiresAt()));
+            ps.setString(7, deliveryStatus.name());
+            return ps;
+        }, keyHolder);
+
+        Number id = keyHolder.getKey();
+        if (id != null) {
+            otpCode.setId(id.longValue());
+        }
+        otpCode.setDeliveryStatus(deliveryStatus);
+    }
+
+    @Override
+    public List<Long> nextIds(int count) {
+        return jdbcTemplate.queryForList("SELECT nextval('otp_codes_id_seq') FROM generate_series(1, ?)", Long.class, count);
+    }
+
+    /**
+     * Inserts the codes in a single JDBC batch.
+     */
+    @Override
+    public void saveAll(List<OtpCode> otpCodes) {
+        String sql = "INSERT INTO otp_codes (id, user_id, code_hash, operation_id, status, created_at, expires_at, delivery_status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.batchUpdate(sql, otpCodes, otpCodes.size(), (ps, otpCode) -> {
+            ps.setLong(1, otpCode.getId());
+            ps.setLong(2, otpCode.getUserId());
+            ps.setBytes(3, codeHash(otpCode));
+            ps.setString(4, otpCode.getOperationId());
+            ps.setString(5, otpCode.getStatus().name());
+            ps.setTimestamp(6, Timestamp.valueOf(otpCode.getCreatedAt()));
+            ps.setTimestamp(7, Timestamp.valueOf(otpCode.getExpiresAt()));
+            ps.setString(8, otpCode.getDeliveryStatus().name());
+        });
+    }
+
+    /**
+     * Updates the status of several codes in a single JDBC batch, in list order.
+     *
+     * @param otpCodes codes with the id, creation time and new status set
+     */
+    public void updateStatuses(List<OtpCode> otpCodes) {
+        jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, otpCodes, otpCodes.size(), (ps, otpCode) -> {
+            ps.setString(1, otpCode.getStatus().name());
+            ps.setLong(2, otpCode.getId());
+            ps.setTimestamp(3, Timestamp.valueOf(otpCode.getCreatedAt()));
+        });
+    }
+
+    /**
+     * Updates the delivery status of several codes in a single JDBC batch, in list order.
+     *
+     * @param otpCodes codes with the id, creation time and new delivery status set
+     */
+    public void updateDeliveryStatuses(List<OtpCode> otpCodes) {
+        jdbcTemplate.batchUpdate(UPDATE_DELIVERY_STATUS_SQL, otpCodes, otpCodes.size(), (ps, otpCode) -> {
+            ps.setString(1, otpCode.getDeliveryStatus().name());
+            ps.setLong(2, otpCode.getId());
+            ps.setTimestamp(3, Timestamp.valueOf(otpCode.getCreatedAt()));
+        });
     }
 
     @Override
     public boolean existsByUserIdAndOperationId(Long userId, String operationId) {
-        String sql = "SELECT COUNT(*) FROM otp_codes WHERE user_id = ? AND operation_id = ? AND status = 'ACTIVE'";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, userId, operationId);
+        Integer count = jdbcTemplate.queryForObject(EXISTS_ACTIVE_SQL, Integer.class, userId, operationId);
         return count != null && count > 0;
     }
 
+    /**
+     * Looks up all pairs in one query.
+     */
+    @Override
+    public Map<Long, Set<String>> findActiveOperations(List<Long> userIds, List<String> operationIds) {
+        Map<Long, Set<String>> active = new HashMap<>();
+        jdbcTemplate.query(FIND_ACTIVE_OPERATIONS_SQL, rs -> {
+            active.computeIfAbsent(rs.getLong("user_id"), id -> new HashSet<>()).add(rs.getString("operation_id"));
+        }, userIds.toArray(new Long[0]), operationIds.toArray(new String[0]));
+        return active;
+    }
+
+    /**
+     * Reads the HMAC of the active code by user and operation and compares it in Java, so the code never
+     * reaches the database. A matching code is then consumed with an UPDATE ... RETURNING on its primary key
+     * that requires it to be still ACTIVE; the row lock taken by the UPDATE makes concurrent validations of
+     * the same code serialize, and only the first one still sees it ACTIVE.
+     */
     @Override
-    public Optional<OtpCode> findActiveCode(Long userId, String operationId, String code) {
-        String sql = "SELECT * FROM otp_codes WHERE user_id = ? AND operation_id = ? AND code = ? AND status = 'ACTIVE'";
-        var results = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            OtpCode otpCode = new OtpCode();
-            otpCode.setId(rs.getLong("id"));
-            otpCode.setUserId(rs.getLong("user_id"));
-            otpCode.setCode(rs.getString("code"));
-            otpCode.setOperationId(rs.getString("operation_id"));
-            otpCode.setStatus(OtpStatus.valueOf(rs.getString("status")));
-            otpCode.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-            otpCode.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
-            return otpCode;
-        }, userId, operationId, code);
-
-        if (results.isEmpty()) {
-            return Optional.empty();
+    public Optional<OtpStatus> consumeActiveCode(Long userId, String operationId, String code, LocalDateTime now) {
+        List<ActiveHash> candidates = jdbcTemplate.query(FIND_ACTIVE_HASHES_SQL,
+                (rs, rowNum) -> new ActiveHash(rs.getLong("id"), rs.getTimestamp("created_at"), rs.getBytes("code_hash")),
+                userId, operationId);
+        for (ActiveHash candidate : candidates) {
+            if (otpCodeHasher.matches(code, candidate.codeHash())) {
+                return jdbcTemplate.query(CONSUME_ACTIVE_CODE_SQL, (rs, rowNum) -> OtpStatus.valueOf(rs.getString("status")),
+                                Timestamp.valueOf(now), candidate.id(), candidate.createdAt())
+                        .stream().findFirst();
+            }
         }
-        return Optional.of(results.get(0));
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean expireActiveCode(Long userId, String operationId) {
+        return jdbcTemplate.update(EXPIRE_ACTIVE_CODE_SQL, userId, operationId) > 0;
+    }
+
+    @Override
+    public Optional<OtpCode> findLatest(Long userId, String operationId) {
+        return jdbcTemplate.query(FIND_LATEST_SQL, otpCodeMapper, userId, operationId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public void updateStatus(Long id, LocalDateTime createdAt, OtpStatus status) {
+        jdbcTemplate.update(UPDATE_STATUS_SQL, status.name(), id, Timestamp.valueOf(createdAt));
     }
 
     @Override
-    public void updateStatus(Long id, OtpStatus status) {
-        String sql = "UPDATE otp_codes SET status = ? WHERE id = ?";
-        jdbcTemplate.update(sql, status.name(), id);
+    public void updateDeliveryStatus(Long id, LocalDateTime createdAt, DeliveryStatus deliveryStatus) {
+        jdbcTemplate.update(UPDATE_DELIVERY_STATUS_SQL, deliveryStatus.name(), id, Timestamp.valueOf(createdAt));
     }
 
     @Override
     public List<OtpCode> findAllActive() {
-        String sql = "SELECT * FROM otp_codes WHERE status = 'ACTIVE'";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            OtpCode otpCode = new OtpCode();
-            otpCode.setId(rs.getLong("id"));
-            otpCode.setUserId(rs.getLong("user_id"));
-            otpCode.setCode(rs.getString("code"));
-            otpCode.setOperationId(rs.getString("operation_id"));
-            otpCode.setStatus(OtpStatus.valueOf(rs.getString("status")));
-            otpCode.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-            otpCode.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
-            return otpCode;
-        });
+        return jdbcTemplate.query(FIND_ALL_ACTIVE_SQL, otpCodeMapper);
     }
 
     @Override
     public void deleteByUserId(Long userId) {
-        jdbcTemplate.update("DELETE FROM otp_codes WHERE user_id = ?", userId);
+        jdbcTemplate.update(DELETE_BY_USER_ID_SQL, userId);
+    }
+
+    @Override
+    public int expireBatch(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.update(EXPIRE_BATCH_SQL, Timestamp.valueOf(cutoff), limit);
+    }
+
+    private byte[] codeHash(OtpCode otpCode) {
+        if (otpCode.getCodeHash() == null) {
+            otpCode.setCodeHash(otpCodeHasher.hash(otpCode.getCode()));
+        }
+        return otpCode.getCodeHash();
+    }
+
+    private record ActiveHash(long id, Timestamp createdAt, byte[] codeHash) {
     }
-}
\ No newline at end of file
+}
@@ -4,5 +4,16 @@ import com.example.otpservice.model.OtpConfig;
 
 public interface OtpConfigRepository {
     OtpConfig getConfig();
-    void updateConfig(OtpConfig config);
-}
\ No newline at end of file
+
+    /**
+     * Returns the version of the stored configuration, which grows with every update.
+     */
+    long getVersion();
+
+    /**
+     * Stores the code length and TTL and increments the version.
+     *
+     * @return the stored configuration with its new version
+     */
+    OtpConfig updateConfig(OtpConfig config);
+}
@@ -2,6 +2,7 @@ package com.example.otpservice.dao;
 
 import com.example.otpservice.model.OtpConfig;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -9,24 +10,30 @@ public class OtpConfigRepositoryImpl implements OtpConfigRepository {
 
     private final JdbcTemplate jdbc;
 
+    private final RowMapper<OtpConfig> configMapper = (rs, rowNum) -> new OtpConfig(
+            rs.getInt("code_length"),
+            rs.getInt("ttl_seconds"),
+            rs.getLong("version")
+    );
+
     public OtpConfigRepositoryImpl(JdbcTemplate jdbc) {
         this.jdbc = jdbc;
     }
 
     @Override
     public OtpConfig getConfig() {
-        return jdbc.queryForObject(
-                "SELECT code_length, ttl_seconds FROM otp_config LIMIT 1",
-                (rs, rowNum) -> new OtpConfig(
-                        rs.getInt("code_length"),
-                        rs.getInt("ttl_seconds")
-                )
-        );
+        return jdbc.queryForObject("SELECT code_length, ttl_seconds, version FROM otp_config LIMIT 1", configMapper);
+    }
+
+    @Override
+    public long getVersion() {
+        return jdbc.queryForObject("SELECT version FROM otp_config LIMIT 1", Long.class);
     }
 
     @Override
-    public void updateConfig(OtpConfig config) {
-        jdbc.update("UPDATE otp_config SET code_length = ?, ttl_seconds = ?",
-                config.getCodeLength(), config.getTtlSeconds());
+    public OtpConfig updateConfig(OtpConfig config) {
+        return jdbc.queryForObject(
+                "UPDATE otp_config SET code_length = ?, ttl_seconds = ?, version = version + 1 RETURNING code_length, ttl_seconds, version",
+                configMapper, config.getCodeLength(), config.getTtlSeconds());
     }
-}
\ No newline at end of file
+}
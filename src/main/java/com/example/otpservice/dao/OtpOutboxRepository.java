@@ -0,0 +1,54 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.OtpOutboxEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DAO interface for the OTP delivery outbox.
+ */
+public interface OtpOutboxRepository {
+
+    /**
+     * Inserts the entry and assigns the generated id to it. Joins the caller's transaction.
+     */
+    void save(OtpOutboxEntry entry);
+
+    /**
+     * Inserts the entries in a single JDBC batch without assigning their ids. Joins the caller's transaction.
+     */
+    void saveAll(List<OtpOutboxEntry> entries);
+
+    /**
+     * Claims up to {@code limit} PENDING entries due at {@code now}: their attempt counter is incremented
+     * and their next attempt is moved to {@code leaseUntil}, so no other node claims them while they are
+     * being delivered. Rows locked by a concurrent claim are skipped.
+     *
+     * @return the claimed entries, with the incremented attempt counter
+     */
+    List<OtpOutboxEntry> claimBatch(LocalDateTime now, LocalDateTime leaseUntil, int limit);
+
+    /**
+     * Removes a delivered entry.
+     */
+    void delete(Long id);
+
+    /**
+     * Schedules another attempt for the entry.
+     */
+    void reschedule(Long id, LocalDateTime nextAttemptAt, String error);
+
+    /**
+     * Marks the entry DEAD and erases the code value from it.
+     */
+    void deadLetter(Long id, String error);
+
+    /**
+     * Returns the number of PENDING and DEAD entries and the creation time of the oldest PENDING one.
+     */
+    Stats stats();
+
+    record Stats(long pending, long dead, LocalDateTime oldestPendingCreatedAt) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.OtpOutboxEntry;
+import com.example.otpservice.model.OtpRecipient;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public class OtpOutboxRepositoryImpl implements OtpOutboxRepository {
+    static final String INSERT_SQL = "INSERT INTO otp_delivery_outbox "
+            + "(otp_code_id, user_id, email, phone_number, code, channels, fan_out, created_at, expires_at, next_attempt_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Same shape as the otp_codes expiration batch: lock due rows, skipping those another node holds, then lease them
+    static final String CLAIM_BATCH_SQL = "UPDATE otp_delivery_outbox SET attempts = attempts + 1, next_attempt_at = ? "
+            + "WHERE id = ANY(ARRAY(SELECT id FROM otp_delivery_outbox WHERE status = 'PENDING' AND next_attempt_at <= ? "
+            + "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED)) RETURNING *";
+    static final String STATS_SQL = "SELECT COUNT(*) FILTER (WHERE status = 'PENDING') AS pending, "
+            + "COUNT(*) FILTER (WHERE status = 'DEAD') AS dead, "
+            + "MIN(created_at) FILTER (WHERE status = 'PENDING') AS oldest_pending FROM otp_delivery_outbox";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final RowMapper<OtpOutboxEntry> entryMapper = (rs, rowNum) -> {
+        OtpOutboxEntry entry = new OtpOutboxEntry();
+        entry.setId(rs.getLong("id"));
+        entry.setOtpCodeId(rs.getLong("otp_code_id"));
+        entry.setRecipient(new OtpRecipient(rs.getLong("user_id"), rs.getString("email"), rs.getString("phone_number")));
+        entry.setCode(rs.getString("code"));
+        entry.setRoute(DeliveryRoute.parse(rs.getString("channels"), rs.getBoolean("fan_out")));
+        entry.setAttempts(rs.getInt("attempts"));
+        entry.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        entry.setExpiresAt(rs.getTimestamp("expires_at").toLocalDateTime());
+        return entry;
+    };
+
+    public OtpOutboxRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void save(OtpOutboxEntry entry) {
+        OtpRecipient recipient = entry.getRecipient();
+        Long id = jdbcTemplate.queryForObject(INSERT_SQL + " RETURNING id", Long.class,
+                entry.getOtpCodeId(), recipient.getUserId(), recipient.getEmail(), recipient.getPhoneNumber(),
+                entry.getCode(), entry.getRoute().format(), entry.getRoute().isFanOut(),
+                Timestamp.valueOf(entry.getCreatedAt()), Timestamp.valueOf(entry.getExpiresAt()),
+                Timestamp.valueOf(entry.getCreatedAt()));
+        entry.setId(id);
+    }
+
+    @Override
+    public void saveAll(List<OtpOutboxEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            OtpRecipient recipient = entry.getRecipient();
+            ps.setLong(1, entry.getOtpCodeId());
+            ps.setLong(2, recipient.getUserId());
+            ps.setString(3, recipient.getEmail());
+            ps.setString(4, recipient.getPhoneNumber());
+            ps.setString(5, entry.getCode());
+            ps.setString(6, entry.getRoute().format());
+            ps.setBoolean(7, entry.getRoute().isFanOut());
+            ps.setTimestamp(8, Timestamp.valueOf(entry.getCreatedAt()));
+            ps.setTimestamp(9, Timestamp.valueOf(entry.getExpiresAt()));
+            ps.setTimestamp(10, Timestamp.valueOf(entry.getCreatedAt()));
+        });
+    }
+
+    @Override
+    public List<OtpOutboxEntry> claimBatch(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        return jdbcTemplate.query(CLAIM_BATCH_SQL, entryMapper, Timestamp.valueOf(leaseUntil), Timestamp.valueOf(now), limit);
+    }
+
+    @Override
+    public void delete(Long id) {
+        jdbcTemplate.update("DELETE FROM otp_delivery_outbox WHERE id = ?", id);
+    }
+
+    @Override
+    public void reschedule(Long id, LocalDateTime nextAttemptAt, String error) {
+        jdbcTemplate.update("UPDATE otp_delivery_outbox SET next_attempt_at = ?, last_error = ? WHERE id = ?",
+                Timestamp.valueOf(nextAttemptAt), error, id);
+    }
+
+    @Override
+    public void deadLetter(Long id, String error) {
+        jdbcTemplate.update("UPDATE otp_delivery_outbox SET status = 'DEAD', code = NULL, last_error = ? WHERE id = ?", error, id);
+    }
+
+    @Override
+    public Stats stats() {
+        return jdbcTemplate.queryForObject(STATS_SQL, (rs, rowNum) -> {
+            Timestamp oldest = rs.getTimestamp("oldest_pending");
+            return new Stats(rs.getLong("pending"), rs.getLong("dead"), oldest != null ? oldest.toLocalDateTime() : null);
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.otpservice.dao;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DAO interface for managing the daily partitions of otp_codes.
+ * A partition for a day holds the codes with {@code created_at} in [day, day + 1).
+ */
+public interface OtpPartitionRepository {
+    /**
+     * Returns the days for which a partition exists, in ascending order.
+     */
+    List<LocalDate> findPartitionDays();
+
+    /**
+     * Creates the partition for the day. Codes of that day that were stored in the default
+     * partition are moved into it.
+     */
+    void createPartition(LocalDate day);
+
+    /**
+     * Drops the partition for the day together with all codes in it.
+     */
+    void dropPartition(LocalDate day);
+}
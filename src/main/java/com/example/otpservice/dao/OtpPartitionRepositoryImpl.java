@@ -0,0 +1,76 @@
+package com.example.otpservice.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of the OtpPartitionRepository interface for PostgreSQL declarative partitioning.
+ * Partitions are named {@code otp_codes_pYYYYMMDD} after the first day they cover.
+ */
+@Repository
+public class OtpPartitionRepositoryImpl implements OtpPartitionRepository {
+    private static final String PARTITION_PREFIX = "otp_codes_p";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "\\d{8}");
+    // DDL on partitions locks otp_codes; give up rather than queue behind long transactions and block the hot path
+    private static final String LOCK_TIMEOUT = "SET LOCAL lock_timeout = '5s'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public OtpPartitionRepositoryImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public List<LocalDate> findPartitionDays() {
+        String sql = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = 'otp_codes'::regclass ORDER BY c.relname";
+        return jdbcTemplate.queryForList(sql, String.class).stream()
+                .filter(name -> PARTITION_NAME.matcher(name).matches())
+                .map(name -> LocalDate.parse(name.substring(PARTITION_PREFIX.length()), DAY_FORMAT))
+                .toList();
+    }
+
+    /**
+     * The partition is created as a standalone table, filled with the day's rows from the default
+     * partition and then attached, all in one transaction, so the rows never disappear from otp_codes.
+     */
+    @Override
+    public void createPartition(LocalDate day) {
+        String partition = partitionName(day);
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK_TIMEOUT);
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE otp_codes INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            jdbcTemplate.update("WITH moved AS (DELETE FROM otp_codes_default WHERE created_at >= ? AND created_at < ? RETURNING *) "
+                    + "INSERT INTO " + partition + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE otp_codes ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        });
+    }
+
+    @Override
+    public void dropPartition(LocalDate day) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK_TIMEOUT);
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(day));
+        });
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + Objects.requireNonNull(day).format(DAY_FORMAT);
+    }
+}
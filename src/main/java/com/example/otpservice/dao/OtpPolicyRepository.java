@@ -0,0 +1,30 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.OtpPolicy;
+
+import java.util.List;
+
+/**
+ * DAO for per-operation OTP policies. Every change also increments the version in otp_config,
+ * so other instances reload the policies together with the global configuration.
+ */
+public interface OtpPolicyRepository {
+    List<OtpPolicy> findAll();
+
+    /**
+     * Inserts the policy and assigns the generated id to it.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if a policy for the prefix already exists
+     */
+    void save(OtpPolicy policy);
+
+    /**
+     * @return false if there is no policy with the id
+     */
+    boolean update(OtpPolicy policy);
+
+    /**
+     * @return false if there is no policy with the id
+     */
+    boolean delete(Long id);
+}
@@ -0,0 +1,68 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.OtpPolicy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class OtpPolicyRepositoryImpl implements OtpPolicyRepository {
+    // Each change bumps otp_config.version in the same statement, so the change and the new version commit together
+    private static final String BUMP_VERSION = "WITH bump AS (UPDATE otp_config SET version = version + 1) ";
+
+    private final JdbcTemplate jdbc;
+
+    private final RowMapper<OtpPolicy> policyMapper = (rs, rowNum) -> {
+        String channel = rs.getString("delivery_channel");
+        return new OtpPolicy(
+                rs.getLong("id"),
+                rs.getString("operation_prefix"),
+                rs.getInt("code_length"),
+                rs.getInt("ttl_seconds"),
+                rs.getString("alphabet"),
+                (Integer) rs.getObject("max_attempts"),
+                channel != null ? DeliveryChannel.valueOf(channel) : null
+        );
+    };
+
+    public OtpPolicyRepositoryImpl(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public List<OtpPolicy> findAll() {
+        return jdbc.query("SELECT * FROM otp_policy ORDER BY operation_prefix", policyMapper);
+    }
+
+    @Override
+    public void save(OtpPolicy policy) {
+        Long id = jdbc.queryForObject(BUMP_VERSION
+                        + "INSERT INTO otp_policy (operation_prefix, code_length, ttl_seconds, alphabet, max_attempts, delivery_channel) "
+                        + "VALUES (?, ?, ?, ?, ?, ?) RETURNING id",
+                Long.class,
+                policy.getOperationPrefix(), policy.getCodeLength(), policy.getTtlSeconds(), policy.getAlphabet(),
+                policy.getMaxAttempts(), channelName(policy));
+        policy.setId(id);
+    }
+
+    @Override
+    public boolean update(OtpPolicy policy) {
+        return jdbc.update(BUMP_VERSION
+                        + "UPDATE otp_policy SET operation_prefix = ?, code_length = ?, ttl_seconds = ?, alphabet = ?, "
+                        + "max_attempts = ?, delivery_channel = ? WHERE id = ?",
+                policy.getOperationPrefix(), policy.getCodeLength(), policy.getTtlSeconds(), policy.getAlphabet(),
+                policy.getMaxAttempts(), channelName(policy), policy.getId()) > 0;
+    }
+
+    @Override
+    public boolean delete(Long id) {
+        return jdbc.update(BUMP_VERSION + "DELETE FROM otp_policy WHERE id = ?", id) > 0;
+    }
+
+    private static String channelName(OtpPolicy policy) {
+        return policy.getDeliveryChannel() != null ? policy.getDeliveryChannel().name() : null;
+    }
+}
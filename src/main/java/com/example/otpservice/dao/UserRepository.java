@@ -2,6 +2,7 @@ package com.example.otpservice.dao;
 
 import com.example.otpservice.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,7 +11,9 @@ public interface UserRepository {
     Optional<User> findByEmail(String email);
     Optional<User> findByRole(User.Role role);
     Optional<User> findById(Long id);
+    List<User> findAllById(Collection<Long> ids);
     void save(User user);
+    void updatePasswordHash(Long id, String passwordHash);
     boolean adminExists();
 
     List<User> findAllNonAdmins();
@@ -5,6 +5,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -52,6 +54,11 @@ public class UserRepositoryImpl implements UserRepository {
                 .findFirst();
     }
 
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return jdbc.query("SELECT * FROM users WHERE id = ANY(?)", userMapper, (Object) ids.toArray(new Long[0]));
+    }
+
     @Override
     public void save(User user) {
         jdbc.update(
@@ -64,6 +71,11 @@ public class UserRepositoryImpl implements UserRepository {
         );
     }
 
+    @Override
+    public void updatePasswordHash(Long id, String passwordHash) {
+        jdbc.update("UPDATE users SET password_hash = ? WHERE id = ?", passwordHash, id);
+    }
+
     @Override
     public boolean adminExists() {
         return findByRole(User.Role.ADMIN).isPresent();
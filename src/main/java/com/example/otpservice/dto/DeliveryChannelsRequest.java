@@ -0,0 +1,45 @@
+package com.example.otpservice.dto;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * DTO for choosing the channels through which the user receives OTP codes.
+ */
+public class DeliveryChannelsRequest {
+
+    @NotEmpty(message = "At least one channel is required")
+    private List<@NotNull DeliveryChannel> channels;
+
+    private boolean fanOut;
+
+    @AssertTrue(message = "channels must not repeat")
+    public boolean isChannelsDistinct() {
+        return channels == null || channels.stream().distinct().count() == channels.size();
+    }
+
+    public DeliveryRoute toRoute() {
+        return new DeliveryRoute(channels, fanOut);
+    }
+
+    public List<DeliveryChannel> getChannels() {
+        return channels;
+    }
+
+    public void setChannels(List<DeliveryChannel> channels) {
+        this.channels = channels;
+    }
+
+    public boolean isFanOut() {
+        return fanOut;
+    }
+
+    public void setFanOut(boolean fanOut) {
+        this.fanOut = fanOut;
+    }
+}
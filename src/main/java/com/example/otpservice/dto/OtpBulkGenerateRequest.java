@@ -0,0 +1,32 @@
+package com.example.otpservice.dto;
+
+/**
+ * DTO for one code of a bulk OTP generation request.
+ */
+public class OtpBulkGenerateRequest {
+    private Long userId;
+    private String operationId;
+
+    public OtpBulkGenerateRequest() {}
+
+    public OtpBulkGenerateRequest(Long userId, String operationId) {
+        this.userId = userId;
+        this.operationId = operationId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(String operationId) {
+        this.operationId = operationId;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.otpservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * DTO for the outcome of one code of a bulk OTP generation request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OtpBulkGenerateResult {
+
+    public enum Status {
+        /** The code was saved and queued for delivery. */
+        CREATED,
+        /** The user already has an active code for the operation. */
+        ALREADY_EXISTS,
+        USER_NOT_FOUND,
+        /** The item lacks a field or could not be read. */
+        INVALID,
+        /** The code was saved but no delivery channel accepted it. */
+        REJECTED,
+        /** The code could not be generated because of an unexpected error, e.g. of the database. */
+        ERROR
+    }
+
+    private Long userId;
+    private String operationId;
+    private Status status;
+    private String message;
+
+    public OtpBulkGenerateResult(Long userId, String operationId, Status status, String message) {
+        this.userId = userId;
+        this.operationId = operationId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(String operationId) {
+        this.operationId = operationId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.otpservice.dto;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.service.SecureRandomOtpCodeGenerator;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Policy for the operations whose id starts with {@code operationPrefix}.
+ * Alphabet, max attempts and delivery channel are optional; when omitted the service defaults apply.
+ */
+public class OtpPolicyRequest {
+
+    @NotBlank
+    @Size(max = 100)
+    private String operationPrefix;
+
+    // otp_delivery_outbox.code holds at most 20 characters
+    @Min(4)
+    @Max(20)
+    private int codeLength;
+
+    @Min(60)
+    private int ttlSeconds;
+
+    private String alphabet;
+
+    @Min(1)
+    private Integer maxAttempts;
+
+    private DeliveryChannel deliveryChannel;
+
+    @AssertTrue(message = "alphabet must consist of 2 to 256 distinct characters")
+    public boolean isAlphabetValid() {
+        return alphabet == null || SecureRandomOtpCodeGenerator.isValidAlphabet(alphabet);
+    }
+
+    public OtpPolicy toPolicy(Long id) {
+        return new OtpPolicy(id, operationPrefix, codeLength, ttlSeconds, alphabet, maxAttempts, deliveryChannel);
+    }
+
+    public String getOperationPrefix() {
+        return operationPrefix;
+    }
+
+    public void setOperationPrefix(String operationPrefix) {
+        this.operationPrefix = operationPrefix;
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    public void setCodeLength(int codeLength) {
+        this.codeLength = codeLength;
+    }
+
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public String getAlphabet() {
+        return alphabet;
+    }
+
+    public void setAlphabet(String alphabet) {
+        this.alphabet = alphabet;
+    }
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public DeliveryChannel getDeliveryChannel() {
+        return deliveryChannel;
+    }
+
+    public void setDeliveryChannel(DeliveryChannel deliveryChannel) {
+        this.deliveryChannel = deliveryChannel;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.otpservice.dto;
+
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpStatus;
+
+/**
+ * DTO for the status of the latest OTP code of an operation.
+ */
+public class OtpStatusResponse {
+    private String operationId;
+    private OtpStatus status;
+    private DeliveryStatus deliveryStatus;
+
+    public OtpStatusResponse(String operationId, OtpStatus status, DeliveryStatus deliveryStatus) {
+        this.operationId = operationId;
+        this.status = status;
+        this.deliveryStatus = deliveryStatus;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(String operationId) {
+        this.operationId = operationId;
+    }
+
+    public OtpStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OtpStatus status) {
+        this.status = status;
+    }
+
+    public DeliveryStatus getDeliveryStatus() {
+        return deliveryStatus;
+    }
+
+    public void setDeliveryStatus(DeliveryStatus deliveryStatus) {
+        this.deliveryStatus = deliveryStatus;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.otpservice.exception;
+
+/**
+ * Exception thrown when logins for an email are temporarily blocked after too many failed attempts.
+ */
+public class LoginBlockedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public LoginBlockedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.otpservice.exception;
+
+/**
+ * Exception thrown when the delivery queue of a channel is full and the OTP code cannot be accepted for sending.
+ */
+public class OtpDeliveryRejectedException extends RuntimeException {
+
+    public OtpDeliveryRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.otpservice.exception;
+
+/**
+ * Exception thrown when a password cannot be hashed or checked because the hashing queue is full
+ * or the request waited too long for a hashing thread.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.otpservice.model;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Channels through which a code is delivered to a user.
+ *
+ * Without fan-out the channels are tried in order: the next one is used when the previous one
+ * fails or does not deliver in time. With fan-out the code is sent through all of them at once and
+ * the first successful delivery counts.
+ */
+public final class DeliveryRoute {
+    private final List<DeliveryChannel> channels;
+    private final boolean fanOut;
+
+    public DeliveryRoute(List<DeliveryChannel> channels, boolean fanOut) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("Delivery route must contain at least one channel");
+        }
+        Set<DeliveryChannel> distinct = EnumSet.copyOf(channels);
+        if (distinct.size() != channels.size()) {
+            throw new IllegalArgumentException("Delivery route must not repeat a channel: " + channels);
+        }
+        this.channels = List.copyOf(channels);
+        this.fanOut = fanOut;
+    }
+
+    public static DeliveryRoute of(DeliveryChannel channel) {
+        return new DeliveryRoute(List.of(channel), false);
+    }
+
+    /**
+     * Parses a comma-separated list of channel names, e.g. {@code TELEGRAM,SMS,EMAIL}.
+     */
+    public static DeliveryRoute parse(String channels, boolean fanOut) {
+        List<DeliveryChannel> parsed = new ArrayList<>();
+        for (String name : channels.split(",")) {
+            if (!name.isBlank()) {
+                parsed.add(DeliveryChannel.valueOf(name.trim().toUpperCase()));
+            }
+        }
+        return new DeliveryRoute(parsed, fanOut);
+    }
+
+    public List<DeliveryChannel> getChannels() {
+        return channels;
+    }
+
+    public boolean isFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Returns the channels in the format accepted by {@link #parse(String, boolean)}.
+     */
+    public String format() {
+        return channels.stream().map(Enum::name).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public String toString() {
+        return format() + (fanOut ? " (fan-out)" : "");
+    }
+}
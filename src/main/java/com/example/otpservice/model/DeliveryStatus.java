@@ -0,0 +1,11 @@
+package com.example.otpservice.model;
+
+/**
+ * Enum representing the delivery state of an OTP code.
+ */
+public enum DeliveryStatus {
+    PENDING,
+    SENT,
+    FAILED,
+    REJECTED
+}
@@ -4,16 +4,20 @@ import java.time.LocalDateTime;
 
 /**
  * Entity representing a one-time password (OTP) code.
+ * Only the HMAC of the code is stored; the plain value is set on a newly generated code, for its delivery,
+ * and is null on codes read from the database.
  */
 public class OtpCode {
 
     private Long id;
     private Long userId;
     private String code;
+    private byte[] codeHash;
     private String operationId;
     private OtpStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime expiresAt;
+    private DeliveryStatus deliveryStatus;
 
     public OtpCode() {
     }
@@ -52,6 +56,14 @@ public class OtpCode {
         this.code = code;
     }
 
+    public byte[] getCodeHash() {
+        return codeHash;
+    }
+
+    public void setCodeHash(byte[] codeHash) {
+        this.codeHash = codeHash;
+    }
+
     public String getOperationId() {
         return operationId;
     }
@@ -83,4 +95,12 @@ public class OtpCode {
     public void setExpiresAt(LocalDateTime expiresAt) {
         this.expiresAt = expiresAt;
     }
+
+    public DeliveryStatus getDeliveryStatus() {
+        return deliveryStatus;
+    }
+
+    public void setDeliveryStatus(DeliveryStatus deliveryStatus) {
+        this.deliveryStatus = deliveryStatus;
+    }
 }
\ No newline at end of file
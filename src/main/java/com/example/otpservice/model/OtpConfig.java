@@ -3,6 +3,7 @@ package com.example.otpservice.model;
 public class OtpConfig {
     private int codeLength;
     private int ttlSeconds;
+    private long version;
 
     public OtpConfig() {}
 
@@ -11,6 +12,11 @@ public class OtpConfig {
         this.ttlSeconds = ttlSeconds;
     }
 
+    public OtpConfig(int codeLength, int ttlSeconds, long version) {
+        this(codeLength, ttlSeconds);
+        this.version = version;
+    }
+
     public int getCodeLength() {
         return codeLength;
     }
@@ -26,4 +32,12 @@ public class OtpConfig {
     public void setTtlSeconds(int ttlSeconds) {
         this.ttlSeconds = ttlSeconds;
     }
-}
\ No newline at end of file
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.otpservice.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pending delivery of an OTP code, stored in otp_delivery_outbox together with the code.
+ * It carries everything the delivery needs, so the dispatcher does not look up the code or the user.
+ */
+public class OtpOutboxEntry {
+    private Long id;
+    private Long otpCodeId;
+    private OtpRecipient recipient;
+    private String code;
+    private DeliveryRoute route;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    public OtpOutboxEntry() {}
+
+    public OtpOutboxEntry(OtpCode otpCode, OtpRecipient recipient, DeliveryRoute route) {
+        this.otpCodeId = otpCode.getId();
+        this.recipient = recipient;
+        this.code = otpCode.getCode();
+        this.route = route;
+        this.createdAt = otpCode.getCreatedAt();
+        this.expiresAt = otpCode.getExpiresAt();
+    }
+
+    /**
+     * Returns the code to deliver, with the fields the delivery channels and status updates use.
+     */
+    public OtpCode toOtpCode() {
+        OtpCode otpCode = new OtpCode();
+        otpCode.setId(otpCodeId);
+        otpCode.setUserId(recipient.getUserId());
+        otpCode.setCode(code);
+        otpCode.setCreatedAt(createdAt);
+        otpCode.setExpiresAt(expiresAt);
+        return otpCode;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOtpCodeId() {
+        return otpCodeId;
+    }
+
+    public void setOtpCodeId(Long otpCodeId) {
+        this.otpCodeId = otpCodeId;
+    }
+
+    public OtpRecipient getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(OtpRecipient recipient) {
+        this.recipient = recipient;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public DeliveryRoute getRoute() {
+        return route;
+    }
+
+    public void setRoute(DeliveryRoute route) {
+        this.route = route;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
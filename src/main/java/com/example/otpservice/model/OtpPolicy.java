@@ -0,0 +1,84 @@
+package com.example.otpservice.model;
+
+/**
+ * OTP policy for the operations whose id starts with {@code operationPrefix}.
+ * A null alphabet, max attempts or delivery channel means the service default applies.
+ */
+public class OtpPolicy {
+    private Long id;
+    private String operationPrefix;
+    private int codeLength;
+    private int ttlSeconds;
+    private String alphabet;
+    private Integer maxAttempts;
+    private DeliveryChannel deliveryChannel;
+
+    public OtpPolicy() {}
+
+    public OtpPolicy(Long id, String operationPrefix, int codeLength, int ttlSeconds, String alphabet,
+                     Integer maxAttempts, DeliveryChannel deliveryChannel) {
+        this.id = id;
+        this.operationPrefix = operationPrefix;
+        this.codeLength = codeLength;
+        this.ttlSeconds = ttlSeconds;
+        this.alphabet = alphabet;
+        this.maxAttempts = maxAttempts;
+        this.deliveryChannel = deliveryChannel;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOperationPrefix() {
+        return operationPrefix;
+    }
+
+    public void setOperationPrefix(String operationPrefix) {
+        this.operationPrefix = operationPrefix;
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    public void setCodeLength(int codeLength) {
+        this.codeLength = codeLength;
+    }
+
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(int ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public String getAlphabet() {
+        return alphabet;
+    }
+
+    public void setAlphabet(String alphabet) {
+        this.alphabet = alphabet;
+    }
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public DeliveryChannel getDeliveryChannel() {
+        return deliveryChannel;
+    }
+
+    public void setDeliveryChannel(DeliveryChannel deliveryChannel) {
+        this.deliveryChannel = deliveryChannel;
+    }
+}
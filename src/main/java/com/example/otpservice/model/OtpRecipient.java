@@ -0,0 +1,30 @@
+package com.example.otpservice.model;
+
+/**
+ * Recipient of an OTP code: the user and the contact data the delivery channels need.
+ * The phone number is optional; channels that need it look it up when it is missing.
+ */
+public class OtpRecipient {
+
+    private final Long userId;
+    private final String email;
+    private final String phoneNumber;
+
+    public OtpRecipient(Long userId, String email, String phoneNumber) {
+        this.userId = userId;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.otpservice.security;
+
+import java.security.Principal;
+
+/**
+ * Principal published by {@link JwtFilter}, built from the claims of the token.
+ *
+ * The user id is missing for tokens issued before it was added to the claims, and the phone
+ * number is present only when {@code jwt.claims.include-contact} was enabled when the token was issued.
+ */
+public class AuthenticatedUser implements Principal {
+
+    private final Long userId;
+    private final String email;
+    private final String role;
+    private final String phoneNumber;
+
+    public AuthenticatedUser(Long userId, String email, String role, String phoneNumber) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    /**
+     * Returns the email, so that {@code Authentication.getName()} keeps returning the token subject.
+     */
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.otpservice.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,17 +23,59 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT filter that authenticates requests based on the Authorization header.
+ * The authentication carries an {@link AuthenticatedUser} built from the token claims.
+ *
+ * Tokens are verified with the parser shared through {@link JwtKeyProvider}. Successfully verified
+ * tokens are kept in a bounded cache (up to {@code jwt.cache.max-size} entries, 0 disables it) until
+ * they expire, so a client repeating the same token skips signature verification. The cache key is the
+ * whole token including its signature, so a modified token is never served from the cache.
  */
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtFilter.class);
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final JwtKeyProvider keyProvider;
+    private final MeterRegistry meterRegistry;
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    public JwtFilter(JwtKeyProvider keyProvider, MeterRegistry meterRegistry) {
+        this.keyProvider = keyProvider;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verified.expiresAtMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, verified, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -44,19 +90,15 @@ public class JwtFilter extends OncePerRequestFilter {
 
             if (!token.isEmpty()) {
                 try {
-                    Claims claims = Jwts.parser()
-                            .setSigningKey(secret)
-                            .parseClaimsJws(token)
-                            .getBody();
-
-                    String email = claims.getSubject();
-                    String role = claims.get("role", String.class);
+                    AuthenticatedUser principal = verify(token);
+                    String email = principal.getEmail();
+                    String role = principal.getRole();
 
                     logger.debug("Authenticated token for user '{}', role='{}'", email, role);
 
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(
-                                    email,
+                                    principal,
                                     null,
                                     Collections.singletonList(new SimpleGrantedAuthority(role))
                             );
@@ -73,4 +115,37 @@ public class JwtFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the principal of a valid token, verifying its signature unless it was verified before.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, badly signed or expired
+     */
+    private AuthenticatedUser verify(String token) {
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            return cached.principal();
+        }
+
+        Claims claims = keyProvider.getParser()
+                .parseClaimsJws(token)
+                .getBody();
+
+        Number userId = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        AuthenticatedUser principal = new AuthenticatedUser(
+                userId != null ? userId.longValue() : null,
+                claims.getSubject(),
+                claims.get(JwtUtil.CLAIM_ROLE, String.class),
+                claims.get(JwtUtil.CLAIM_PHONE, String.class));
+
+        // Tokens without an expiration are verified on every request
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            verifiedTokens.put(token, new VerifiedToken(principal, expiration.getTime()));
+        }
+        return principal;
+    }
+
+    private record VerifiedToken(AuthenticatedUser principal, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.otpservice.security;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.DecodingException;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.WeakKeyException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Holds the HMAC key derived from {@code jwt.secret} and the parser verifying tokens with it.
+ *
+ * Both are built once at startup and are immutable, so they are shared by all requests. The secret
+ * is a Base64-encoded key of at least 256 bits, the same encoding jjwt applied to String secrets,
+ * so tokens issued before keep verifying.
+ */
+@Component
+public class JwtKeyProvider {
+
+    @Value("${jwt.secret}")
+    private String secret;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        try {
+            signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        } catch (DecodingException | WeakKeyException e) {
+            throw new IllegalStateException("jwt.secret must be a Base64-encoded key of at least 256 bits", e);
+        }
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
+    public SecretKey getSigningKey() {
+        return signingKey;
+    }
+
+    public JwtParser getParser() {
+        return parser;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.otpservice.security;
 
 import com.example.otpservice.model.User;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.slf4j.Logger;
@@ -12,18 +13,33 @@ import java.util.Date;
 
 /**
  * Utility class for generating JWT tokens based on user information.
+ *
+ * Besides the email (subject) and the role, the token carries the user id in the {@code uid} claim,
+ * so authenticated requests do not need to resolve it from the database. With
+ * {@code jwt.claims.include-contact=true} the phone number is added as the {@code phone} claim for
+ * SMS delivery; the token is signed but not encrypted, so the claim is readable by the client.
  */
 @Component
 public class JwtUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final JwtKeyProvider keyProvider;
+
+    static final String CLAIM_ROLE = "role";
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_PHONE = "phone";
 
     @Value("${jwt.expiration}")
     private long expiration;
 
+    @Value("${jwt.claims.include-contact:false}")
+    private boolean includeContact;
+
+    public JwtUtil(JwtKeyProvider keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
     /**
      * Generates a JWT token for the given user.
      *
@@ -33,12 +49,17 @@ public class JwtUtil {
     public String generateToken(User user) {
         logger.debug("Generating JWT token for user '{}'", user.getUsername());
 
-        String token = Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(user.getEmail())
-                .claim("role", user.getRole().name())
+                .claim(CLAIM_ROLE, user.getRole().name())
+                .claim(CLAIM_USER_ID, user.getId());
+        if (includeContact && user.getPhoneNumber() != null) {
+            builder.claim(CLAIM_PHONE, user.getPhoneNumber());
+        }
+        String token = builder
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(SignatureAlgorithm.HS256, secret)
+                .signWith(keyProvider.getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
 
         logger.info("Token generated successfully for user '{}'", user.getUsername());
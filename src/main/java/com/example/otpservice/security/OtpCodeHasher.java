@@ -0,0 +1,106 @@
+package com.example.otpservice.security;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.DecodingException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Computes the HMAC-SHA256 under which OTP codes are stored, keyed with {@code otp.code.hmac-key}.
+ *
+ * Only the 32-byte HMAC of a code is written to {@code otp_codes}, and without the key codes cannot be
+ * recomputed from the small code space. The plain value is still kept in {@code otp_delivery_outbox.code}
+ * until the code is sent or its delivery is given up, so a dump or backup taken meanwhile does contain
+ * the codes waiting for delivery.
+ * The key is a Base64-encoded secret of at least 256 bits, e.g. the output of {@code openssl rand -base64 32};
+ * changing it invalidates all active codes.
+ *
+ * Every thread keeps a {@link Mac} keyed once and a buffer the result is written into, so a check does not
+ * look up the algorithm or allocate the result. With virtual threads each request runs on a new thread
+ * and pays for one {@code Mac}.
+ */
+@Component
+public class OtpCodeHasher {
+    public static final int HASH_LENGTH = 32;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Value("${otp.code.hmac-key}")
+    private String key;
+
+    private ThreadLocal<HmacState> states;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes;
+        try {
+            keyBytes = Decoders.BASE64.decode(key);
+        } catch (DecodingException e) {
+            throw new IllegalStateException("otp.code.hmac-key must be a Base64-encoded key of at least 256 bits", e);
+        }
+        if (keyBytes.length < HASH_LENGTH) {
+            throw new IllegalStateException("otp.code.hmac-key must be a Base64-encoded key of at least 256 bits");
+        }
+        SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
+        // Fail at startup rather than on the first request if the key or algorithm is unusable
+        newMac(secretKey);
+        states = ThreadLocal.withInitial(() -> new HmacState(newMac(secretKey)));
+    }
+
+    /**
+     * Returns the HMAC of a code, in a new array that can be stored.
+     */
+    public byte[] hash(String code) {
+        return compute(code).clone();
+    }
+
+    /**
+     * Checks a code against a stored HMAC. The comparison takes the same time wherever the first
+     * differing byte is.
+     *
+     * @return false if the code does not match or no HMAC is given
+     */
+    public boolean matches(String code, byte[] expectedHash) {
+        return expectedHash != null && MessageDigest.isEqual(compute(code), expectedHash);
+    }
+
+    /**
+     * Computes the HMAC into the thread's buffer, which is overwritten by the next call on the thread.
+     */
+    private byte[] compute(String code) {
+        HmacState state = states.get();
+        try {
+            state.mac.update(code.getBytes(StandardCharsets.UTF_8));
+            state.mac.doFinal(state.output, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return state.output;
+    }
+
+    private static Mac newMac(SecretKeySpec secretKey) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static final class HmacState {
+        private final Mac mac;
+        private final byte[] output = new byte[HASH_LENGTH];
+
+        private HmacState(Mac mac) {
+            this.mac = mac;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.otpservice.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker and adaptive timeout of one delivery provider.
+ *
+ * The outcomes of the last {@code windowSize} sends are kept in a ring. Once at least
+ * {@code minimumCalls} of them are recorded and the share of failures reaches
+ * {@code failureRateThreshold} percent, the breaker opens and rejects sends for
+ * {@code openDurationMs}. It then lets {@code halfOpenCalls} trial sends through: if all of them
+ * succeed it closes, if one fails it opens again.
+ *
+ * The timeout is {@code multiplier} times the 99th percentile of the last {@code latencyWindow}
+ * successful sends, bounded by {@code minTimeoutMs} and {@code maxTimeoutMs}; until enough sends have
+ * been observed it is {@code maxTimeoutMs}. A send that took longer than the timeout in force when
+ * it started counts as a failure even if it succeeded.
+ */
+public class DeliveryCircuitBreaker {
+
+    /**
+     * Breaker states; the ordinal is published as the value of the state gauge.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Settings settings;
+    private final boolean[] outcomes;
+    private final long[] latencies;
+    private State state = State.CLOSED;
+    private int recorded;
+    private int position;
+    private int failures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private int latencyCount;
+    private int latencyPosition;
+    private volatile long timeoutMs;
+    private long notPermitted;
+
+    public DeliveryCircuitBreaker(Settings settings) {
+        this.settings = settings;
+        this.outcomes = new boolean[settings.getWindowSize()];
+        this.latencies = new long[settings.getLatencyWindow()];
+        this.timeoutMs = settings.getMaxTimeoutMs();
+    }
+
+    /**
+     * Asks for permission to send. A closed breaker always permits; an open one permits nothing until
+     * the open duration has passed, after which a limited number of trial sends is permitted.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= TimeUnit.MILLISECONDS.toNanos(settings.getOpenDurationMs())) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = settings.getHalfOpenCalls();
+            halfOpenSuccesses = 0;
+        }
+        boolean permitted = switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> {
+                if (halfOpenPermits == 0) {
+                    yield false;
+                }
+                halfOpenPermits--;
+                yield true;
+            }
+            case OPEN -> false;
+        };
+        if (!permitted) {
+            notPermitted++;
+        }
+        return permitted;
+    }
+
+    /**
+     * Returns a permission that was granted but not used, e.g. because the send was skipped.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermits < settings.getHalfOpenCalls()) {
+            halfOpenPermits++;
+        }
+    }
+
+    /**
+     * Records a successful send.
+     *
+     * @param durationNanos how long the send took
+     * @param timeoutMs     the timeout in force when the send started
+     */
+    public synchronized void onSuccess(long durationNanos, long timeoutMs) {
+        recordLatency(TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        record(durationNanos <= TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    public synchronized void onFailure() {
+        record(false);
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the share of failures among the recorded sends, from 0 to 1.
+     */
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    public synchronized long getNotPermittedCalls() {
+        return notPermitted;
+    }
+
+    private void record(boolean success) {
+        if (state == State.HALF_OPEN) {
+            if (!success) {
+                open();
+            } else if (++halfOpenSuccesses >= settings.getHalfOpenCalls()) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A send permitted before the breaker opened; its outcome no longer matters
+            return;
+        }
+        if (recorded == outcomes.length) {
+            if (!outcomes[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = success;
+        if (!success) {
+            failures++;
+        }
+        position = (position + 1) % outcomes.length;
+        if (recorded >= settings.getMinimumCalls() && failures * 100 >= settings.getFailureRateThreshold() * recorded) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        position = 0;
+        failures = 0;
+    }
+
+    private void recordLatency(long millis) {
+        latencies[latencyPosition] = millis;
+        latencyPosition = (latencyPosition + 1) % latencies.length;
+        if (latencyCount < latencies.length) {
+            latencyCount++;
+        }
+        if (latencyCount >= settings.getMinimumCalls()) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+            long adaptive = (long) Math.ceil(p99 * settings.getMultiplier());
+            timeoutMs = Math.max(settings.getMinTimeoutMs(), Math.min(settings.getMaxTimeoutMs(), adaptive));
+        }
+    }
+
+    /**
+     * Breaker and timeout settings, shared by all providers.
+     */
+    public static class Settings {
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private long openDurationMs = 30000;
+        private int halfOpenCalls = 3;
+        private int latencyWindow = 100;
+        private double multiplier = 2.0;
+        private long minTimeoutMs = 500;
+        private long maxTimeoutMs = 5000;
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public long getOpenDurationMs() {
+            return openDurationMs;
+        }
+
+        public void setOpenDurationMs(long openDurationMs) {
+            this.openDurationMs = openDurationMs;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        public int getLatencyWindow() {
+            return latencyWindow;
+        }
+
+        public void setLatencyWindow(int latencyWindow) {
+            this.latencyWindow = latencyWindow;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public long getMinTimeoutMs() {
+            return minTimeoutMs;
+        }
+
+        public void setMinTimeoutMs(long minTimeoutMs) {
+            this.minTimeoutMs = minTimeoutMs;
+        }
+
+        public long getMaxTimeoutMs() {
+            return maxTimeoutMs;
+        }
+
+        public void setMaxTimeoutMs(long maxTimeoutMs) {
+            this.maxTimeoutMs = maxTimeoutMs;
+        }
+    }
+}
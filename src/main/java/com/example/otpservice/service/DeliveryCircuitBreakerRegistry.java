@@ -0,0 +1,97 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.model.DeliveryChannel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds a {@link DeliveryCircuitBreaker} for every delivery channel and publishes its state.
+ *
+ * Metrics, tagged with the channel: {@code otp.delivery.breaker.state} (one gauge per state, 1 for the
+ * current one), {@code otp.delivery.breaker.failure-rate}, {@code otp.delivery.breaker.not-permitted}
+ * and {@code otp.delivery.timeout} (the current adaptive timeout in milliseconds).
+ */
+@Component
+public class DeliveryCircuitBreakerRegistry {
+    private final MeterRegistry meterRegistry;
+    private final Map<DeliveryChannel, DeliveryCircuitBreaker> breakers = new EnumMap<>(DeliveryChannel.class);
+
+    @Value("${otp.delivery.breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${otp.delivery.breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${otp.delivery.breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${otp.delivery.breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${otp.delivery.breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${otp.delivery.timeout.latency-window:100}")
+    private int latencyWindow;
+
+    @Value("${otp.delivery.timeout.multiplier:2.0}")
+    private double multiplier;
+
+    @Value("${otp.delivery.timeout.min-ms:500}")
+    private long minTimeoutMs;
+
+    @Value("${otp.delivery.timeout.max-ms:5000}")
+    private long maxTimeoutMs;
+
+    public DeliveryCircuitBreakerRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        DeliveryCircuitBreaker.Settings settings = new DeliveryCircuitBreaker.Settings();
+        settings.setWindowSize(windowSize);
+        settings.setMinimumCalls(minimumCalls);
+        settings.setFailureRateThreshold(failureRateThreshold);
+        settings.setOpenDurationMs(openDurationMs);
+        settings.setHalfOpenCalls(halfOpenCalls);
+        settings.setLatencyWindow(latencyWindow);
+        settings.setMultiplier(multiplier);
+        settings.setMinTimeoutMs(minTimeoutMs);
+        settings.setMaxTimeoutMs(maxTimeoutMs);
+
+        for (DeliveryChannel channel : DeliveryChannel.values()) {
+            DeliveryCircuitBreaker breaker = new DeliveryCircuitBreaker(settings);
+            breakers.put(channel, breaker);
+            String tag = channel.name().toLowerCase();
+            for (DeliveryCircuitBreaker.State state : DeliveryCircuitBreaker.State.values()) {
+                Gauge.builder("otp.delivery.breaker.state", breaker, b -> b.getState() == state ? 1 : 0)
+                        .tag("channel", tag)
+                        .tag("state", state.name().toLowerCase())
+                        .register(meterRegistry);
+            }
+            Gauge.builder("otp.delivery.breaker.failure-rate", breaker, DeliveryCircuitBreaker::getFailureRate)
+                    .tag("channel", tag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("otp.delivery.breaker.not-permitted", breaker, DeliveryCircuitBreaker::getNotPermittedCalls)
+                    .description("Sends not attempted because the breaker was open")
+                    .tag("channel", tag)
+                    .register(meterRegistry);
+            Gauge.builder("otp.delivery.timeout", breaker, DeliveryCircuitBreaker::getTimeoutMs)
+                    .description("Current adaptive delivery timeout in milliseconds")
+                    .tag("channel", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    public DeliveryCircuitBreaker get(DeliveryChannel channel) {
+        return breakers.get(channel);
+    }
+}
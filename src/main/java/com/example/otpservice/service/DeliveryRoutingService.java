@@ -0,0 +1,134 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.DeliveryPreferenceRepository;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.OtpPolicy;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides through which channels a code is delivered.
+ *
+ * A channel fixed by the operation's policy wins; otherwise the user's own route applies, and users
+ * without one get the default route from {@code otp.delivery.channel}, which may list several
+ * channels as a fallback chain. Resolved routes, including the default for users without a
+ * preference, are cached per user for {@code otp.delivery.routing.cache.ttl-seconds}, so choosing a
+ * channel normally costs no query. A change made through this service is visible here immediately;
+ * other instances see it when their entry expires.
+ */
+@Service
+public class DeliveryRoutingService {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryRoutingService.class);
+
+    private final DeliveryPreferenceRepository preferenceRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<DeliveryChannel, DeliveryRoute> singleChannelRoutes = new EnumMap<>(DeliveryChannel.class);
+    private Cache<Long, DeliveryRoute> routes;
+    private DeliveryRoute defaultRoute;
+
+    @Value("${otp.delivery.channel}")
+    private String defaultChannels;
+
+    @Value("${otp.delivery.fan-out:false}")
+    private boolean defaultFanOut;
+
+    @Value("${otp.delivery.routing.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${otp.delivery.routing.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    public DeliveryRoutingService(DeliveryPreferenceRepository preferenceRepository, MeterRegistry meterRegistry) {
+        this.preferenceRepository = preferenceRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        defaultRoute = DeliveryRoute.parse(defaultChannels, defaultFanOut);
+        for (DeliveryChannel channel : DeliveryChannel.values()) {
+            singleChannelRoutes.put(channel, DeliveryRoute.of(channel));
+        }
+        routes = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, routes, "delivery.routes");
+        logger.info("Default OTP delivery route: {}", defaultRoute);
+    }
+
+    /**
+     * Returns the route for a code generated under the given policy.
+     */
+    public DeliveryRoute resolve(Long userId, OtpPolicy policy) {
+        if (policy.getDeliveryChannel() != null) {
+            return singleChannelRoutes.get(policy.getDeliveryChannel());
+        }
+        return getRoute(userId);
+    }
+
+    /**
+     * Returns the user's route, or the default route if the user has not chosen one.
+     */
+    public DeliveryRoute getRoute(Long userId) {
+        DeliveryRoute route = routes.getIfPresent(userId);
+        if (route != null) {
+            return route;
+        }
+        // Loaded outside the cache: a loader runs under a map lock, which pins a virtual thread waiting for a connection
+        route = preferenceRepository.findByUserId(userId).orElse(defaultRoute);
+        routes.put(userId, route);
+        return route;
+    }
+
+    /**
+     * Loads the routes of the given users that are not cached with one query, so that resolving
+     * them afterwards costs no query.
+     */
+    public void preload(Collection<Long> userIds) {
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (routes.getIfPresent(userId) == null) {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, DeliveryRoute> chosen = preferenceRepository.findByUserIds(missing);
+        for (Long userId : missing) {
+            routes.put(userId, chosen.getOrDefault(userId, defaultRoute));
+        }
+    }
+
+    public void updateRoute(Long userId, DeliveryRoute route) {
+        preferenceRepository.save(userId, route);
+        routes.put(userId, route);
+        logger.info("Delivery route of userId={} set to {}", userId, route);
+    }
+
+    /**
+     * Drops the user's route, so the default route applies again.
+     */
+    public void resetRoute(Long userId) {
+        preferenceRepository.deleteByUserId(userId);
+        routes.put(userId, defaultRoute);
+        logger.info("Delivery route of userId={} reset to the default", userId);
+    }
+}
@@ -1,15 +1,26 @@
 package com.example.otpservice.service;
 
-import jakarta.mail.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
  * Service for sending OTP codes to users via Email using JavaMail API.
+ * Messages are sent over pooled, already authenticated SMTP connections (see {@link SmtpTransportPool}).
  */
 @Service
 public class EmailService implements OtpDeliveryService {
@@ -38,41 +49,108 @@ public class EmailService implements OtpDeliveryService {
     @Value("${mail.smtp.starttls.enable}")
     private boolean smtpStarttlsEnable;
 
+    @Value("${mail.smtp.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${mail.smtp.read-timeout-ms:10000}")
+    private long readTimeoutMs;
+
+    @Value("${mail.smtp.pool.max-connections:4}")
+    private int maxConnections;
+
+    @Value("${mail.smtp.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${mail.smtp.pool.borrow-timeout-ms:10000}")
+    private long borrowTimeoutMs;
+
+    private final MeterRegistry meterRegistry;
+    private Session session;
+    private SmtpTransportPool transportPool;
+
+    public EmailService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
-     * Sends an OTP code to the specified email address.
-     *
-     * @param email the email address of the user
-     * @param code  the OTP code to be sent
+     * Builds the mail session once and opens the SMTP connection pool.
      */
-    @Override
-    public void sendOtp(String email, String code) {
+    @PostConstruct
+    void init() {
         Properties props = new Properties();
         props.put("mail.smtp.auth", smtpAuth);
         props.put("mail.smtp.starttls.enable", smtpStarttlsEnable);
         props.put("mail.smtp.ssl.enable", smtpSslEnable);
         props.put("mail.smtp.host", smtpHost);
         props.put("mail.smtp.port", smtpPort);
+        // Without these JavaMail waits for a stalled server forever
+        props.put("mail.smtp.connectiontimeout", String.valueOf(connectTimeoutMs));
+        props.put("mail.smtp.timeout", String.valueOf(readTimeoutMs));
+        props.put("mail.smtp.writetimeout", String.valueOf(readTimeoutMs));
 
-        Session session = Session.getInstance(props, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(username, password);
-            }
-        });
+        session = Session.getInstance(props);
+        transportPool = new SmtpTransportPool(session, smtpHost, smtpPort,
+                smtpAuth ? username : null, smtpAuth ? password : null,
+                maxConnections, idleTimeoutMs, borrowTimeoutMs);
+
+        FunctionCounter.builder("otp.smtp.connections.opened", transportPool, SmtpTransportPool::getConnectionsOpened)
+                .description("SMTP connections opened")
+                .register(meterRegistry);
+        FunctionCounter.builder("otp.smtp.connections.reused", transportPool, SmtpTransportPool::getConnectionsReused)
+                .description("Sends served by an already open SMTP connection")
+                .register(meterRegistry);
+        FunctionCounter.builder("otp.smtp.messages.sent", transportPool, SmtpTransportPool::getMessagesSent)
+                .register(meterRegistry);
+        Gauge.builder("otp.smtp.connections.idle", transportPool, SmtpTransportPool::getIdleConnections)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        transportPool.close();
+    }
 
+    /**
+     * Sends an OTP code to the specified email address.
+     *
+     * @param email the email address of the user
+     * @param code  the OTP code to be sent
+     */
+    @Override
+    public void sendOtp(String email, String code) {
         try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(fromEmail));
-            message.setRecipients(
-                    Message.RecipientType.TO,
-                    InternetAddress.parse(email)
-            );
-            message.setSubject("Your OTP Code");
-            message.setText("Your OTP code is: " + code);
-
-            Transport.send(message);
+            transportPool.send(createMessage(email, code));
         } catch (MessagingException e) {
             throw new RuntimeException("Failed to send email: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends several OTP codes over a single SMTP connection.
+     *
+     * @param codesByEmail OTP codes keyed by recipient email address
+     */
+    public void sendOtpBatch(Map<String, String> codesByEmail) {
+        try {
+            List<Message> messages = new ArrayList<>(codesByEmail.size());
+            for (Map.Entry<String, String> entry : codesByEmail.entrySet()) {
+                messages.add(createMessage(entry.getKey(), entry.getValue()));
+            }
+            transportPool.sendBatch(messages);
+        } catch (MessagingException e) {
+            throw new RuntimeException("Failed to send email batch: " + e.getMessage(), e);
+        }
+    }
+
+    private Message createMessage(String email, String code) throws MessagingException {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(fromEmail));
+        message.setRecipients(
+                Message.RecipientType.TO,
+                InternetAddress.parse(email)
+        );
+        message.setSubject("Your OTP Code");
+        message.setText("Your OTP code is: " + code);
+        return message;
+    }
+}
@@ -28,7 +28,7 @@ public class FileService implements OtpDeliveryService {
     public void sendOtp(String email, String code) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName, true))) {
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            String record = String.format("%s - User ID: %d, OTP Code: %s", timestamp, email, code);
+            String record = String.format("%s - Email: %s, OTP Code: %s", timestamp, email, code);
             writer.write(record);
             writer.newLine();
         } catch (IOException e) {
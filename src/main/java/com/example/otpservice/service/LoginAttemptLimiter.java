@@ -0,0 +1,108 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.exception.LoginBlockedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts failed logins per email and blocks further attempts once there are too many.
+ *
+ * After {@code security.login.max-failures} failures, logins for the email are refused without a database
+ * lookup or a BCrypt check until {@code security.login.block-seconds} have passed since the last failure;
+ * a successful login resets the count. An attempt is counted before the password is checked, so a burst
+ * of parallel logins for one email gets at most {@code max-failures} BCrypt checks; an attempt that ends
+ * without a verdict, e.g. because the hashing pool is full, is handed back. Counts are kept in memory, at most {@code security.login.tracked-emails}
+ * of them, so with several instances each one counts the attempts it has seen.
+ */
+@Component
+public class LoginAttemptLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptLimiter.class);
+
+    private final MeterRegistry meterRegistry;
+    private Cache<String, AtomicInteger> failures;
+    private Counter blockedCounter;
+
+    @Value("${security.login.max-failures:5}")
+    private int maxFailures;
+
+    @Value("${security.login.block-seconds:900}")
+    private long blockSeconds;
+
+    @Value("${security.login.tracked-emails:100000}")
+    private long trackedEmails;
+
+    public LoginAttemptLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        failures = Caffeine.newBuilder()
+                .maximumSize(trackedEmails)
+                .expireAfterWrite(Duration.ofSeconds(blockSeconds))
+                .build();
+        blockedCounter = Counter.builder("security.login.blocked")
+                .description("Login attempts refused after too many failures")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts a login attempt for the email before its password is checked. The attempt must be ended with
+     * {@link #recordFailure}, {@link #recordSuccess} or {@link #release}.
+     *
+     * @throws LoginBlockedException if the email has reached the failure limit, counting attempts in progress
+     */
+    public void reserve(String email) {
+        String key = key(email);
+        AtomicInteger attempts = failures.get(key, k -> new AtomicInteger());
+        int count = attempts.incrementAndGet();
+        if (count > maxFailures) {
+            // Given back without a write, so refused attempts do not extend the block
+            attempts.decrementAndGet();
+            blockedCounter.increment();
+            long age = failures.policy().expireAfterWrite()
+                    .flatMap(policy -> policy.ageOf(key))
+                    .map(Duration::toSeconds)
+                    .orElse(0L);
+            logger.warn("Login for '{}' blocked after {} failed attempts", email, maxFailures);
+            throw new LoginBlockedException("Too many failed login attempts, try again later",
+                    Math.max(1, blockSeconds - age));
+        }
+    }
+
+    /**
+     * Keeps the reserved attempt as a failure and restarts the block period.
+     */
+    public void recordFailure(String email) {
+        failures.asMap().computeIfPresent(key(email), (key, attempts) -> attempts);
+    }
+
+    public void recordSuccess(String email) {
+        failures.invalidate(key(email));
+    }
+
+    /**
+     * Hands back a reserved attempt whose password was not checked.
+     */
+    public void release(String email) {
+        AtomicInteger attempts = failures.getIfPresent(key(email));
+        if (attempts != null) {
+            attempts.updateAndGet(count -> Math.max(0, count - 1));
+        }
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.model.OtpCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts wrong validation attempts per (userId, operationId) in memory.
+ *
+ * A code generated on this instance is remembered together with its HMAC until it expires, so a wrong
+ * guess is recognised without a database query. For codes generated elsewhere the HMAC is unknown and
+ * only the attempts are counted, for as long as a code of that operation may live; counting starts only
+ * once the caller has checked that the operation has an active code, so guesses against made-up
+ * operations cannot fill the cache and evict the counters of real codes. Entries expire with
+ * the code and are kept in a bounded Caffeine cache of at most {@code otp.validation.tracked-codes}
+ * entries; counters are atomic, so concurrent guesses never block each other. An attempt is reserved
+ * before the guess is compared, so a burst of parallel guesses gets no more than {@code maxAttempts} of
+ * them compared.
+ *
+ * The counts are local to the instance: with several instances behind a balancer an attacker gets up to
+ * {@code maxAttempts} guesses on each of them.
+ */
+@Component
+public class OtpAttemptTracker {
+    private final MeterRegistry meterRegistry;
+    private Cache<AttemptKey, Attempts> attempts;
+
+    @Value("${otp.validation.tracked-codes:100000}")
+    private long trackedCodes;
+
+    public OtpAttemptTracker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        attempts = Caffeine.newBuilder()
+                .maximumSize(trackedCodes)
+                .expireAfter(new Expiry<AttemptKey, Attempts>() {
+                    @Override
+                    public long expireAfterCreate(AttemptKey key, Attempts value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, LocalDateTime.now().until(value.expiresAt(), ChronoUnit.MILLIS)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(AttemptKey key, Attempts value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(AttemptKey key, Attempts value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, attempts, "otp.validation.attempts");
+    }
+
+    /**
+     * Remembers a newly generated code; any attempts counted for an earlier code of the operation are dropped.
+     *
+     * @param maxAttempts allowed wrong attempts, or 0 for no limit
+     */
+    public void track(OtpCode otpCode, int maxAttempts) {
+        attempts.put(new AttemptKey(otpCode.getUserId(), otpCode.getOperationId()),
+                new Attempts(otpCode.getCodeHash(), otpCode.getExpiresAt(), maxAttempts));
+    }
+
+    /**
+     * Returns the attempts of the operation, or null if none are counted on this instance.
+     */
+    public Attempts find(Long userId, String operationId) {
+        return attempts.getIfPresent(new AttemptKey(userId, operationId));
+    }
+
+    /**
+     * Returns the attempts of the operation, starting to count them if there are none yet.
+     * The caller has to make sure the operation has an active code before counting starts.
+     *
+     * @param expiresAt   latest time a code of the operation may expire, used when counting starts here
+     * @param maxAttempts allowed wrong attempts, or 0 for no limit, used when counting starts here
+     */
+    public Attempts get(Long userId, String operationId, LocalDateTime expiresAt, int maxAttempts) {
+        return attempts.get(new AttemptKey(userId, operationId), key -> new Attempts(null, expiresAt, maxAttempts));
+    }
+
+    /**
+     * Forgets the operation once its code has been used or burned.
+     */
+    public void remove(Long userId, String operationId) {
+        attempts.invalidate(new AttemptKey(userId, operationId));
+    }
+
+    private record AttemptKey(Long userId, String operationId) {
+    }
+
+    /**
+     * Attempts made against one code. An attempt stays counted unless the code is used, which drops the entry.
+     *
+     * @param codeHash    HMAC of the code, or null if it was generated on another instance
+     * @param expiresAt   when the entry is dropped
+     * @param maxAttempts allowed attempts, or 0 for no limit
+     */
+    public record Attempts(byte[] codeHash, LocalDateTime expiresAt, int maxAttempts, AtomicInteger reserved) {
+        Attempts(byte[] codeHash, LocalDateTime expiresAt, int maxAttempts) {
+            this(codeHash, expiresAt, maxAttempts, new AtomicInteger());
+        }
+
+        /**
+         * Reserves the next attempt before the guess is compared.
+         *
+         * @return the number of the attempt, to be passed to {@link #allows(int)} and {@link #isLast(int)}
+         */
+        public int reserve() {
+            return reserved.incrementAndGet();
+        }
+
+        /**
+         * Returns true if the attempt is within the limit and its guess may be compared.
+         */
+        public boolean allows(int attempt) {
+            return maxAttempts <= 0 || attempt <= maxAttempts;
+        }
+
+        /**
+         * Returns true if the attempt is the last one allowed; if it fails, the code has to be burned.
+         */
+        public boolean isLast(int attempt) {
+            return attempt == maxAttempts;
+        }
+    }
+}
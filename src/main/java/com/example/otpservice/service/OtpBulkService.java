@@ -0,0 +1,267 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.dao.OtpOutboxRepository;
+import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.dto.OtpBulkGenerateRequest;
+import com.example.otpservice.dto.OtpBulkGenerateResult;
+import com.example.otpservice.dto.OtpBulkGenerateResult.Status;
+import com.example.otpservice.exception.OtpCodeAlreadyExistsException;
+import com.example.otpservice.exception.OtpDeliveryRejectedException;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpOutboxEntry;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Generates OTP codes for many (userId, operationId) pairs at once, for batch jobs such as asking
+ * users to confirm their operations again after an incident.
+ *
+ * Requests are processed in chunks of {@code otp.bulk.batch-size}. For a chunk the users, their delivery
+ * routes and the pairs that already have an active code are looked up with one query each, and the new
+ * codes and their outbox entries are inserted with two JDBC batches in one transaction; the outbox poller
+ * then delivers them like any other code. A chunk thus costs a handful of round trips instead of four or
+ * more per code. The results of a chunk are handed on, in request order, as soon as it is committed.
+ *
+ * Without the outbox (it is disabled, or {@code otp.store.mode=memory}) every code goes through
+ * {@link OtpService#generateOtp(OtpRecipient, String)}; only the user lookup is shared by the chunk.
+ */
+@Service
+public class OtpBulkService {
+    private static final Logger logger = LoggerFactory.getLogger(OtpBulkService.class);
+    private static final int MAX_OPERATION_ID_LENGTH = 255;
+
+    private final OtpService otpService;
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpOutboxRepository outboxRepository;
+    private final OtpOutboxService otpOutboxService;
+    private final UserRepository userRepository;
+    private final OtpConfigService otpConfigService;
+    private final DeliveryRoutingService deliveryRoutingService;
+    private final OtpAttemptTracker otpAttemptTracker;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Status, Counter> counters = new EnumMap<>(Status.class);
+
+    @Value("${otp.bulk.batch-size:500}")
+    private int batchSize;
+
+    public OtpBulkService(OtpService otpService, OtpCodeRepository otpCodeRepository, OtpOutboxRepository outboxRepository,
+                          OtpOutboxService otpOutboxService, UserRepository userRepository, OtpConfigService otpConfigService,
+                          DeliveryRoutingService deliveryRoutingService, OtpAttemptTracker otpAttemptTracker,
+                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.otpService = otpService;
+        this.otpCodeRepository = otpCodeRepository;
+        this.outboxRepository = outboxRepository;
+        this.otpOutboxService = otpOutboxService;
+        this.userRepository = userRepository;
+        this.otpConfigService = otpConfigService;
+        this.deliveryRoutingService = deliveryRoutingService;
+        this.otpAttemptTracker = otpAttemptTracker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Status status : Status.values()) {
+            counters.put(status, Counter.builder("otp.bulk.requests")
+                    .description("Codes requested through bulk generation, by outcome")
+                    .tag("status", status.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Generates codes for the requests chunk by chunk. A request is read only after the results of
+     * the previous chunk have been handed on, so the input can be streamed.
+     *
+     * If reading a request fails, e.g. because the input is malformed, the requests read before it are
+     * processed and the exception is then rethrown.
+     *
+     * @param requests pairs to generate codes for
+     * @param results  receives the results of every chunk
+     * @return number of requests processed
+     */
+    public int generate(Iterator<OtpBulkGenerateRequest> requests, Consumer<List<OtpBulkGenerateResult>> results) {
+        List<OtpBulkGenerateRequest> chunk = new ArrayList<>(batchSize);
+        RuntimeException readFailure = null;
+        int processed = 0;
+        boolean more = true;
+        while (more) {
+            try {
+                more = requests.hasNext();
+                if (more) {
+                    chunk.add(requests.next());
+                }
+            } catch (RuntimeException e) {
+                readFailure = e;
+                more = false;
+            }
+            if (chunk.size() == batchSize || (!more && !chunk.isEmpty())) {
+                results.accept(generateChunk(chunk));
+                processed += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (readFailure != null) {
+            throw readFailure;
+        }
+        return processed;
+    }
+
+    List<OtpBulkGenerateResult> generateChunk(List<OtpBulkGenerateRequest> chunk) {
+        OtpBulkGenerateResult[] results = new OtpBulkGenerateResult[chunk.size()];
+        Set<Long> userIds = new HashSet<>();
+        for (OtpBulkGenerateRequest request : chunk) {
+            if (request != null && request.getUserId() != null) {
+                userIds.add(request.getUserId());
+            }
+        }
+        Map<Long, User> users = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (User user : userRepository.findAllById(userIds)) {
+                users.put(user.getId(), user);
+            }
+        }
+
+        List<Integer> accepted = new ArrayList<>();
+        Map<Long, Set<String>> requested = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            OtpBulkGenerateRequest request = chunk.get(i);
+            String invalid = validate(request);
+            if (invalid != null) {
+                results[i] = result(request, Status.INVALID, invalid);
+            } else if (!users.containsKey(request.getUserId())) {
+                results[i] = result(request, Status.USER_NOT_FOUND, null);
+            } else if (!requested.computeIfAbsent(request.getUserId(), id -> new HashSet<>()).add(request.getOperationId())) {
+                results[i] = result(request, Status.ALREADY_EXISTS, "Requested more than once");
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            if (otpOutboxService.isEnabled()) {
+                generateBatch(chunk, accepted, users, results);
+            } else {
+                generateOneByOne(chunk, accepted, users, results);
+            }
+        }
+
+        for (OtpBulkGenerateResult result : results) {
+            counters.get(result.getStatus()).increment();
+        }
+        logger.info("Bulk OTP generation processed {} requests, {} codes created", chunk.size(),
+                Arrays.stream(results).filter(result -> result.getStatus() == Status.CREATED).count());
+        return Arrays.asList(results);
+    }
+
+    private void generateBatch(List<OtpBulkGenerateRequest> chunk, List<Integer> accepted, Map<Long, User> users,
+                               OtpBulkGenerateResult[] results) {
+        List<Long> userIds = new ArrayList<>(accepted.size());
+        List<String> operationIds = new ArrayList<>(accepted.size());
+        for (int i : accepted) {
+            userIds.add(chunk.get(i).getUserId());
+            operationIds.add(chunk.get(i).getOperationId());
+        }
+        Map<Long, Set<String>> active = otpCodeRepository.findActiveOperations(userIds, operationIds);
+        deliveryRoutingService.preload(userIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> created = new ArrayList<>();
+        List<OtpCode> codes = new ArrayList<>();
+        List<OtpPolicy> policies = new ArrayList<>();
+        for (int i : accepted) {
+            OtpBulkGenerateRequest request = chunk.get(i);
+            if (active.getOrDefault(request.getUserId(), Set.of()).contains(request.getOperationId())) {
+                results[i] = result(request, Status.ALREADY_EXISTS, null);
+                continue;
+            }
+            OtpPolicy policy = otpConfigService.resolvePolicy(request.getOperationId());
+            created.add(i);
+            policies.add(policy);
+            codes.add(otpService.newOtpCode(request.getUserId(), request.getOperationId(), policy, now));
+        }
+        if (codes.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = otpCodeRepository.nextIds(codes.size());
+        List<OtpOutboxEntry> entries = new ArrayList<>(codes.size());
+        for (int j = 0; j < codes.size(); j++) {
+            OtpCode otpCode = codes.get(j);
+            otpCode.setId(ids.get(j));
+            User user = users.get(otpCode.getUserId());
+            OtpRecipient recipient = new OtpRecipient(user.getId(), user.getEmail(), user.getPhoneNumber());
+            DeliveryRoute route = deliveryRoutingService.resolve(user.getId(), policies.get(j));
+            entries.add(new OtpOutboxEntry(otpCode, recipient, route));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            otpCodeRepository.saveAll(codes);
+            outboxRepository.saveAll(entries);
+        });
+
+        for (int j = 0; j < codes.size(); j++) {
+            otpAttemptTracker.track(codes.get(j), otpService.maxAttempts(policies.get(j)));
+            results[created.get(j)] = result(chunk.get(created.get(j)), Status.CREATED, null);
+        }
+    }
+
+    private void generateOneByOne(List<OtpBulkGenerateRequest> chunk, List<Integer> accepted, Map<Long, User> users,
+                                  OtpBulkGenerateResult[] results) {
+        for (int i : accepted) {
+            OtpBulkGenerateRequest request = chunk.get(i);
+            User user = users.get(request.getUserId());
+            try {
+                otpService.generateOtp(new OtpRecipient(user.getId(), user.getEmail(), user.getPhoneNumber()),
+                        request.getOperationId());
+                results[i] = result(request, Status.CREATED, null);
+            } catch (OtpCodeAlreadyExistsException e) {
+                results[i] = result(request, Status.ALREADY_EXISTS, null);
+            } catch (OtpDeliveryRejectedException e) {
+                results[i] = result(request, Status.REJECTED, e.getMessage());
+            } catch (RuntimeException e) {
+                // E.g. the database is briefly unavailable; the other items of the stream are still processed
+                logger.error("Failed to generate OTP code for userId={} and operationId={}: {}",
+                        request.getUserId(), request.getOperationId(), e.getMessage(), e);
+                results[i] = result(request, Status.ERROR, e.getMessage());
+            }
+        }
+    }
+
+    private static String validate(OtpBulkGenerateRequest request) {
+        if (request == null || request.getUserId() == null) {
+            return "userId is required";
+        }
+        if (request.getOperationId() == null || request.getOperationId().isBlank()) {
+            return "operationId is required";
+        }
+        if (request.getOperationId().length() > MAX_OPERATION_ID_LENGTH) {
+            return "operationId is longer than " + MAX_OPERATION_ID_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    private static OtpBulkGenerateResult result(OtpBulkGenerateRequest request, Status status, String message) {
+        return request == null
+                ? new OtpBulkGenerateResult(null, null, status, message)
+                : new OtpBulkGenerateResult(request.getUserId(), request.getOperationId(), status, message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.otpservice.service;
+
+/**
+ * Source of OTP code values.
+ */
+public interface OtpCodeGenerator {
+
+    /**
+     * Generates a random code.
+     *
+     * @param length number of characters in the code
+     * @return a code of the given length made of the configured alphabet
+     */
+    String generate(int length);
+
+    /**
+     * Generates a random code from the given characters.
+     *
+     * @param length   number of characters in the code
+     * @param alphabet characters to draw from, or null for the configured alphabet
+     * @return a code of the given length made of the alphabet
+     */
+    String generate(int length, String alphabet);
+}
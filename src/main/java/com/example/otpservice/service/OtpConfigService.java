@@ -1,22 +1,134 @@
 package com.example.otpservice.service;
 
 import com.example.otpservice.dao.OtpConfigRepository;
+import com.example.otpservice.dao.OtpPolicyRepository;
 import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.model.OtpPolicy;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the OTP policy in memory: the global code length and TTL from otp_config and the
+ * per-operation policies from otp_policy.
+ *
+ * The snapshot is loaded at startup and replaced as a whole, so readers never see a half-applied
+ * change and code generation resolves the policy without a query. Every change to either table
+ * increments otp_config.version in the same statement. A change made through this instance takes
+ * effect here immediately; other instances poll the version column every
+ * {@code otp.config.refresh-interval-ms} and reload both tables when it has grown.
+ */
 @Service
 public class OtpConfigService {
+    private static final Logger logger = LoggerFactory.getLogger(OtpConfigService.class);
+
     private final OtpConfigRepository configRepository;
+    private final OtpPolicyRepository policyRepository;
+    private final AtomicReference<OtpPolicyTable> current = new AtomicReference<>();
 
-    public OtpConfigService(OtpConfigRepository configRepository) {
+    public OtpConfigService(OtpConfigRepository configRepository, OtpPolicyRepository policyRepository) {
         this.configRepository = configRepository;
+        this.policyRepository = policyRepository;
     }
 
+    @PostConstruct
+    void init() {
+        reload();
+    }
+
+    /**
+     * Returns the current global policy. The instance is shared and must not be modified.
+     */
     public OtpConfig getConfig() {
-        return configRepository.getConfig();
+        return current.get().getConfig();
+    }
+
+    /**
+     * Returns the policy for the operation: the one with the longest prefix of the operation id, or
+     * the global policy if no prefix matches. The instance is shared and must not be modified.
+     */
+    public OtpPolicy resolvePolicy(String operationId) {
+        return current.get().resolve(operationId);
+    }
+
+    public List<OtpPolicy> getPolicies() {
+        return current.get().getPolicies();
     }
 
     public void updateConfig(int length, int ttl) {
-        configRepository.updateConfig(new OtpConfig(length, ttl));
+        OtpConfig updated = configRepository.updateConfig(new OtpConfig(length, ttl));
+        OtpPolicyTable installed = current.get();
+        if (updated.getVersion() == installed.getVersion() + 1) {
+            install(installed.withConfig(updated));
+        } else {
+            // Another instance changed something in between, so the installed policies may be stale too
+            reload();
+        }
+    }
+
+    /**
+     * Adds a policy and assigns the generated id to it.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if a policy for the prefix already exists
+     */
+    public void createPolicy(OtpPolicy policy) {
+        policyRepository.save(policy);
+        reload();
+    }
+
+    /**
+     * Replaces the policy with the id of the given one.
+     *
+     * @return false if there is no such policy
+     */
+    public boolean updatePolicy(OtpPolicy policy) {
+        boolean updated = policyRepository.update(policy);
+        reload();
+        return updated;
+    }
+
+    /**
+     * @return false if there is no such policy
+     */
+    public boolean deletePolicy(Long id) {
+        boolean deleted = policyRepository.delete(id);
+        reload();
+        return deleted;
+    }
+
+    /**
+     * Reloads the policies if another instance has changed them.
+     */
+    @Scheduled(fixedDelayString = "${otp.config.refresh-interval-ms:2000}")
+    public void refresh() {
+        if (configRepository.getVersion() > current.get().getVersion()) {
+            reload();
+        }
+    }
+
+    private void reload() {
+        // The version is read first: a change committed in between makes the policies newer than the
+        // version, never older, and the next refresh picks it up again
+        OtpConfig config = configRepository.getConfig();
+        install(OtpPolicyTable.of(config, policyRepository.findAll()));
+    }
+
+    /**
+     * Installs the table unless a newer version is already installed, so a slow reload cannot
+     * overwrite a later update.
+     */
+    private void install(OtpPolicyTable table) {
+        OtpPolicyTable previous = current.getAndAccumulate(table,
+                (installed, candidate) -> installed == null || candidate.getVersion() > installed.getVersion() ? candidate : installed);
+        if (previous == null || table.getVersion() > previous.getVersion()) {
+            OtpConfig config = table.getConfig();
+            logger.info("OTP policy version {}: codeLength={}, ttlSeconds={}, {} operation policies",
+                    config.getVersion(), config.getCodeLength(), config.getTtlSeconds(), table.getPolicies().size());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,355 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.exception.OtpDeliveryRejectedException;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends OTP codes asynchronously so that the request thread does not wait for SMTP, SMPP or Telegram.
+ *
+ * Every channel has its own bounded worker pool: the number of workers limits how many codes
+ * are sent through the channel concurrently, and the queue capacity limits how many codes may
+ * wait for a worker. When the queue is full the code is rejected right away instead of
+ * blocking the caller.
+ *
+ * A code is delivered along a {@link DeliveryRoute}. Without fan-out the next channel of the route is
+ * tried when the current one fails, rejects the code because its queue is full or its circuit breaker
+ * is open, or has not delivered within the channel's adaptive timeout (see {@link DeliveryCircuitBreaker});
+ * a send that overran its timeout is not interrupted, so the user may receive the code twice. With fan-out the code is queued on all
+ * channels at once. In both cases the first successful send marks the code SENT, and sends still
+ * queued at that moment are skipped.
+ */
+@Component
+public class OtpDeliveryDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(OtpDeliveryDispatcher.class);
+
+    private final OtpDeliveryFactory otpDeliveryFactory;
+    private final OtpCodeRepository otpCodeRepository;
+    private final DeliveryCircuitBreakerRegistry circuitBreakers;
+    private final Map<DeliveryChannel, ThreadPoolExecutor> executors = new EnumMap<>(DeliveryChannel.class);
+    private ScheduledThreadPoolExecutor deadlineTimer;
+
+    @Value("${otp.delivery.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${otp.delivery.async.concurrency.email:4}")
+    private int emailConcurrency;
+
+    @Value("${otp.delivery.async.concurrency.telegram:4}")
+    private int telegramConcurrency;
+
+    @Value("${otp.delivery.async.concurrency.sms:2}")
+    private int smsConcurrency;
+
+    @Value("${otp.delivery.async.concurrency.file:1}")
+    private int fileConcurrency;
+
+    @Value("${otp.delivery.async.shutdown-timeout-seconds:10}")
+    private int shutdownTimeoutSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // opensmpp and Angus Mail block on the socket inside synchronized methods, which pins a virtual thread to its carrier
+    @Value("${otp.delivery.async.platform-thread-channels:SMS,EMAIL}")
+    private List<DeliveryChannel> platformThreadChannels;
+
+    public OtpDeliveryDispatcher(OtpDeliveryFactory otpDeliveryFactory, OtpCodeRepository otpCodeRepository,
+                                 DeliveryCircuitBreakerRegistry circuitBreakers) {
+        this.otpDeliveryFactory = otpDeliveryFactory;
+        this.otpCodeRepository = otpCodeRepository;
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @PostConstruct
+    void init() {
+        executors.put(DeliveryChannel.EMAIL, createExecutor(DeliveryChannel.EMAIL, emailConcurrency));
+        executors.put(DeliveryChannel.TELEGRAM, createExecutor(DeliveryChannel.TELEGRAM, telegramConcurrency));
+        executors.put(DeliveryChannel.SMS, createExecutor(DeliveryChannel.SMS, smsConcurrency));
+        executors.put(DeliveryChannel.FILE, createExecutor(DeliveryChannel.FILE, fileConcurrency));
+        deadlineTimer = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("otp-delivery-deadline-"));
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Enqueues an already saved OTP code for delivery through a single channel and returns immediately.
+     *
+     * @see #dispatch(OtpCode, DeliveryRoute, OtpRecipient)
+     */
+    public void dispatch(OtpCode otpCode, DeliveryChannel channel, OtpRecipient recipient) {
+        dispatch(otpCode, DeliveryRoute.of(channel), recipient);
+    }
+
+    /**
+     * Enqueues an already saved OTP code for delivery along the route and returns immediately.
+     * If no channel of the route accepts the code, because its queue is full or its circuit breaker is
+     * open, the code is marked as EXPIRED so the user can request a new one.
+     *
+     * @param otpCode the saved OTP code
+     * @param route the channels to deliver through
+     * @param recipient the user to whom the code is sent
+     * @throws OtpDeliveryRejectedException if no channel of the route accepted the code
+     */
+    public void dispatch(OtpCode otpCode, DeliveryRoute route, OtpRecipient recipient) {
+        DeliveryListener markFailed = new DeliveryListener() {
+            @Override
+            public void delivered() {
+            }
+
+            @Override
+            public void failed() {
+                otpCodeRepository.updateDeliveryStatus(otpCode.getId(), otpCode.getCreatedAt(), DeliveryStatus.FAILED);
+            }
+        };
+        if (!submit(otpCode, route, recipient, markFailed)) {
+            logger.warn("No channel of {} accepted OTP code id={}, rejecting it", route, otpCode.getId());
+            otpCodeRepository.updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.EXPIRED);
+            otpCodeRepository.updateDeliveryStatus(otpCode.getId(), otpCode.getCreatedAt(), DeliveryStatus.REJECTED);
+            throw new OtpDeliveryRejectedException("Delivery via " + route.format() + " is unavailable, try again later.");
+        }
+    }
+
+    /**
+     * Enqueues an OTP code for delivery along the route without touching its status when no channel
+     * accepts it or every channel fails; the caller decides what happens then. A successful delivery
+     * still marks the code SENT.
+     *
+     * @param otpCode the saved OTP code
+     * @param route the channels to deliver through
+     * @param recipient the user to whom the code is sent
+     * @param listener notified once, from a delivery thread, when the code is delivered or every channel failed
+     * @return false if no channel of the route accepted the code; the listener is not notified then
+     */
+    public boolean submit(OtpCode otpCode, DeliveryRoute route, OtpRecipient recipient, DeliveryListener listener) {
+        return new RoutedDelivery(otpCode, route, recipient, listener).start();
+    }
+
+    /**
+     * Returns the number of codes waiting for a worker in the given channel.
+     *
+     * @param channel the delivery channel
+     * @return queue size
+     */
+    public int getQueueSize(DeliveryChannel channel) {
+        return executors.get(channel).getQueue().size();
+    }
+
+    /**
+     * Outcome of a delivery accepted by {@link #submit}.
+     */
+    public interface DeliveryListener {
+
+        /**
+         * Called after the code was sent through one of the channels and marked SENT.
+         */
+        void delivered();
+
+        /**
+         * Called when the last channel of the route failed and no send is in flight.
+         */
+        void failed();
+    }
+
+    /**
+     * Delivery of one code along its route. {@code step} is the index of the channel currently tried;
+     * it only moves forward, and whoever moves it past a channel (its failure or its deadline) queues
+     * the next one. {@code inFlight} counts the sends in flight, plus one while channels are being queued,
+     * so the listener is told about the failure exactly when the count drops to zero with no channel left,
+     * whichever thread takes it there.
+     */
+    private final class RoutedDelivery {
+        private final OtpCode otpCode;
+        private final OtpRecipient recipient;
+        private final List<DeliveryChannel> channels;
+        private final boolean fanOut;
+        private final DeliveryListener listener;
+        private final AtomicBoolean delivered = new AtomicBoolean();
+        private final AtomicInteger step = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean failureReported = new AtomicBoolean();
+
+        RoutedDelivery(OtpCode otpCode, DeliveryRoute route, OtpRecipient recipient, DeliveryListener listener) {
+            this.otpCode = otpCode;
+            this.recipient = recipient;
+            this.channels = route.getChannels();
+            this.fanOut = route.isFanOut();
+            this.listener = listener;
+        }
+
+        /**
+         * Queues the code on the first channel that accepts it, or on all channels with fan-out.
+         *
+         * @return false if no channel accepted the code
+         */
+        boolean start() {
+            inFlight.incrementAndGet();
+            boolean queued = false;
+            try {
+                if (!fanOut) {
+                    queued = queueFrom(0);
+                } else {
+                    step.set(channels.size());
+                    for (int i = 0; i < channels.size(); i++) {
+                        queued |= queue(i);
+                    }
+                }
+            } finally {
+                if (queued) {
+                    release();
+                } else {
+                    // Nothing was queued, so the caller reports the failure instead of the listener
+                    inFlight.decrementAndGet();
+                }
+            }
+            return queued;
+        }
+
+        private boolean queueFrom(int index) {
+            for (int i = index; i < channels.size(); i++) {
+                if (queue(i)) {
+                    return true;
+                }
+                step.compareAndSet(i, i + 1);
+            }
+            return false;
+        }
+
+        private boolean queue(int index) {
+            DeliveryChannel channel = channels.get(index);
+            DeliveryCircuitBreaker breaker = circuitBreakers.get(channel);
+            if (!breaker.tryAcquirePermission()) {
+                logger.warn("Circuit breaker for {} is open, OTP code id={} not queued there", channel, otpCode.getId());
+                return false;
+            }
+            inFlight.incrementAndGet();
+            try {
+                executors.get(channel).execute(() -> send(index, breaker));
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+                breaker.releasePermission();
+                logger.warn("Delivery queue for {} is full, OTP code id={} not queued there", channel, otpCode.getId());
+                return false;
+            }
+            logger.debug("OTP code id={} queued for delivery via {}", otpCode.getId(), channel);
+            if (!fanOut && index < channels.size() - 1) {
+                long timeoutMs = breaker.getTimeoutMs();
+                deadlineTimer.schedule(() -> moveOn(index, "no delivery within " + timeoutMs + " ms"),
+                        timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+
+        private void send(int index, DeliveryCircuitBreaker breaker) {
+            DeliveryChannel channel = channels.get(index);
+            try {
+                if (delivered.get()) {
+                    breaker.releasePermission();
+                    logger.debug("OTP code id={} already delivered, skipping {}", otpCode.getId(), channel);
+                    return;
+                }
+                long timeoutMs = breaker.getTimeoutMs();
+                long start = System.nanoTime();
+                try {
+                    otpDeliveryFactory.getService(channel).sendOtp(recipient, otpCode.getCode());
+                } catch (RuntimeException e) {
+                    breaker.onFailure();
+                    throw e;
+                }
+                breaker.onSuccess(System.nanoTime() - start, timeoutMs);
+                if (delivered.compareAndSet(false, true)) {
+                    otpCodeRepository.updateDeliveryStatus(otpCode.getId(), otpCode.getCreatedAt(), DeliveryStatus.SENT);
+                    logger.info("OTP code id={} sent via {} to {}", otpCode.getId(), channel, recipient.getEmail());
+                    listener.delivered();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to deliver OTP code id={} via {}: {}", otpCode.getId(), channel, e.getMessage(), e);
+                moveOn(index, "delivery failed");
+            } finally {
+                release();
+            }
+        }
+
+        private void moveOn(int index, String reason) {
+            if (fanOut || delivered.get() || !step.compareAndSet(index, index + 1)) {
+                return;
+            }
+            if (index + 1 < channels.size()) {
+                logger.warn("OTP code id={} not delivered via {} ({}), falling back to {}",
+                        otpCode.getId(), channels.get(index), reason, channels.get(index + 1));
+                // Sends that fail meanwhile leave the failure to be reported here if no channel accepts the code
+                inFlight.incrementAndGet();
+                try {
+                    queueFrom(index + 1);
+                } finally {
+                    release();
+                }
+            }
+        }
+
+        private void release() {
+            if (inFlight.decrementAndGet() == 0 && !delivered.get() && step.get() >= channels.size()
+                    && failureReported.compareAndSet(false, true)) {
+                listener.failed();
+            }
+        }
+    }
+
+    /**
+     * Creates the bounded pool of a channel. In virtual-thread mode its workers are virtual threads, unless
+     * the channel is listed in {@code otp.delivery.async.platform-thread-channels}; the pool still bounds how
+     * many sends run at once, because that limit belongs to the provider, not to the thread type.
+     */
+    private ThreadPoolExecutor createExecutor(DeliveryChannel channel, int concurrency) {
+        String prefix = "otp-delivery-" + channel.name().toLowerCase() + "-";
+        boolean virtual = virtualThreads && (platformThreadChannels == null || !platformThreadChannels.contains(channel));
+        ThreadFactory threadFactory = virtual
+                ? Thread.ofVirtual().name(prefix, 1).factory()
+                : new CustomizableThreadFactory(prefix);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        deadlineTimer.shutdownNow();
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        for (Map.Entry<DeliveryChannel, ThreadPoolExecutor> entry : executors.entrySet()) {
+            if (!entry.getValue().awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Delivery executor for {} did not finish in {}s, {} codes left unsent",
+                        entry.getKey(), shutdownTimeoutSeconds, entry.getValue().shutdownNow().size());
+            }
+        }
+    }
+}
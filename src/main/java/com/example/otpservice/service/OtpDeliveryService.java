@@ -1,5 +1,7 @@
 package com.example.otpservice.service;
 
+import com.example.otpservice.model.OtpRecipient;
+
 /**
  * Interface for delivering OTP codes to users via different channels.
  */
@@ -12,4 +14,15 @@ public interface OtpDeliveryService {
      * @param code  the OTP code to be delivered
      */
     void sendOtp(String email, String code);
-}
\ No newline at end of file
+
+    /**
+     * Sends an OTP code to the recipient. Channels that need more than the email address
+     * override this to use the contact data already carried by the recipient.
+     *
+     * @param recipient the user to whom the OTP code should be sent
+     * @param code      the OTP code to be delivered
+     */
+    default void sendOtp(OtpRecipient recipient, String code) {
+        sendOtp(recipient.getEmail(), code);
+    }
+}
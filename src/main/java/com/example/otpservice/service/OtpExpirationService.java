@@ -1,48 +1,91 @@
 package com.example.otpservice.service;
 
+import com.example.otpservice.dao.AdvisoryLockRepository;
 import com.example.otpservice.dao.OtpCodeRepository;
-import com.example.otpservice.model.OtpCode;
-import com.example.otpservice.model.OtpStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for expiring OTP codes automatically.
+ *
+ * Codes are expired with set-based UPDATEs of at most {@code otp.expiration.batch-size} rows each,
+ * so neither the heap nor a single transaction grows with the number of outstanding codes. The job
+ * runs under a PostgreSQL advisory lock, so with several instances only one of them does the work.
  */
 @Service
 public class OtpExpirationService {
     private static final Logger logger = LoggerFactory.getLogger(OtpExpirationService.class);
+
+    /**
+     * Advisory lock key shared by all instances for the expiration job.
+     */
+    static final long EXPIRATION_LOCK_KEY = 7_001L;
+
     private final OtpCodeRepository otpCodeRepository;
+    private final AdvisoryLockRepository advisoryLockRepository;
+    private final Counter expiredCounter;
+    private final Timer runTimer;
+
+    @Value("${otp.expiration.batch-size:1000}")
+    private int batchSize;
 
-    public OtpExpirationService(OtpCodeRepository otpCodeRepository) {
+    public OtpExpirationService(OtpCodeRepository otpCodeRepository, AdvisoryLockRepository advisoryLockRepository,
+                                MeterRegistry meterRegistry) {
         this.otpCodeRepository = otpCodeRepository;
+        this.advisoryLockRepository = advisoryLockRepository;
+        this.expiredCounter = Counter.builder("otp.expiration.expired")
+                .description("OTP codes marked EXPIRED by the scheduled job")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("otp.expiration.duration")
+                .description("Duration of the scheduled OTP expiration job")
+                .register(meterRegistry);
     }
 
     /**
      * Scheduled task to expire OTP codes that have passed their expiration time.
-     * Runs every 5 minutes.
+     * Runs every 5 minutes by default ({@code otp.expiration.interval-ms}).
      */
-    @Scheduled(fixedRate = 300000) // every 5 minutes
+    @Scheduled(fixedRateString = "${otp.expiration.interval-ms:300000}")
     public void expireOtpCodes() {
-        logger.info("Starting scheduled OTP expiration task");
+        boolean acquired = advisoryLockRepository.runWithLock(EXPIRATION_LOCK_KEY, this::expireInBatches);
+        if (!acquired) {
+            logger.debug("OTP expiration task is running on another instance, skipping");
+        }
+    }
 
-        List<OtpCode> activeCodes = otpCodeRepository.findAllActive();
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * Expires codes batch by batch until a batch comes back smaller than the batch size.
+     *
+     * @return total number of codes expired
+     */
+    int expireInBatches() {
+        logger.info("Starting scheduled OTP expiration task");
+        long start = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now();
         int expiredCount = 0;
+        int batches = 0;
+        int expired;
 
-        for (OtpCode otpCode : activeCodes) {
-            if (now.isAfter(otpCode.getExpiresAt())) {
-                otpCodeRepository.updateStatus(otpCode.getId(), OtpStatus.EXPIRED);
-                logger.info("OTP code with id={} expired and status updated", otpCode.getId());
-                expiredCount++;
-            }
-        }
+        do {
+            expired = otpCodeRepository.expireBatch(cutoff, batchSize);
+            expiredCount += expired;
+            batches++;
+        } while (expired == batchSize);
 
-        logger.info("Scheduled OTP expiration task completed. {} codes expired.", expiredCount);
+        long durationNanos = System.nanoTime() - start;
+        runTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        expiredCounter.increment(expiredCount);
+        logger.info("Scheduled OTP expiration task completed. {} codes expired in {} batches, {} ms.",
+                expiredCount, batches, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        return expiredCount;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.dao.OtpOutboxRepository;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpOutboxEntry;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers OTP codes through the otp_delivery_outbox table.
+ *
+ * A code and its outbox entry are inserted in one transaction, so a code that was saved is always
+ * delivered eventually, even if the process dies right after the insert. Every
+ * {@code otp.delivery.outbox.poll-interval-ms} each instance claims due entries in batches of
+ * {@code otp.delivery.outbox.batch-size} with {@code FOR UPDATE SKIP LOCKED}, leases them for
+ * {@code otp.delivery.outbox.lease-ms} and hands them to {@link OtpDeliveryDispatcher}; several
+ * instances drain the outbox in parallel without claiming the same entry. A delivered entry is
+ * deleted. A failed or rejected one is retried with exponential backoff
+ * ({@code otp.delivery.outbox.backoff.*}, with jitter) and dead-lettered after
+ * {@code otp.delivery.outbox.max-attempts} attempts or once the code has expired; its code is then
+ * marked EXPIRED and FAILED. An entry whose instance died during delivery is claimed again when its
+ * lease ends, so delivery is at least once.
+ *
+ * The outbox needs the code row to be written in the same transaction, so it is not used with
+ * {@code otp.store.mode=memory}; codes are then dispatched directly.
+ */
+@Service
+public class OtpOutboxService {
+    private static final Logger logger = LoggerFactory.getLogger(OtpOutboxService.class);
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final OtpOutboxRepository outboxRepository;
+    private final OtpDeliveryDispatcher otpDeliveryDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<OtpOutboxRepository.Stats> stats =
+            new AtomicReference<>(new OtpOutboxRepository.Stats(0, 0, null));
+    private Counter retriedCounter;
+    private Counter deadLetteredCounter;
+    private Timer lagTimer;
+
+    @Value("${otp.delivery.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${otp.store.mode:jdbc}")
+    private String storeMode;
+
+    @Value("${otp.delivery.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${otp.delivery.outbox.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${otp.delivery.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${otp.delivery.outbox.backoff.initial-ms:1000}")
+    private long backoffInitialMs;
+
+    @Value("${otp.delivery.outbox.backoff.max-ms:60000}")
+    private long backoffMaxMs;
+
+    public OtpOutboxService(OtpCodeRepository otpCodeRepository, OtpOutboxRepository outboxRepository,
+                            OtpDeliveryDispatcher otpDeliveryDispatcher, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.otpCodeRepository = otpCodeRepository;
+        this.outboxRepository = outboxRepository;
+        this.otpDeliveryDispatcher = otpDeliveryDispatcher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        if (enabled && "memory".equals(storeMode)) {
+            logger.warn("OTP delivery outbox is not used with otp.store.mode=memory, codes are dispatched directly");
+            enabled = false;
+        }
+        retriedCounter = Counter.builder("otp.delivery.outbox.retried")
+                .description("Outbox deliveries scheduled for another attempt")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("otp.delivery.outbox.dead-lettered")
+                .description("Outbox deliveries given up")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("otp.delivery.outbox.lag")
+                .description("Time from saving a code to its delivery")
+                .register(meterRegistry);
+        Gauge.builder("otp.delivery.outbox.depth", stats, s -> s.get().pending())
+                .description("Outbox entries waiting for delivery")
+                .register(meterRegistry);
+        Gauge.builder("otp.delivery.outbox.dead", stats, s -> s.get().dead())
+                .description("Dead-lettered outbox entries")
+                .register(meterRegistry);
+        Gauge.builder("otp.delivery.outbox.oldest-age", stats, s -> {
+                    LocalDateTime oldest = s.get().oldestPendingCreatedAt();
+                    return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+                })
+                .description("Age in seconds of the oldest entry waiting for delivery")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Inserts the code and its outbox entry in one transaction and assigns the generated id to the code.
+     *
+     * @param otpCode   the new OTP code
+     * @param recipient the user to whom the code is sent
+     * @param route     the channels to deliver through
+     */
+    public void save(OtpCode otpCode, OtpRecipient recipient, DeliveryRoute route) {
+        transactionTemplate.executeWithoutResult(status -> {
+            otpCodeRepository.save(otpCode);
+            outboxRepository.save(new OtpOutboxEntry(otpCode, recipient, route));
+        });
+    }
+
+    /**
+     * Dispatches due outbox entries, batch after batch, until a batch comes back incomplete or a
+     * channel stops accepting codes.
+     */
+    @Scheduled(fixedDelayString = "${otp.delivery.outbox.poll-interval-ms:200}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        boolean drained;
+        do {
+            drained = dispatchBatch();
+        } while (!drained);
+    }
+
+    /**
+     * Claims and dispatches one batch.
+     *
+     * @return true if there is nothing more to do in this round
+     */
+    boolean dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OtpOutboxEntry> batch = outboxRepository.claimBatch(now, now.plusNanos(leaseMs * 1_000_000), batchSize);
+        boolean rejected = false;
+        for (OtpOutboxEntry entry : batch) {
+            rejected |= !dispatch(entry, now);
+        }
+        return batch.size() < batchSize || rejected;
+    }
+
+    /**
+     * Refreshes the outbox depth gauges.
+     */
+    @Scheduled(fixedDelayString = "${otp.delivery.outbox.stats-interval-ms:5000}")
+    public void refreshStats() {
+        if (enabled) {
+            stats.set(outboxRepository.stats());
+        }
+    }
+
+    private boolean dispatch(OtpOutboxEntry entry, LocalDateTime now) {
+        if (!entry.getExpiresAt().isAfter(now)) {
+            deadLetter(entry, "code expired before it was delivered");
+            return true;
+        }
+        boolean accepted = otpDeliveryDispatcher.submit(entry.toOtpCode(), entry.getRoute(), entry.getRecipient(),
+                new OtpDeliveryDispatcher.DeliveryListener() {
+                    @Override
+                    public void delivered() {
+                        lagTimer.record(Duration.between(entry.getCreatedAt(), LocalDateTime.now()));
+                        runQuietly(entry, () -> outboxRepository.delete(entry.getId()));
+                    }
+
+                    @Override
+                    public void failed() {
+                        runQuietly(entry, () -> retryOrDeadLetter(entry, "delivery failed on every channel"));
+                    }
+                });
+        if (!accepted) {
+            retryOrDeadLetter(entry, "no channel accepted the code");
+        }
+        return accepted;
+    }
+
+    private void retryOrDeadLetter(OtpOutboxEntry entry, String reason) {
+        if (entry.getAttempts() >= maxAttempts) {
+            deadLetter(entry, reason);
+            return;
+        }
+        long delayMs = backoffMs(entry.getAttempts());
+        outboxRepository.reschedule(entry.getId(), LocalDateTime.now().plusNanos(delayMs * 1_000_000), reason);
+        retriedCounter.increment();
+        logger.warn("Delivery of OTP code id={} failed on attempt {} ({}), retrying in {} ms",
+                entry.getOtpCodeId(), entry.getAttempts(), reason, delayMs);
+    }
+
+    /**
+     * Exponential backoff with jitter: between half and all of {@code initial * 2^(attempt - 1)}, capped at the maximum.
+     */
+    long backoffMs(int attempt) {
+        long delay = backoffInitialMs << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > backoffMaxMs) {
+            delay = backoffMaxMs;
+        }
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void deadLetter(OtpOutboxEntry entry, String reason) {
+        outboxRepository.deadLetter(entry.getId(), reason);
+        otpCodeRepository.updateStatus(entry.getOtpCodeId(), entry.getCreatedAt(), OtpStatus.EXPIRED);
+        otpCodeRepository.updateDeliveryStatus(entry.getOtpCodeId(), entry.getCreatedAt(), DeliveryStatus.FAILED);
+        deadLetteredCounter.increment();
+        logger.error("Giving up delivery of OTP code id={} after {} attempts: {}", entry.getOtpCodeId(), entry.getAttempts(), reason);
+    }
+
+    /**
+     * Runs an outbox update from a delivery thread. If it fails, the entry is claimed again when its lease ends.
+     */
+    private void runQuietly(OtpOutboxEntry entry, Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            logger.error("Failed to update outbox entry id={}: {}", entry.getId(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.AdvisoryLockRepository;
+import com.example.otpservice.dao.OtpPartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service maintaining the daily partitions of otp_codes.
+ *
+ * Creates partitions for today and the next {@code otp.partition.precreate-days} days, so new
+ * codes do not land in the default partition, and enforces retention by dropping whole partitions
+ * older than {@code otp.partition.retention-days} instead of deleting rows. Runs at startup and
+ * then periodically, under an advisory lock so only one instance changes partitions at a time.
+ */
+@Service
+public class OtpPartitionManager {
+    private static final Logger logger = LoggerFactory.getLogger(OtpPartitionManager.class);
+
+    /**
+     * Advisory lock key shared by all instances for partition maintenance.
+     */
+    static final long PARTITION_LOCK_KEY = 7_002L;
+
+    private final OtpPartitionRepository otpPartitionRepository;
+    private final AdvisoryLockRepository advisoryLockRepository;
+
+    @Value("${otp.partition.precreate-days:7}")
+    private int precreateDays;
+
+    @Value("${otp.partition.retention-days:30}")
+    private int retentionDays;
+
+    public OtpPartitionManager(OtpPartitionRepository otpPartitionRepository, AdvisoryLockRepository advisoryLockRepository) {
+        this.otpPartitionRepository = otpPartitionRepository;
+        this.advisoryLockRepository = advisoryLockRepository;
+    }
+
+    /**
+     * Scheduled task creating upcoming partitions and dropping expired ones.
+     * Runs at startup and then every hour by default ({@code otp.partition.check-interval-ms}).
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${otp.partition.check-interval-ms:3600000}")
+    public void maintainPartitions() {
+        boolean acquired = advisoryLockRepository.runWithLock(PARTITION_LOCK_KEY, () -> maintainPartitions(LocalDate.now()));
+        if (!acquired) {
+            logger.debug("OTP partition maintenance is running on another instance, skipping");
+        }
+    }
+
+    /**
+     * Brings the partitions in line with the configuration for the given day.
+     *
+     * @param today the current day
+     */
+    void maintainPartitions(LocalDate today) {
+        if (retentionDays < 1) {
+            throw new IllegalStateException("otp.partition.retention-days must be at least 1");
+        }
+        List<LocalDate> existing = otpPartitionRepository.findPartitionDays();
+        Set<LocalDate> existingDays = new HashSet<>(existing);
+
+        int created = 0;
+        for (LocalDate day = today; !day.isAfter(today.plusDays(precreateDays)); day = day.plusDays(1)) {
+            if (!existingDays.contains(day)) {
+                otpPartitionRepository.createPartition(day);
+                logger.info("Created otp_codes partition for {}", day);
+                created++;
+            }
+        }
+
+        // A partition is dropped only when its last day is older than the retention window
+        LocalDate oldestKept = today.minusDays(retentionDays);
+        int dropped = 0;
+        for (LocalDate day : existing) {
+            if (day.isBefore(oldestKept)) {
+                otpPartitionRepository.dropPartition(day);
+                logger.info("Dropped otp_codes partition for {}", day);
+                dropped++;
+            }
+        }
+
+        logger.info("OTP partition maintenance completed. {} partitions created, {} dropped.", created, dropped);
+    }
+}
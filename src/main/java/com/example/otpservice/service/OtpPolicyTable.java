@@ -0,0 +1,112 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.model.OtpPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the global OTP configuration and the per-operation policies.
+ *
+ * The policies are compiled into a character trie over their prefixes, with the children of every
+ * node in sorted arrays. {@link #resolve(String)} walks the operation id once and returns the policy
+ * with the longest matching prefix, falling back to a policy built from the global configuration.
+ */
+final class OtpPolicyTable {
+    private final OtpConfig config;
+    private final List<OtpPolicy> policies;
+    private final Node root;
+
+    private OtpPolicyTable(OtpConfig config, List<OtpPolicy> policies) {
+        this.config = config;
+        this.policies = List.copyOf(policies);
+        OtpPolicy defaultPolicy = new OtpPolicy(null, "", config.getCodeLength(), config.getTtlSeconds(), null, null, null);
+        MutableNode builder = new MutableNode();
+        builder.policy = defaultPolicy;
+        for (OtpPolicy policy : policies) {
+            MutableNode node = builder;
+            for (char c : policy.getOperationPrefix().toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new MutableNode());
+            }
+            node.policy = policy;
+        }
+        this.root = builder.freeze();
+    }
+
+    static OtpPolicyTable of(OtpConfig config, List<OtpPolicy> policies) {
+        return new OtpPolicyTable(config, policies);
+    }
+
+    /**
+     * Returns a table with the same policies and another global configuration.
+     */
+    OtpPolicyTable withConfig(OtpConfig config) {
+        return new OtpPolicyTable(config, policies);
+    }
+
+    OtpConfig getConfig() {
+        return config;
+    }
+
+    long getVersion() {
+        return config.getVersion();
+    }
+
+    List<OtpPolicy> getPolicies() {
+        return policies;
+    }
+
+    /**
+     * Returns the policy with the longest prefix of the operation id, or the default policy.
+     */
+    OtpPolicy resolve(String operationId) {
+        Node node = root;
+        OtpPolicy match = root.policy;
+        for (int i = 0, n = operationId.length(); i < n; i++) {
+            node = node.child(operationId.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.policy != null) {
+                match = node.policy;
+            }
+        }
+        return match;
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final OtpPolicy policy;
+
+        Node(char[] keys, Node[] children, OtpPolicy policy) {
+            this.keys = keys;
+            this.children = children;
+            this.policy = policy;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private static final class MutableNode {
+        private final TreeMap<Character, MutableNode> children = new TreeMap<>();
+        private OtpPolicy policy;
+
+        Node freeze() {
+            char[] keys = new char[children.size()];
+            List<Node> frozen = new ArrayList<>(children.size());
+            int i = 0;
+            for (var entry : children.entrySet()) {
+                keys[i++] = entry.getKey();
+                frozen.add(entry.getValue().freeze());
+            }
+            return new Node(keys, frozen.toArray(new Node[0]), policy);
+        }
+    }
+}
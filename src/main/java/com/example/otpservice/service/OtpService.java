@@ -2,95 +2,164 @@ package com.example.otpservice.service;
 
 import com.example.otpservice.dao.OtpCodeRepository;
 import com.example.otpservice.exception.OtpCodeAlreadyExistsException;
-import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.DeliveryStatus;
 import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.model.OtpRecipient;
 import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.security.OtpCodeHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 
 /**
  * Service for OTP code generation and management.
+ * Code length, TTL and alphabet come from the policy that {@link OtpConfigService} resolves for the
+ * operation id; the delivery channels are chosen by {@link DeliveryRoutingService}. Wrong validation
+ * attempts are counted by {@link OtpAttemptTracker}.
  */
 @Service
 public class OtpService {
     private static final Logger logger = LoggerFactory.getLogger(OtpService.class);
     private final OtpCodeRepository otpCodeRepository;
-    private final OtpDeliveryFactory otpDeliveryFactory;
+    private final OtpDeliveryDispatcher otpDeliveryDispatcher;
     private final UserService userService;
-    private final SecureRandom secureRandom = new SecureRandom();
+    private final OtpCodeGenerator otpCodeGenerator;
+    private final OtpConfigService otpConfigService;
+    private final DeliveryRoutingService deliveryRoutingService;
+    private final OtpOutboxService otpOutboxService;
+    private final OtpAttemptTracker otpAttemptTracker;
+    private final OtpCodeHasher otpCodeHasher;
 
-    @Value("${otp.code.length}")
-    private int codeLength;
-
-    @Value("${otp.code.ttl-seconds}")
-    private int ttlSeconds;
-
-    @Value("${otp.delivery.channel}")
-    private String deliveryChannel;
+    @Value("${otp.validation.max-attempts:5}")
+    private int defaultMaxAttempts;
 
     /**
      * Constructs the OTP service with the required repositories and delivery service.
      *
      * @param otpCodeRepository  repository for OTP code storage
-     * @param otpDeliveryFactory factory responsible for delivering OTP codes
+     * @param otpDeliveryDispatcher dispatcher responsible for delivering OTP codes asynchronously
      * @param userService        service for accessing user information
+     * @param otpCodeGenerator   source of the code values
+     * @param otpConfigService   current OTP policies
+     * @param deliveryRoutingService channels through which each user receives codes
+     * @param otpOutboxService   outbox through which saved codes are delivered
+     * @param otpAttemptTracker  counter of wrong validation attempts
+     * @param otpCodeHasher      HMAC under which codes are stored and compared
      */
-
-
-    public OtpService(OtpCodeRepository otpCodeRepository, OtpDeliveryFactory otpDeliveryFactory, UserService userService) {
+    public OtpService(OtpCodeRepository otpCodeRepository, OtpDeliveryDispatcher otpDeliveryDispatcher, UserService userService,
+                      OtpCodeGenerator otpCodeGenerator, OtpConfigService otpConfigService,
+                      DeliveryRoutingService deliveryRoutingService, OtpOutboxService otpOutboxService,
+                      OtpAttemptTracker otpAttemptTracker, OtpCodeHasher otpCodeHasher) {
         this.otpCodeRepository = otpCodeRepository;
-        this.otpDeliveryFactory = otpDeliveryFactory;
+        this.otpDeliveryDispatcher = otpDeliveryDispatcher;
         this.userService = userService;
+        this.otpCodeGenerator = otpCodeGenerator;
+        this.otpConfigService = otpConfigService;
+        this.deliveryRoutingService = deliveryRoutingService;
+        this.otpOutboxService = otpOutboxService;
+        this.otpAttemptTracker = otpAttemptTracker;
+        this.otpCodeHasher = otpCodeHasher;
     }
 
     /**
-     * Generates an OTP code, saves it to the database, and sends it to the user.
+     * Generates an OTP code for a user known only by id; the email is looked up.
      *
      * @param userId      the user ID
      * @param operationId the operation ID
      */
     public void generateOtp(Long userId, String operationId) {
+        generateOtp(new OtpRecipient(userId, userService.getEmailByUserId(userId), null), operationId);
+    }
+
+    /**
+     * Generates an OTP code, saves it to the database, and queues it for delivery to the user.
+     * The method returns as soon as the code is queued; the delivery result is recorded in the
+     * delivery status of the code. With the outbox enabled the code is saved together with its
+     * outbox entry and sent by {@link OtpOutboxService}.
+     *
+     * @param recipient   the user and the contact data used for delivery
+     * @param operationId the operation ID
+     */
+    public void generateOtp(OtpRecipient recipient, String operationId) {
+        Long userId = recipient.getUserId();
         logger.info("Generating OTP code for userId={} and operationId={}", userId, operationId);
         if (otpCodeRepository.existsByUserIdAndOperationId(userId, operationId)) {
             logger.warn("OTP code already exists for userId={} and operationId={}", userId, operationId);
             throw new OtpCodeAlreadyExistsException("OTP code already exists for this operation and user.");
         }
 
-        String code = generateRandomCode();
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime expiry = now.plusSeconds(ttlSeconds);
+        OtpPolicy policy = otpConfigService.resolvePolicy(operationId);
+        OtpCode otpCode = newOtpCode(userId, operationId, policy, LocalDateTime.now());
 
-        OtpCode otpCode = new OtpCode();
-        otpCode.setUserId(userId);
-        otpCode.setCode(code);
-        otpCode.setOperationId(operationId);
-        otpCode.setStatus(OtpStatus.ACTIVE); // Correct usage of Enum here
-        otpCode.setCreatedAt(now);
-        otpCode.setExpiresAt(expiry);
+        DeliveryRoute route = deliveryRoutingService.resolve(userId, policy);
+
+        if (otpOutboxService.isEnabled()) {
+            // The code and its delivery are committed together; the outbox poller sends it
+            otpOutboxService.save(otpCode, recipient, route);
+            otpAttemptTracker.track(otpCode, maxAttempts(policy));
+            logger.info("OTP code generated and queued in the outbox via {} for userId={} and operationId={}",
+                    route, userId, operationId);
+            return;
+        }
 
         otpCodeRepository.save(otpCode);
+        otpAttemptTracker.track(otpCode, maxAttempts(policy));
         logger.info("OTP code generated and saved successfully for userId={} and operationId={}", userId, operationId);
 
-        // Select delivery channel dynamically
-        DeliveryChannel channel = DeliveryChannel.valueOf(deliveryChannel.toUpperCase());
-        OtpDeliveryService deliveryService = otpDeliveryFactory.getService(channel);
+        logger.info("Queueing OTP code via {} to {}", route, recipient.getEmail());
 
-        // Lookup user's email by userId
-        String email = userService.getEmailByUserId(userId);
-        logger.info("Sending OTP code via {} to {}", channel, email);
+        otpDeliveryDispatcher.dispatch(otpCode, route, recipient);
+        logger.info("OTP code queued for delivery for userId={} and operationId={}", userId, operationId);
+    }
+
+    /**
+     * Creates a new ACTIVE code with a value generated under the policy; the code is not saved.
+     */
+    OtpCode newOtpCode(Long userId, String operationId, OtpPolicy policy, LocalDateTime now) {
+        String code = otpCodeGenerator.generate(policy.getCodeLength(), policy.getAlphabet());
+
+        OtpCode otpCode = new OtpCode();
+        otpCode.setUserId(userId);
+        otpCode.setCode(code);
+        otpCode.setCodeHash(otpCodeHasher.hash(code));
+        otpCode.setOperationId(operationId);
+        otpCode.setStatus(OtpStatus.ACTIVE); // Correct usage of Enum here
+        // created_at keeps microseconds; truncating here lets status updates match the stored value exactly
+        LocalDateTime createdAt = now.truncatedTo(ChronoUnit.MICROS);
+        otpCode.setCreatedAt(createdAt);
+        otpCode.setExpiresAt(createdAt.plusSeconds(policy.getTtlSeconds()));
+        otpCode.setDeliveryStatus(DeliveryStatus.PENDING);
+        return otpCode;
+    }
 
-        // Send OTP
-        deliveryService.sendOtp(email, code);
-        logger.info("OTP code sent successfully for userId={} and operationId={}", userId, operationId);
+    /**
+     * Returns the most recent OTP code generated for the user and operation.
+     *
+     * @param userId      the user ID
+     * @param operationId the operation ID
+     * @return the latest OTP code, if any
+     */
+    public Optional<OtpCode> findLatestCode(Long userId, String operationId) {
+        return otpCodeRepository.findLatest(userId, operationId);
     }
 
     /**
      * Validates an OTP code for a specific operation.
+     * The code is checked and consumed in one repository call, so it can be used only once
+     * even if several validations for it arrive at the same time.
+     *
+     * Wrong attempts are counted per user and operation. A guess against a code generated on this
+     * instance is compared with the code's HMAC in memory and a wrong one costs no database query.
+     * An attempt is reserved before its guess is compared, so no more than the policy's {@code maxAttempts}
+     * guesses are compared even if they arrive at once. The last allowed attempt expires the code with one
+     * update if it fails; later guesses are refused without checking them until a new code is generated.
      *
      * @param userId the user ID
      * @param operationId the operation ID
@@ -99,32 +168,58 @@ public class OtpService {
      */
     public boolean validateOtp(Long userId, String operationId, String code) {
         logger.info("Validating OTP code for userId={} and operationId={}", userId, operationId);
-        var otpOpt = otpCodeRepository.findActiveCode(userId, operationId, code);
+        LocalDateTime now = LocalDateTime.now();
+        OtpPolicy policy = otpConfigService.resolvePolicy(operationId);
+        OtpAttemptTracker.Attempts attempts = otpAttemptTracker.find(userId, operationId);
+        if (attempts == null) {
+            // A code generated on another instance or before a restart; made-up operations are not tracked
+            if (!otpCodeRepository.existsByUserIdAndOperationId(userId, operationId)) {
+                logger.warn("No active OTP code found for userId={} and operationId={}", userId, operationId);
+                return false;
+            }
+            attempts = otpAttemptTracker.get(userId, operationId,
+                    now.plusSeconds(policy.getTtlSeconds()), maxAttempts(policy));
+        }
 
-        if (otpOpt.isEmpty()) {
-            logger.warn("No active OTP code found for userId={} and operationId={}", userId, operationId);
+        int attempt = attempts.reserve();
+        if (!attempts.allows(attempt)) {
+            logger.warn("Too many wrong OTP attempts for userId={} and operationId={}", userId, operationId);
             return false;
         }
 
-        OtpCode otp = otpOpt.get();
-        LocalDateTime now = LocalDateTime.now();
+        if (attempts.codeHash() != null && !otpCodeHasher.matches(code, attempts.codeHash())) {
+            logger.warn("Wrong OTP code for userId={} and operationId={}", userId, operationId);
+            recordFailure(attempts, attempt, userId, operationId);
+            return false;
+        }
+
+        Optional<OtpStatus> result = otpCodeRepository.consumeActiveCode(userId, operationId, code, now);
 
-        if (now.isAfter(otp.getExpiresAt())) {
-            otpCodeRepository.updateStatus(otp.getId(), OtpStatus.EXPIRED);
+        if (result.isEmpty()) {
+            logger.warn("No active OTP code found for userId={} and operationId={}", userId, operationId);
+            recordFailure(attempts, attempt, userId, operationId);
+            return false;
+        }
+        otpAttemptTracker.remove(userId, operationId);
+
+        if (result.get() == OtpStatus.EXPIRED) {
             logger.info("OTP code expired for userId={} and operationId={}", userId, operationId);
             return false;
         }
 
-        otpCodeRepository.updateStatus(otp.getId(), OtpStatus.USED);
         logger.info("OTP code successfully validated and marked as USED for userId={} and operationId={}", userId, operationId);
         return true;
     }
 
-    private String generateRandomCode() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < codeLength; i++) {
-            sb.append(secureRandom.nextInt(10));
+    private void recordFailure(OtpAttemptTracker.Attempts attempts, int attempt, Long userId, String operationId) {
+        if (attempts.isLast(attempt)) {
+            boolean expired = otpCodeRepository.expireActiveCode(userId, operationId);
+            logger.warn("OTP attempt limit of {} reached for userId={} and operationId={}, active code {}",
+                    attempts.maxAttempts(), userId, operationId, expired ? "expired" : "not found");
         }
-        return sb.toString();
+    }
+
+    int maxAttempts(OtpPolicy policy) {
+        return policy.getMaxAttempts() != null ? policy.getMaxAttempts() : defaultMaxAttempts;
     }
 }
@@ -0,0 +1,143 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hashes and checks passwords with BCrypt on a dedicated bounded pool.
+ *
+ * BCrypt is deliberately CPU-heavy, so a burst of logins run on request threads would occupy every core.
+ * Here at most {@code security.password.hashing.concurrency} hashes are computed at once (by default half
+ * of the cores), at most {@code security.password.hashing.queue-capacity} wait for a thread, and a caller
+ * waits at most {@code security.password.hashing.timeout-ms}. Beyond that the call fails right away with
+ * {@link PasswordHashingRejectedException}, so a login storm slows down logins and registrations only.
+ *
+ * New hashes use cost {@code security.password.bcrypt.cost}; {@link #needsRehash(String)} tells whether a
+ * stored hash was made with a lower one.
+ */
+@Component
+public class PasswordHasher {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private final MeterRegistry meterRegistry;
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+    private Counter rejectedCounter;
+    private Timer hashTimer;
+
+    @Value("${security.password.bcrypt.cost:10}")
+    private int cost;
+
+    @Value("${security.password.hashing.concurrency:0}")
+    private int concurrency;
+
+    @Value("${security.password.hashing.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${security.password.hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    public PasswordHasher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        encoder = new BCryptPasswordEncoder(cost);
+        int threads = concurrency > 0 ? concurrency : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        rejectedCounter = Counter.builder("security.password.hashing.rejected")
+                .description("Password hashes refused because the hashing pool was saturated")
+                .register(meterRegistry);
+        hashTimer = Timer.builder("security.password.hashing.duration")
+                .description("Time to compute one BCrypt hash, without the wait for a thread")
+                .register(meterRegistry);
+        Gauge.builder("security.password.hashing.queued", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(meterRegistry);
+        logger.info("Password hashing: BCrypt cost {}, {} threads, queue of {}", cost, threads, queueCapacity);
+    }
+
+    /**
+     * Hashes a new password with the configured cost.
+     *
+     * @throws PasswordHashingRejectedException if the hashing pool is saturated
+     */
+    public String encode(String rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks a password against a stored hash.
+     *
+     * @throws PasswordHashingRejectedException if the hashing pool is saturated
+     */
+    public boolean matches(String rawPassword, String passwordHash) {
+        return run(() -> encoder.matches(rawPassword, passwordHash));
+    }
+
+    /**
+     * Returns true if the hash was made with a lower cost than the configured one.
+     */
+    public boolean needsRehash(String passwordHash) {
+        return encoder.upgradeEncoding(passwordHash);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> hashTimer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            throw reject("Too many password checks in progress, try again later");
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw reject("Password check timed out, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw reject("Password check interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private PasswordHashingRejectedException reject(String message) {
+        rejectedCounter.increment();
+        logger.warn("{} ({} hashes queued)", message, executor.getQueue().size());
+        return new PasswordHashingRejectedException(message);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
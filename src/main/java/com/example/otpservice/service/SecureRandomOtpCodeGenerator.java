@@ -0,0 +1,212 @@
+package com.example.otpservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates OTP codes from a cryptographically strong DRBG.
+ *
+ * Every thread has its own DRBG instance, so request threads do not contend on a shared
+ * SecureRandom. With {@code spring.threads.virtual.enabled=true} every request runs on a new thread, which
+ * would create and seed a DRBG per request; instead threads share {@value #STRIPES_PER_CPU} DRBGs per CPU,
+ * picked by thread id and each guarded by its own lock. Random bytes are drawn in blocks of {@value #RANDOM_BLOCK_SIZE} and mapped onto the
+ * alphabet ({@code otp.code.alphabet}, digits by default) by rejection sampling: bytes from the
+ * incomplete last cycle of the alphabet are discarded, so every character is equally likely.
+ *
+ * With {@code otp.code.prefetch-size > 0} codes of the current policy length are generated ahead by a
+ * background thread into a buffer of that size; requests take them from there and fall back to
+ * generating directly when the buffer is empty. After the length is changed, codes of the old length
+ * are discarded as they are taken, so the buffer catches up within {@code prefetch-size} requests.
+ * Codes of other lengths or alphabets, requested by per-operation policies, are always generated directly.
+ */
+@Component
+public class SecureRandomOtpCodeGenerator implements OtpCodeGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(SecureRandomOtpCodeGenerator.class);
+
+    static final int RANDOM_BLOCK_SIZE = 64;
+    static final String DIGITS = "0123456789";
+    static final int STRIPES_PER_CPU = 4;
+
+    private final OtpConfigService otpConfigService;
+    private final ThreadLocal<RandomState> randomState = ThreadLocal.withInitial(RandomState::new);
+    private final ConcurrentMap<String, Alphabet> policyAlphabets = new ConcurrentHashMap<>();
+    private RandomState[] stripes;
+    private Alphabet alphabet;
+    private BlockingQueue<String> prefetched;
+    private Thread refillThread;
+
+    @Value("${otp.code.alphabet:" + DIGITS + "}")
+    private String alphabetValue;
+
+    @Value("${otp.code.prefetch-size:0}")
+    private int prefetchSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public SecureRandomOtpCodeGenerator(OtpConfigService otpConfigService) {
+        this.otpConfigService = otpConfigService;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!isValidAlphabet(alphabetValue)) {
+            throw new IllegalStateException("otp.code.alphabet must consist of 2 to 256 distinct characters");
+        }
+        alphabet = new Alphabet(alphabetValue);
+
+        if (virtualThreads) {
+            stripes = new RandomState[Runtime.getRuntime().availableProcessors() * STRIPES_PER_CPU];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new RandomState();
+            }
+        }
+
+        if (prefetchSize > 0) {
+            prefetched = new ArrayBlockingQueue<>(prefetchSize);
+            refillThread = new Thread(this::refill, "otp-code-prefetch");
+            refillThread.setDaemon(true);
+            refillThread.start();
+            logger.info("Prefetching up to {} OTP codes", prefetchSize);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refillThread != null) {
+            refillThread.interrupt();
+        }
+    }
+
+    /**
+     * Checks that the characters can serve as a code alphabet: 2 to 256 characters, none repeated.
+     */
+    public static boolean isValidAlphabet(String alphabet) {
+        int length = alphabet.length();
+        return length >= 2 && length <= 256 && alphabet.chars().distinct().count() == length;
+    }
+
+    @Override
+    public String generate(int length) {
+        if (prefetched != null && length == otpConfigService.getConfig().getCodeLength()) {
+            String code = prefetched.poll();
+            if (code != null && code.length() == length) {
+                return code;
+            }
+        }
+        return generateDirect(length, alphabet);
+    }
+
+    @Override
+    public String generate(int length, String alphabetChars) {
+        if (alphabetChars == null || alphabetChars.equals(alphabetValue)) {
+            return generate(length);
+        }
+        if (!isValidAlphabet(alphabetChars)) {
+            throw new IllegalArgumentException("OTP alphabet must consist of 2 to 256 distinct characters");
+        }
+        return generateDirect(length, policyAlphabets.computeIfAbsent(alphabetChars, Alphabet::new));
+    }
+
+    /**
+     * Generates a code on the calling thread, bypassing the prefetch buffer.
+     */
+    String generateDirect(int length) {
+        return generateDirect(length, alphabet);
+    }
+
+    private String generateDirect(int length, Alphabet alphabet) {
+        if (stripes == null) {
+            return generateDirect(length, alphabet, randomState.get());
+        }
+        RandomState state = stripes[(int) (Thread.currentThread().threadId() % stripes.length)];
+        // A lock rather than synchronized, so that a waiting virtual thread does not pin its carrier
+        state.lock.lock();
+        try {
+            return generateDirect(length, alphabet, state);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    private static String generateDirect(int length, Alphabet alphabet, RandomState state) {
+        char[] chars = state.chars(length);
+        char[] symbols = alphabet.symbols;
+        for (int i = 0; i < length; i++) {
+            int value;
+            do {
+                value = state.nextByte();
+            } while (value >= alphabet.acceptLimit);
+            chars[i] = symbols[value % symbols.length];
+        }
+        return new String(chars, 0, length);
+    }
+
+    private void refill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                prefetched.put(generateDirect(otpConfigService.getConfig().getCodeLength()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Alphabet {
+        private final char[] symbols;
+        // Largest multiple of the alphabet size not above 256; bytes at or above it are rejected
+        private final int acceptLimit;
+
+        Alphabet(String chars) {
+            this.symbols = chars.toCharArray();
+            this.acceptLimit = 256 - 256 % symbols.length;
+        }
+    }
+
+    /**
+     * DRBG with a block of random bytes drawn from it and a scratch buffer for the code. Held per thread,
+     * or shared by the threads of a stripe under {@link #lock}.
+     */
+    private static final class RandomState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SecureRandom random = newDrbg();
+        private final byte[] block = new byte[RANDOM_BLOCK_SIZE];
+        private int position = RANDOM_BLOCK_SIZE;
+        private char[] chars = new char[16];
+
+        int nextByte() {
+            if (position == block.length) {
+                random.nextBytes(block);
+                position = 0;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            return chars;
+        }
+
+        private static SecureRandom newDrbg() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.otpservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smpp.Data;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindResponse;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of long-lived bound SMPP transmitter sessions.
+ *
+ * Sessions are bound lazily on first use and then kept open. Each session works in asynchronous
+ * mode: submit_sm is written to the socket without waiting, and the matching submit_sm_resp is
+ * correlated by sequence number when it arrives. The number of unanswered submits per session is
+ * limited by a window. A background task sends enquire_link to every bound session and rebinds
+ * sessions that failed.
+ */
+public class SmppSessionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SmppSessionPool.class);
+
+    private final Settings settings;
+    private final List<PooledSession> sessions = new ArrayList<>();
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final ScheduledExecutorService keepaliveExecutor;
+
+    public SmppSessionPool(Settings settings) {
+        this.settings = settings;
+        for (int i = 0; i < settings.getPoolSize(); i++) {
+            sessions.add(new PooledSession(i));
+        }
+        this.keepaliveExecutor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("smpp-keepalive-"));
+        keepaliveExecutor.scheduleWithFixedDelay(this::keepalive,
+                settings.getEnquireLinkIntervalMs(), settings.getEnquireLinkIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits a short message through the next available session.
+     * The returned future completes when submit_sm_resp is received or the response timeout expires.
+     *
+     * @param submitSM the message to submit
+     * @return future completed with the SMSC response
+     */
+    public CompletableFuture<SubmitSMResp> submit(SubmitSM submitSM) {
+        PooledSession session = sessions.get(Math.floorMod(nextSession.getAndIncrement(), sessions.size()));
+        return session.submit(submitSM).thenApply(response -> (SubmitSMResp) response);
+    }
+
+    /**
+     * Returns the number of sessions that are currently bound.
+     */
+    public int getBoundSessionCount() {
+        return (int) sessions.stream().filter(PooledSession::isBound).count();
+    }
+
+    private void keepalive() {
+        for (PooledSession session : sessions) {
+            try {
+                session.keepalive();
+            } catch (RuntimeException e) {
+                logger.warn("SMPP keepalive of session #{} failed: {}", session.index, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        keepaliveExecutor.shutdownNow();
+        sessions.forEach(PooledSession::close);
+    }
+
+    private enum SessionState {
+        IDLE,
+        BOUND,
+        BROKEN
+    }
+
+    /**
+     * Single bound SMPP session with its own submit window and response correlation table.
+     */
+    private class PooledSession implements ServerPDUEventListener {
+        private final int index;
+        private final Semaphore window;
+        private final Map<Integer, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        // Guards binding and state changes; not synchronized, so a virtual thread binding over the network is not pinned
+        private final ReentrantLock stateLock = new ReentrantLock();
+        private volatile SessionState state = SessionState.IDLE;
+        private volatile Session session;
+        private volatile long lastActivity;
+
+        PooledSession(int index) {
+            this.index = index;
+            this.window = new Semaphore(settings.getWindowSize());
+        }
+
+        boolean isBound() {
+            return state == SessionState.BOUND;
+        }
+
+        CompletableFuture<Response> submit(Request request) {
+            try {
+                if (!window.tryAcquire(settings.getResponseTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                    return CompletableFuture.failedFuture(
+                            new IllegalStateException("SMPP window of session #" + index + " is full"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            future.orTimeout(settings.getResponseTimeoutMs(), TimeUnit.MILLISECONDS)
+                    .whenComplete((response, error) -> {
+                        pending.remove(request.getSequenceNumber());
+                        window.release();
+                    });
+            try {
+                Session bound = ensureBound();
+                request.assignSequenceNumber();
+                pending.put(request.getSequenceNumber(), future);
+                writeLock.lock();
+                try {
+                    if (request instanceof SubmitSM submitSM) {
+                        bound.submit(submitSM);
+                    } else if (request instanceof EnquireLink enquireLink) {
+                        bound.enquireLink(enquireLink);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+                lastActivity = System.currentTimeMillis();
+            } catch (Exception e) {
+                markBroken(e);
+                future.completeExceptionally(new RuntimeException("SMPP sending failed: " + e.getMessage(), e));
+            }
+            return future;
+        }
+
+        @Override
+        public void handleEvent(ServerPDUEvent event) {
+            PDU pdu = event.getPDU();
+            lastActivity = System.currentTimeMillis();
+            if (pdu.isResponse()) {
+                CompletableFuture<Response> future = pending.get(pdu.getSequenceNumber());
+                if (future != null) {
+                    future.complete((Response) pdu);
+                }
+            } else if (pdu.getCommandId() == Data.UNBIND) {
+                logger.warn("SMSC requested unbind of SMPP session #{}", index);
+                respond((Request) pdu);
+                markBroken(new IllegalStateException("Unbound by SMSC"));
+            } else if (pdu.isRequest()) {
+                respond((Request) pdu);
+            }
+        }
+
+        private void respond(Request request) {
+            try {
+                session.respond(request.getResponse());
+            } catch (Exception e) {
+                logger.warn("Failed to respond to {} on SMPP session #{}: {}",
+                        request.getClass().getSimpleName(), index, e.getMessage());
+            }
+        }
+
+        private Session ensureBound() throws Exception {
+            stateLock.lock();
+            try {
+                return bind();
+            } finally {
+                stateLock.unlock();
+            }
+        }
+
+        private Session bind() throws Exception {
+            if (state == SessionState.BOUND) {
+                return session;
+            }
+            closeQuietly();
+
+            // The library connects without a timeout, so the socket is connected here and handed over
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(settings.getHost(), settings.getPort()), (int) settings.getConnectTimeoutMs());
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            TCPIPConnection connection = new TCPIPConnection(socket);
+            connection.setReceiveTimeout(settings.getResponseTimeoutMs());
+            Session newSession = new Session(connection);
+
+            BindTransmitter bindRequest = new BindTransmitter();
+            bindRequest.setSystemId(settings.getSystemId());
+            bindRequest.setPassword(settings.getPassword());
+            bindRequest.setSystemType(settings.getSystemType());
+            bindRequest.setInterfaceVersion((byte) 0x34);
+            bindRequest.setAddressRange(settings.getSourceAddress());
+
+            logger.debug("Binding SMPP session #{} to {}:{}", index, settings.getHost(), settings.getPort());
+            BindResponse bindResponse = newSession.bind(bindRequest, this);
+            if (bindResponse == null || bindResponse.getCommandStatus() != 0) {
+                throw new IllegalStateException("SMPP Bind failed with status: "
+                        + (bindResponse == null ? "no response" : bindResponse.getCommandStatus()));
+            }
+
+            session = newSession;
+            state = SessionState.BOUND;
+            lastActivity = System.currentTimeMillis();
+            logger.info("SMPP session #{} bound to {}:{}", index, settings.getHost(), settings.getPort());
+            return newSession;
+        }
+
+        void keepalive() {
+            if (state == SessionState.BROKEN) {
+                try {
+                    ensureBound();
+                } catch (Exception e) {
+                    logger.warn("Rebind of SMPP session #{} failed: {}", index, e.getMessage());
+                }
+                return;
+            }
+            if (state != SessionState.BOUND
+                    || System.currentTimeMillis() - lastActivity < settings.getEnquireLinkIntervalMs()) {
+                return;
+            }
+            submit(new EnquireLink()).whenComplete((response, error) -> {
+                if (error != null) {
+                    markBroken(error);
+                }
+            });
+        }
+
+        private void markBroken(Throwable cause) {
+            stateLock.lock();
+            try {
+                doMarkBroken(cause);
+            } finally {
+                stateLock.unlock();
+            }
+        }
+
+        private void doMarkBroken(Throwable cause) {
+            if (state == SessionState.BROKEN) {
+                return;
+            }
+            logger.warn("SMPP session #{} marked as broken: {}", index, cause.getMessage());
+            state = SessionState.BROKEN;
+            pending.values().forEach(future -> future.completeExceptionally(
+                    new RuntimeException("SMPP session #" + index + " failed", cause)));
+
+            // Closing stops the receiver thread, which may be the thread that called us
+            Session broken = session;
+            session = null;
+            try {
+                keepaliveExecutor.execute(() -> closeSession(broken));
+            } catch (RejectedExecutionException e) {
+                closeSession(broken);
+            }
+        }
+
+        private void closeQuietly() {
+            Session current = session;
+            session = null;
+            closeSession(current);
+        }
+
+        private void closeSession(Session current) {
+            if (current == null) {
+                return;
+            }
+            try {
+                current.close();
+            } catch (Exception e) {
+                logger.debug("Error closing SMPP session #{}: {}", index, e.getMessage());
+            }
+        }
+
+        void close() {
+            stateLock.lock();
+            try {
+                Session current = session;
+                if (state == SessionState.BOUND && current != null) {
+                    try {
+                        current.unbind();
+                    } catch (Exception e) {
+                        logger.warn("Error unbinding SMPP session #{}: {}", index, e.getMessage());
+                    }
+                }
+                state = SessionState.IDLE;
+                closeQuietly();
+            } finally {
+                stateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Connection and pool settings.
+     */
+    public static class Settings {
+        private String host;
+        private int port;
+        private String systemId;
+        private String password;
+        private String systemType;
+        private String sourceAddress;
+        private int poolSize = 2;
+        private int windowSize = 10;
+        private long enquireLinkIntervalMs = 30000;
+        private long responseTimeoutMs = 5000;
+        private long connectTimeoutMs = 5000;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getSystemId() {
+            return systemId;
+        }
+
+        public void setSystemId(String systemId) {
+            this.systemId = systemId;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getSystemType() {
+            return systemType;
+        }
+
+        public void setSystemType(String systemType) {
+            this.systemType = systemType;
+        }
+
+        public String getSourceAddress() {
+            return sourceAddress;
+        }
+
+        public void setSourceAddress(String sourceAddress) {
+            this.sourceAddress = sourceAddress;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public long getEnquireLinkIntervalMs() {
+            return enquireLinkIntervalMs;
+        }
+
+        public void setEnquireLinkIntervalMs(long enquireLinkIntervalMs) {
+            this.enquireLinkIntervalMs = enquireLinkIntervalMs;
+        }
+
+        public long getResponseTimeoutMs() {
+            return responseTimeoutMs;
+        }
+
+        public void setResponseTimeoutMs(long responseTimeoutMs) {
+            this.responseTimeoutMs = responseTimeoutMs;
+        }
+
+        public long getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+    }
+}
@@ -1,23 +1,22 @@
 package com.example.otpservice.service;
 
+import com.example.otpservice.model.OtpRecipient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.smpp.Connection;
-import org.smpp.Session;
-import org.smpp.TCPIPConnection;
-import org.smpp.TimeoutException;
-import org.smpp.WrongSessionStateException;
-import org.smpp.pdu.BindResponse;
-import org.smpp.pdu.BindTransmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.smpp.pdu.PDUException;
 import org.smpp.pdu.SubmitSM;
-import org.smpp.pdu.ValueNotSetException;
+import org.smpp.pdu.SubmitSMResp;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.io.IOException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service for sending OTP codes to users via SMPP emulator.
+ * Messages are submitted through a pool of long-lived bound sessions (see {@link SmppSessionPool}).
  */
 @Service
 public class SmsService implements OtpDeliveryService {
@@ -41,11 +40,50 @@ public class SmsService implements OtpDeliveryService {
     @Value("${smpp.source_addr}")
     private String sourceAddress;
 
+    @Value("${smpp.pool.size:2}")
+    private int poolSize;
+
+    @Value("${smpp.pool.window:10}")
+    private int windowSize;
+
+    @Value("${smpp.enquire-link-interval-ms:30000}")
+    private long enquireLinkIntervalMs;
+
+    @Value("${smpp.response-timeout-ms:5000}")
+    private long responseTimeoutMs;
+
+    @Value("${smpp.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
     private final UserService userService;
+    private SmppSessionPool sessionPool;
 
     public SmsService(UserService userService) {
         this.userService = userService;
     }
+
+    @PostConstruct
+    void init() {
+        SmppSessionPool.Settings settings = new SmppSessionPool.Settings();
+        settings.setHost(host);
+        settings.setPort(port);
+        settings.setSystemId(systemId);
+        settings.setPassword(password);
+        settings.setSystemType(systemType);
+        settings.setSourceAddress(sourceAddress);
+        settings.setPoolSize(poolSize);
+        settings.setWindowSize(windowSize);
+        settings.setEnquireLinkIntervalMs(enquireLinkIntervalMs);
+        settings.setResponseTimeoutMs(responseTimeoutMs);
+        settings.setConnectTimeoutMs(connectTimeoutMs);
+        sessionPool = new SmppSessionPool(settings);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessionPool.close();
+        logger.debug("SMPP session pool closed");
+    }
     /**
      * Sends an OTP code to the user's phone number using their email as identifier.
      *
@@ -54,60 +92,66 @@ public class SmsService implements OtpDeliveryService {
      */
     @Override
     public void sendOtp(String email, String code) {
-        String phoneNumber = userService.getPhoneByEmail(email);
+        sendOtp(new OtpRecipient(null, email, null), code);
+    }
+
+    /**
+     * Sends an OTP code to the recipient's phone number. The number is looked up by email only
+     * when the recipient does not carry it.
+     *
+     * @param recipient the user to whom the code is sent
+     * @param code      the OTP code to be sent
+     */
+    @Override
+    public void sendOtp(OtpRecipient recipient, String code) {
+        String phoneNumber = recipient.getPhoneNumber() != null
+                ? recipient.getPhoneNumber()
+                : userService.getPhoneByEmail(recipient.getEmail());
         String message = "Ваш OTP-код: " + code + ". Не сообщайте его никому.";
 
-        logger.info("Preparing to send OTP via SMS to phone {} for user '{}'", phoneNumber, email);
+        logger.info("Preparing to send OTP via SMS to phone {} for user '{}'", phoneNumber, recipient.getEmail());
         sendSms(phoneNumber, message);
     }
     /**
-     * Sends an SMS message to the specified phone number via SMPP.
+     * Sends an SMS message to the specified phone number via a pooled SMPP session
+     * and waits for the submit_sm_resp.
      *
      * @param phoneNumber recipient's phone number
      * @param message     message content
      */
     public void sendSms(String phoneNumber, String message) {
-        Connection connection = null;
-        Session session = null;
-
         try {
-            connection = new TCPIPConnection(host, port);
-            session = new Session(connection);
-
-            BindTransmitter bindRequest = new BindTransmitter();
-            bindRequest.setSystemId(systemId);
-            bindRequest.setPassword(password);
-            bindRequest.setSystemType(systemType);
-            bindRequest.setInterfaceVersion((byte) 0x34);
-            bindRequest.setAddressRange(sourceAddress);
-
-            logger.debug("Connecting to SMPP at {}:{}", host, port);
-            BindResponse bindResponse = session.bind(bindRequest);
-
-            if (bindResponse.getCommandStatus() != 0) {
-                throw new RuntimeException("SMPP Bind failed with status: " + bindResponse.getCommandStatus());
-            }
+            SubmitSMResp response = sendSmsAsync(phoneNumber, message).join();
+            logger.debug("SMS to {} accepted by SMSC with message id {}", phoneNumber, response.getMessageId());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("Failed to send SMS to {}: {}", phoneNumber, cause.getMessage(), cause);
+            throw new RuntimeException("SMPP sending failed: " + cause.getMessage(), cause);
+        }
+    }
 
-            SubmitSM submitSM = new SubmitSM();
+    /**
+     * Submits an SMS message without waiting for the SMSC response.
+     *
+     * @param phoneNumber recipient's phone number
+     * @param message     message content
+     * @return future completed with the submit_sm_resp, or exceptionally if the SMSC rejected the message
+     */
+    public CompletableFuture<SubmitSMResp> sendSmsAsync(String phoneNumber, String message) {
+        SubmitSM submitSM = new SubmitSM();
+        try {
             submitSM.setSourceAddr(sourceAddress);
             submitSM.setDestAddr(phoneNumber);
             submitSM.setShortMessage(message);
+        } catch (PDUException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-            session.submit(submitSM);
-
-        } catch (PDUException | TimeoutException | WrongSessionStateException | IOException e) {
-            logger.error("Failed to send SMS to {}: {}", phoneNumber, e.getMessage(), e);
-            throw new RuntimeException("SMPP sending failed: " + e.getMessage(), e);
-        } finally {
-            if (session != null) {
-                try {
-                    session.unbind();
-                    session.close();
-                    logger.debug("SMPP session closed");
-                } catch (Exception e) {
-                    logger.warn("Error closing SMPP session: {}", e.getMessage());
-                }
+        return sessionPool.submit(submitSM).thenApply(response -> {
+            if (response.getCommandStatus() != 0) {
+                throw new IllegalStateException("SMPP submit failed with status: " + response.getCommandStatus());
             }
-        }
+            return response;
+        });
     }
 }
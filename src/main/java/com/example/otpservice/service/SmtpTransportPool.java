@@ -0,0 +1,201 @@
+package com.example.otpservice.service;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of connected and authenticated SMTP transports.
+ *
+ * A transport is borrowed for one message or a whole batch and then returned, so STARTTLS and
+ * AUTH are paid once per connection instead of once per message. Connections idle for longer
+ * than the idle timeout are closed on the next borrow, and a connection that fails while sending
+ * is replaced and the message is retried once on a fresh connection.
+ */
+public class SmtpTransportPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    public SmtpTransportPool(Session session, String host, int port, String username, String password,
+                             int maxConnections, long idleTimeoutMs, long borrowTimeoutMs) {
+        this.session = session;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new Semaphore(maxConnections);
+    }
+
+    /**
+     * Sends a single message over a pooled connection.
+     *
+     * @param message the message to send
+     * @throws MessagingException if the message could not be sent
+     */
+    public void send(Message message) throws MessagingException {
+        sendBatch(List.of(message));
+    }
+
+    /**
+     * Sends several messages one after another over the same connection.
+     *
+     * @param messages the messages to send
+     * @throws MessagingException if a message could not be sent; messages before it have been sent
+     */
+    public void sendBatch(List<? extends Message> messages) throws MessagingException {
+        PooledTransport transport = borrow();
+        boolean healthy = false;
+        try {
+            for (Message message : messages) {
+                transport = sendWithRetry(transport, message);
+            }
+            healthy = true;
+        } catch (SendFailedException e) {
+            // Rejected recipient: the connection itself is still usable
+            healthy = true;
+            throw e;
+        } finally {
+            release(transport, healthy);
+        }
+    }
+
+    private PooledTransport sendWithRetry(PooledTransport transport, Message message) throws MessagingException {
+        message.saveChanges();
+        try {
+            transport.transport.sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException e) {
+            // A rejected recipient leaves the connection open; a server that closed it may also be
+            // reported as a failed send, e.g. "[EOF]" in reply to MAIL FROM
+            if (e instanceof SendFailedException && transport.transport.isConnected()) {
+                throw e;
+            }
+            logger.warn("SMTP connection failed while sending, reconnecting: {}", e.getMessage());
+            closeQuietly(transport);
+            PooledTransport fresh = connect();
+            try {
+                fresh.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException retryFailure) {
+                // The caller still holds the closed connection, so the fresh one would never be returned
+                closeQuietly(fresh);
+                throw retryFailure;
+            }
+            transport = fresh;
+        }
+        transport.lastUsed = System.currentTimeMillis();
+        messagesSent.incrementAndGet();
+        return transport;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available within " + borrowTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+
+        try {
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                if (System.currentTimeMillis() - transport.lastUsed < idleTimeoutMs) {
+                    connectionsReused.incrementAndGet();
+                    return transport;
+                }
+                logger.debug("Closing SMTP connection idle for more than {} ms", idleTimeoutMs);
+                closeQuietly(transport);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledTransport transport, boolean healthy) {
+        // A connection closed while sending was replaced or has nothing left to release
+        if (healthy && !transport.closed) {
+            idle.offerFirst(transport);
+        } else if (!transport.closed) {
+            closeQuietly(transport);
+        }
+        permits.release();
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        transport.connect(host, port, username, password);
+        connectionsOpened.incrementAndGet();
+        logger.debug("Opened SMTP connection to {}:{}", host, port);
+        return new PooledTransport(transport);
+    }
+
+    private static void closeQuietly(PooledTransport transport) {
+        transport.closed = true;
+        try {
+            transport.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.otpservice.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side rate limiter for the Telegram Bot API.
+ *
+ * Spaces messages so that no more than the configured number is sent per second and, after a
+ * 429 response, holds every send until the {@code retry_after} period announced by Telegram has
+ * passed. Callers reserve a slot and get back how long they have to wait; the limiter itself never
+ * blocks, so it can be used from the asynchronous send path.
+ */
+public class TelegramRateLimiter {
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    public TelegramRateLimiter(int messagesPerSecond) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, messagesPerSecond);
+    }
+
+    /**
+     * Reserves the next free send slot.
+     *
+     * @return delay in milliseconds before the caller may send
+     */
+    public long reserve() {
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndUpdate(next -> Math.max(next, now) + intervalNanos);
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, Math.max(slot, now) - now));
+    }
+
+    /**
+     * Holds all further sends for the given number of seconds, as requested by a 429 response.
+     *
+     * @param retryAfterSeconds value of {@code parameters.retry_after}
+     */
+    public void pause(long retryAfterSeconds) {
+        long resumeAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+        nextSlot.getAndUpdate(next -> Math.max(next, resumeAt));
+    }
+}
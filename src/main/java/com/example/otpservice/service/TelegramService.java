@@ -1,21 +1,32 @@
 package com.example.otpservice.service;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for sending OTP codes to users via Telegram Bot API.
+ * A single HTTP client is shared by all sends, so connections to the Bot API are kept alive and reused.
  */
 @Service
 public class TelegramService implements OtpDeliveryService {
+    private static final Logger logger = LoggerFactory.getLogger(TelegramService.class);
 
     @Value("${telegram.bot.token}")
     private String botToken;
@@ -23,7 +34,37 @@ public class TelegramService implements OtpDeliveryService {
     @Value("${telegram.chat.id}")
     private String chatId;
 
-    private static final String TELEGRAM_API_URL = "https://api.telegram.org/bot";
+    @Value("${telegram.api.url:https://api.telegram.org}")
+    private String apiUrl;
+
+    @Value("${telegram.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${telegram.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+
+    @Value("${telegram.rate-limit.messages-per-second:30}")
+    private int messagesPerSecond;
+
+    @Value("${telegram.max-retries:3}")
+    private int maxRetries;
+
+    private final ObjectMapper objectMapper;
+    private HttpClient httpClient;
+    private TelegramRateLimiter rateLimiter;
+
+    public TelegramService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        rateLimiter = new TelegramRateLimiter(messagesPerSecond);
+    }
 
     /**
      * Sends an OTP code to the Telegram chat.
@@ -33,34 +74,86 @@ public class TelegramService implements OtpDeliveryService {
      */
     @Override
     public void sendOtp(String email, String code) {
+        try {
+            sendOtpAsync(email, code).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Error sending request to Telegram API", e.getCause());
+        }
+    }
+
+    /**
+     * Sends an OTP code to the Telegram chat without blocking the calling thread.
+     *
+     * @param email the email address of the user (ignored for Telegram)
+     * @param code  the OTP code to be sent
+     * @return future completed when Telegram has accepted the message
+     */
+    public CompletableFuture<Void> sendOtpAsync(String email, String code) {
         String message = String.format("Your OTP code is: %s", code);
-        String encodedMessage = urlEncode(message);
-        String url = String.format("%s%s/sendMessage?chat_id=%s&text=%s",
-                TELEGRAM_API_URL,
+        String url = String.format("%s/bot%s/sendMessage?chat_id=%s&text=%s",
+                apiUrl,
                 botToken,
-                chatId,
-                encodedMessage
+                urlEncode(chatId),
+                urlEncode(message)
         );
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .GET()
+                .build();
 
-        sendTelegramRequest(url);
+        return sendTelegramRequest(request, 0);
     }
 
     /**
-     * Sends an HTTP GET request to the Telegram API to deliver the message.
+     * Sends the request once the rate limiter allows it. A 429 response pauses the limiter for the
+     * announced {@code retry_after} and the request is sent again.
      *
-     * @param url the fully constructed Telegram API URL
+     * @param request the prepared Telegram API request
+     * @param attempt number of 429 responses already received for this request
      */
-    private void sendTelegramRequest(String url) {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url);
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-                if (statusCode != 200) {
-                    throw new RuntimeException("Failed to send OTP via Telegram. Status code: " + statusCode);
-                }
+    private CompletableFuture<Void> sendTelegramRequest(HttpRequest request, int attempt) {
+        long delayMs = rateLimiter.reserve();
+        CompletableFuture<HttpResponse<String>> response = delayMs == 0
+                ? httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                : CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS))
+                        .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+
+        return response.thenCompose(httpResponse -> {
+            int statusCode = httpResponse.statusCode();
+            if (statusCode == 200) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (statusCode == 429 && attempt < maxRetries) {
+                long retryAfter = parseRetryAfter(httpResponse.body());
+                logger.warn("Telegram rate limit hit, retrying after {}s", retryAfter);
+                rateLimiter.pause(retryAfter);
+                return sendTelegramRequest(request, attempt + 1);
             }
+            throw new RuntimeException("Failed to send OTP via Telegram. Status code: " + statusCode);
+        }).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Error sending request to Telegram API", cause);
+        });
+    }
+
+    /**
+     * Extracts {@code parameters.retry_after} from a Telegram error response.
+     *
+     * @param body the response body
+     * @return seconds to wait, at least 1
+     */
+    private long parseRetryAfter(String body) {
+        try {
+            JsonNode retryAfter = objectMapper.readTree(body).path("parameters").path("retry_after");
+            return Math.max(1, retryAfter.asLong(1));
         } catch (IOException e) {
-            throw new RuntimeException("Error sending request to Telegram API", e);
+            return 1;
         }
     }
 
@@ -73,4 +166,4 @@ public class TelegramService implements OtpDeliveryService {
     private String urlEncode(String value) {
         return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
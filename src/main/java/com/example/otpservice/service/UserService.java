@@ -1,26 +1,71 @@
 package com.example.otpservice.service;
 
 import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.exception.PasswordHashingRejectedException;
 import com.example.otpservice.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 /**
  * Service responsible for user registration and validation logic.
+ *
+ * Identity lookups (id, email, phone, role) used on every OTP request are served from a bounded
+ * cache whose entries expire after {@code user.cache.ttl-seconds}. Entries are invalidated when a
+ * user is registered or deleted through this service; changes made on another instance become
+ * visible here at the latest when the entry expires.
+ *
+ * Passwords are hashed and checked by {@link PasswordHasher} on its own bounded pool, and logins for an
+ * email with too many recent failures are refused by {@link LoginAttemptLimiter} before any hashing.
  */
 @Service
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+    private final MeterRegistry meterRegistry;
+    private Cache<String, UserIdentity> identitiesByEmail;
+    private Cache<Long, UserIdentity> identitiesById;
+
+    @Value("${user.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${user.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher,
+                       LoginAttemptLimiter loginAttemptLimiter, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder(); // можно позже внедрить как бин
+        this.passwordHasher = passwordHasher;
+        this.loginAttemptLimiter = loginAttemptLimiter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        identitiesByEmail = buildCache();
+        identitiesById = buildCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, identitiesByEmail, "users.by-email");
+        CaffeineCacheMetrics.monitor(meterRegistry, identitiesById, "users.by-id");
+    }
+
+    private <K> Cache<K, UserIdentity> buildCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
     }
 
     /**
@@ -30,6 +75,7 @@ public class UserService {
      * @param email       the email address
      * @param rawPassword plain text password
      * @param isAdmin     true if the user should be an admin
+     * @throws PasswordHashingRejectedException if the password hashing pool is saturated
      */
     public void registerUser(String username, String email, String rawPassword, String phoneNumber, boolean isAdmin) {
         if (userRepository.findByUsername(username).isPresent()) {
@@ -47,7 +93,7 @@ public class UserService {
             throw new IllegalStateException("Admin already exists");
         }
 
-        String passwordHash = passwordEncoder.encode(rawPassword);
+        String passwordHash = passwordHasher.encode(rawPassword);
         logger.debug("Password successfully hashed for username '{}'", username);
 
         User user = new User();
@@ -58,35 +104,79 @@ public class UserService {
         user.setRole(isAdmin ? User.Role.ADMIN : User.Role.USER);
 
         userRepository.save(user);
+        identitiesByEmail.invalidate(email);
         logger.info("User '{}' registered successfully with role '{}'", username, user.getRole());
     }
 
+    /**
+     * Deletes a user and drops it from the identity cache.
+     *
+     * @param userId the user's ID
+     */
+    public void deleteUser(Long userId) {
+        userRepository.deleteById(userId);
+        identitiesById.invalidate(userId);
+        // Deletion is rare, so scanning the email cache is cheaper than keeping a reverse index
+        identitiesByEmail.asMap().values().removeIf(identity -> identity.id().equals(userId));
+    }
+
     /**
      * Authenticates a user using email and password.
+     * A hash made with a lower BCrypt cost than the configured one is replaced after a successful login.
      *
      * @param email user email
      * @param rawPassword raw password input
      * @return User object if authentication is successful
      * @throws IllegalArgumentException if email is not found or password is invalid
+     * @throws com.example.otpservice.exception.LoginBlockedException if the email has too many recent failures
+     * @throws PasswordHashingRejectedException if the password hashing pool is saturated
      */
     public User authenticateUser(String email, String rawPassword) {
         logger.info("Authenticating user with email '{}'", email);
-
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> {
-                    logger.warn("Authentication failed: email '{}' not found", email);
-                    return new IllegalArgumentException("Invalid email or password");
-                });
-
-        if (!passwordEncoder.matches(rawPassword, user.getPasswordHash())) {
+        loginAttemptLimiter.reserve(email);
+
+        boolean matches;
+        User user;
+        try {
+            user = userRepository.findByEmail(email).orElse(null);
+            matches = user != null && passwordHasher.matches(rawPassword, user.getPasswordHash());
+        } catch (RuntimeException e) {
+            // No verdict on the password, e.g. the hashing pool is full: the attempt does not count
+            loginAttemptLimiter.release(email);
+            throw e;
+        }
+        if (user == null) {
+            logger.warn("Authentication failed: email '{}' not found", email);
+            loginAttemptLimiter.recordFailure(email);
+            throw new IllegalArgumentException("Invalid email or password");
+        }
+        if (!matches) {
             logger.warn("Authentication failed: incorrect password for email '{}'", email);
+            loginAttemptLimiter.recordFailure(email);
             throw new IllegalArgumentException("Invalid email or password");
         }
+        loginAttemptLimiter.recordSuccess(email);
+
+        if (passwordHasher.needsRehash(user.getPasswordHash())) {
+            rehash(user, rawPassword);
+        }
 
         logger.info("User '{}' authenticated successfully", user.getUsername());
         return user;
     }
 
+    private void rehash(User user, String rawPassword) {
+        try {
+            String passwordHash = passwordHasher.encode(rawPassword);
+            userRepository.updatePasswordHash(user.getId(), passwordHash);
+            user.setPasswordHash(passwordHash);
+            logger.info("Password hash of user '{}' upgraded to the current BCrypt cost", user.getUsername());
+        } catch (PasswordHashingRejectedException e) {
+            // The login itself succeeded; the hash is upgraded on a later login
+            logger.info("Password hash of user '{}' not upgraded: {}", user.getUsername(), e.getMessage());
+        }
+    }
+
     /**
      * Finds a user ID by email.
      *
@@ -94,9 +184,7 @@ public class UserService {
      * @return the user ID
      */
     public Long getUserIdByEmail(String email) {
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email))
-                .getId();
+        return findIdentityByEmail(email).id();
     }
 
     /**
@@ -106,9 +194,12 @@ public class UserService {
      * @return the user's email
      */
     public String getEmailByUserId(Long userId) {
-        return userRepository.findById(userId)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId))
-                .getEmail();
+        UserIdentity identity = identitiesById.getIfPresent(userId);
+        if (identity == null) {
+            identity = cache(userRepository.findById(userId)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId)));
+        }
+        return identity.email();
     }
 
     /**
@@ -119,8 +210,29 @@ public class UserService {
      * @throws UsernameNotFoundException if no user is found with the given email
      */
     public String getPhoneByEmail(String email) {
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email))
-                .getPhoneNumber();
+        return findIdentityByEmail(email).phoneNumber();
+    }
+
+    private UserIdentity findIdentityByEmail(String email) {
+        UserIdentity identity = identitiesByEmail.getIfPresent(email);
+        if (identity == null) {
+            // Unknown emails are not cached, so a user registered on another instance is found immediately
+            identity = cache(userRepository.findByEmail(email)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email)));
+        }
+        return identity;
+    }
+
+    private UserIdentity cache(User user) {
+        UserIdentity identity = new UserIdentity(user.getId(), user.getEmail(), user.getPhoneNumber(), user.getRole());
+        identitiesByEmail.put(identity.email(), identity);
+        identitiesById.put(identity.id(), identity);
+        return identity;
+    }
+
+    /**
+     * Cached identity of a user, without the password hash.
+     */
+    private record UserIdentity(Long id, String email, String phoneNumber, User.Role role) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.example.otpservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread, e.g. while blocking inside a
+ * {@code synchronized} block such as those of the opensmpp {@code Session}. A pinned virtual thread
+ * occupies one of the few carrier threads, so a handful of them can stall every request.
+ *
+ * Runs only with {@code spring.threads.virtual.enabled=true}. Listens to the JFR event
+ * {@code jdk.VirtualThreadPinned} for pins longer than {@code otp.threads.pinning.threshold-ms}, records
+ * them in the {@code otp.threads.virtual.pinned} timer and logs the first pin at every code location
+ * with its stack trace; later pins at the same location are logged at DEBUG.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Timer pinnedTimer;
+    private final Set<String> reportedLocations = ConcurrentHashMap.newKeySet();
+    private RecordingStream recordingStream;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${otp.threads.pinning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${otp.threads.pinning.threshold-ms:20}")
+    private long thresholdMs;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.pinnedTimer = Timer.builder("otp.threads.virtual.pinned")
+                .description("Time virtual threads spent pinned to their carrier thread")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        if (!virtualThreads || !enabled) {
+            return;
+        }
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        logger.info("Reporting virtual threads pinned for more than {} ms", thresholdMs);
+    }
+
+    void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+        String location = location(event.getStackTrace());
+        if (reportedLocations.add(location)) {
+            logger.warn("Virtual thread {} pinned to its carrier for {} ms at {}:{}{}",
+                    threadName(event), event.getDuration().toMillis(), location, System.lineSeparator(), event.getStackTrace());
+        } else {
+            logger.debug("Virtual thread {} pinned to its carrier for {} ms at {}",
+                    threadName(event), event.getDuration().toMillis(), location);
+        }
+    }
+
+    /**
+     * Returns the innermost frame outside the JDK, i.e. the application or library code that blocked while pinned.
+     */
+    static String location(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    private static String threadName(RecordedEvent event) {
+        if (event.getThread() == null) {
+            return "?";
+        }
+        String name = event.getThread().getJavaName();
+        return name == null || name.isEmpty() ? "#" + event.getThread().getJavaThreadId() : name;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- ======================
+-- Однократный переход otp_codes с кода в открытом виде (колонка code) на его HMAC (code_hash).
+-- Выполняется вручную (psql -f) при остановленном сервисе, если таблица была создана до появления
+-- code_hash, и до migrate-otp-codes-partitioning.sql, если нужен и он. HMAC прежних кодов посчитать
+-- нельзя без ключа, поэтому действующие коды истекают (пользователи запросят новые), а строкам без
+-- code_hash записываются 32 нулевых байта, которые не совпадают с HMAC ни одного кода.
+-- ======================
+
+BEGIN;
+
+ALTER TABLE otp_codes ADD COLUMN IF NOT EXISTS code_hash BYTEA
+    CONSTRAINT otp_codes_code_hash_check CHECK (octet_length(code_hash) = 32);
+UPDATE otp_codes SET status = 'EXPIRED' WHERE code_hash IS NULL AND status = 'ACTIVE';
+UPDATE otp_codes SET code_hash = decode(repeat('00', 32), 'hex') WHERE code_hash IS NULL;
+ALTER TABLE otp_codes ALTER COLUMN code_hash SET NOT NULL;
+DROP INDEX IF EXISTS idx_otp_active_user_operation_code;
+ALTER TABLE otp_codes DROP COLUMN IF EXISTS code;
+
+COMMIT;
@@ -0,0 +1,48 @@
+-- ======================
+-- Однократный перевод существующей таблицы otp_codes на секционирование по created_at.
+-- Выполняется вручную (psql -f) при остановленном сервисе, если таблица была создана
+-- до появления секционирования. Все существующие строки становятся одной секцией
+-- otp_codes_p<текущая дата>, которая удаляется вместе с остальными по истечении срока хранения.
+-- Если в таблице ещё есть колонка code, сначала выполняется migrate-otp-codes-hash.sql.
+-- При следующем запуске сервиса schema.sql построит индексы на всех секциях.
+-- ======================
+
+BEGIN;
+
+ALTER TABLE otp_codes RENAME TO otp_codes_legacy;
+-- Первичный ключ секции должен включать ключ секционирования; новый (id, created_at) построится при присоединении
+ALTER TABLE otp_codes_legacy DROP CONSTRAINT otp_codes_pkey;
+DROP INDEX IF EXISTS idx_otp_user_operation;
+DROP INDEX IF EXISTS idx_otp_user_operation_created;
+DROP INDEX IF EXISTS idx_otp_active_user_operation_code;
+DROP INDEX IF EXISTS idx_otp_active_expires_at;
+
+-- Последовательность otp_codes_id_seq сохраняется, чтобы идентификаторы не повторялись.
+-- Имена CHECK-ограничений должны совпадать с ограничениями прежней таблицы, иначе её нельзя присоединить как секцию.
+CREATE TABLE otp_codes (
+    id INTEGER NOT NULL DEFAULT nextval('otp_codes_id_seq'),
+    user_id BIGINT NOT NULL,
+    code_hash BYTEA NOT NULL CONSTRAINT otp_codes_code_hash_check CHECK (octet_length(code_hash) = 32),
+    operation_id VARCHAR(255) NOT NULL,
+    status VARCHAR(10) NOT NULL CONSTRAINT otp_codes_status_check CHECK (status IN ('ACTIVE', 'USED', 'EXPIRED')),
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    delivery_status VARCHAR(10) NOT NULL DEFAULT 'PENDING'
+        CONSTRAINT otp_codes_delivery_status_check CHECK (delivery_status IN ('PENDING', 'SENT', 'FAILED', 'REJECTED')),
+    CONSTRAINT otp_codes_pkey PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_otp_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+ALTER SEQUENCE otp_codes_id_seq OWNED BY otp_codes.id;
+
+CREATE TABLE otp_codes_default PARTITION OF otp_codes DEFAULT;
+
+DO $$
+DECLARE
+    partition_name TEXT := 'otp_codes_p' || to_char(current_date, 'YYYYMMDD');
+BEGIN
+    EXECUTE format('ALTER TABLE otp_codes_legacy RENAME TO %I', partition_name);
+    EXECUTE format('ALTER TABLE otp_codes ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                   partition_name, current_date + 1);
+END $$;
+
+COMMIT;
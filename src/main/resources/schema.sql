@@ -15,19 +15,41 @@ CREATE TABLE IF NOT EXISTS users (
 -- Таблица OTP-кодов
 -- ======================
 
+-- Таблица секционирована по дням (created_at). Секции otp_codes_pYYYYMMDD создаёт и удаляет
+-- OtpPartitionManager; строки, для которых секции ещё нет, попадают в otp_codes_default.
+-- Сам код не хранится: code_hash — HMAC-SHA256 кода с ключом otp.code.hmac-key (32 байта).
 CREATE TABLE IF NOT EXISTS otp_codes (
-    id SERIAL PRIMARY KEY,
+    id SERIAL,
     user_id BIGINT NOT NULL,
-    code VARCHAR(20) NOT NULL,
+    code_hash BYTEA NOT NULL CONSTRAINT otp_codes_code_hash_check CHECK (octet_length(code_hash) = 32),
     operation_id VARCHAR(255) NOT NULL,
     status VARCHAR(10) NOT NULL CHECK (status IN ('ACTIVE', 'USED', 'EXPIRED')),
     created_at TIMESTAMP NOT NULL,
     expires_at TIMESTAMP NOT NULL,
+    delivery_status VARCHAR(10) NOT NULL DEFAULT 'PENDING' CHECK (delivery_status IN ('PENDING', 'SENT', 'FAILED', 'REJECTED')),
+    CONSTRAINT otp_codes_pkey PRIMARY KEY (id, created_at),
     CONSTRAINT fk_otp_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS otp_codes_default PARTITION OF otp_codes DEFAULT;
+
+-- Статус доставки для баз, созданных до появления асинхронной отправки
+ALTER TABLE otp_codes ADD COLUMN IF NOT EXISTS delivery_status VARCHAR(10) NOT NULL DEFAULT 'PENDING'
+    CHECK (delivery_status IN ('PENDING', 'SENT', 'FAILED', 'REJECTED'));
 
--- Индекс для ускорения поиска по user_id и operation_id
-CREATE INDEX IF NOT EXISTS idx_otp_user_operation ON otp_codes (user_id, operation_id);
+-- Поиск последнего кода операции и удаление кодов пользователя
+CREATE INDEX IF NOT EXISTS idx_otp_user_operation_created ON otp_codes (user_id, operation_id, created_at DESC);
+-- Прежний индекс является префиксом idx_otp_user_operation_created
+DROP INDEX IF EXISTS idx_otp_user_operation;
+
+-- Проверка наличия и валидация активного кода: только строки со статусом ACTIVE. Код сверяется
+-- в приложении по code_hash, поэтому в индексе его нет
+CREATE INDEX IF NOT EXISTS idx_otp_active_user_operation ON otp_codes (user_id, operation_id)
+    WHERE status = 'ACTIVE';
+
+-- Поиск просроченных активных кодов планировщиком
+CREATE INDEX IF NOT EXISTS idx_otp_active_expires_at ON otp_codes (expires_at)
+    WHERE status = 'ACTIVE';
 
 -- ======================
 -- Таблица конфигурации OTP
@@ -36,10 +58,69 @@ CREATE INDEX IF NOT EXISTS idx_otp_user_operation ON otp_codes (user_id, operati
 CREATE TABLE IF NOT EXISTS otp_config (
     id SERIAL PRIMARY KEY,
     code_length INT NOT NULL DEFAULT 6,
-    ttl_seconds INT NOT NULL DEFAULT 300
+    ttl_seconds INT NOT NULL DEFAULT 300,
+    -- Увеличивается при каждом изменении; по нему экземпляры сервиса замечают новую конфигурацию
+    version BIGINT NOT NULL DEFAULT 1
 );
 
+ALTER TABLE otp_config ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+
 -- Добавление начальной строки конфигурации, если таблица пуста
 INSERT INTO otp_config (code_length, ttl_seconds)
 SELECT 6, 300
 WHERE NOT EXISTS (SELECT 1 FROM otp_config);
+
+-- ======================
+-- Политики OTP по типам операций
+-- ======================
+
+-- Политика применяется к операциям, чей operation_id начинается с operation_prefix (побеждает самый длинный
+-- префикс). NULL в alphabet, max_attempts и delivery_channel означает значение по умолчанию.
+CREATE TABLE IF NOT EXISTS otp_policy (
+    id SERIAL PRIMARY KEY,
+    operation_prefix VARCHAR(100) NOT NULL UNIQUE,
+    code_length INT NOT NULL,
+    ttl_seconds INT NOT NULL,
+    alphabet VARCHAR(256),
+    max_attempts INT,
+    delivery_channel VARCHAR(20)
+);
+
+-- ======================
+-- Каналы доставки пользователей
+-- ======================
+
+-- channels — каналы через запятую в порядке перебора (например, TELEGRAM,SMS,EMAIL).
+-- При fan_out код отправляется во все каналы сразу. Пользователи без строки получают код по otp.delivery.channel.
+CREATE TABLE IF NOT EXISTS user_delivery_preferences (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    channels VARCHAR(100) NOT NULL,
+    fan_out BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+-- ======================
+-- Очередь отправки OTP-кодов (transactional outbox)
+-- ======================
+
+-- Строка пишется в одной транзакции с кодом в otp_codes и удаляется после доставки. Доставка, которая не удалась
+-- max-attempts раз, остаётся со статусом DEAD; значение кода в ней стирается.
+CREATE TABLE IF NOT EXISTS otp_delivery_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    otp_code_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    email VARCHAR(100) NOT NULL,
+    phone_number VARCHAR(20),
+    code VARCHAR(20),
+    channels VARCHAR(100) NOT NULL,
+    fan_out BOOLEAN NOT NULL DEFAULT FALSE,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'DEAD')),
+    attempts INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error TEXT
+);
+
+-- Выборка готовых к отправке строк
+CREATE INDEX IF NOT EXISTS idx_outbox_pending_next_attempt ON otp_delivery_outbox (next_attempt_at)
+    WHERE status = 'PENDING';
@@ -0,0 +1,159 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.support.OtpCodeHasherSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryOtpCodeRepositoryTest {
+    private OtpCodeRepositoryImpl jdbcRepository;
+    private PlatformTransactionManager transactionManager;
+    private InMemoryOtpCodeRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcRepository = mock(OtpCodeRepositoryImpl.class);
+        when(jdbcRepository.findAllActive()).thenReturn(List.of());
+        when(jdbcRepository.nextIds(anyInt()))
+                .thenAnswer(invocation -> LongStream.rangeClosed(1, invocation.<Integer>getArgument(0)).boxed().toList());
+
+        transactionManager = mock(PlatformTransactionManager.class);
+        repository = new InMemoryOtpCodeRepository(jdbcRepository, OtpCodeHasherSupport.create(), transactionManager);
+        ReflectionTestUtils.setField(repository, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(repository, "batchSize", 500);
+        ReflectionTestUtils.setField(repository, "maxPending", 100_000);
+        ReflectionTestUtils.setField(repository, "idBlockSize", 100);
+        ReflectionTestUtils.setField(repository, "writeThroughConsume", true);
+        repository.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.shutdown();
+    }
+
+    @Test
+    void savedCodesAreServedFromMemoryAndInsertedInOneBatch() {
+        for (int i = 0; i < 10; i++) {
+            repository.save(activeCode("op-" + i, "12345" + i));
+        }
+
+        assertThat(repository.existsByUserIdAndOperationId(1L, "op-0")).isTrue();
+        assertThat(repository.existsByUserIdAndOperationId(1L, "op-9")).isTrue();
+        verify(jdbcRepository, never()).saveAll(anyList());
+        verify(jdbcRepository, times(1)).nextIds(100);
+
+        repository.flush();
+
+        verify(jdbcRepository, times(1)).saveAll(argThat(codes -> codes.size() == 10));
+        assertThat(repository.getPendingWriteCount()).isZero();
+    }
+
+    @Test
+    void bulkLookupsAndIdsAreServedFromMemory() {
+        repository.save(activeCode("op-1", "111111"));
+
+        assertThat(repository.nextIds(3)).containsExactly(2L, 3L, 4L);
+        assertThat(repository.findActiveOperations(List.of(1L, 1L, 2L), List.of("op-1", "op-2", "op-1")))
+                .isEqualTo(Map.of(1L, Set.of("op-1")));
+        verify(jdbcRepository, times(1)).nextIds(100);
+        verify(jdbcRepository, never()).findActiveOperations(anyList(), anyList());
+    }
+
+    @Test
+    void usedStatusIsWrittenThroughAfterPendingInsert() {
+        OtpCode otpCode = activeCode("op", "111111");
+        repository.save(otpCode);
+        repository.updateDeliveryStatus(otpCode.getId(), otpCode.getCreatedAt(), DeliveryStatus.SENT);
+
+        repository.updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.USED);
+
+        InOrder order = inOrder(jdbcRepository);
+        order.verify(jdbcRepository).saveAll(anyList());
+        order.verify(jdbcRepository).updateDeliveryStatuses(argThat(codes -> codes.size() == 1
+                && codes.get(0).getId().equals(otpCode.getId()) && codes.get(0).getCreatedAt().equals(otpCode.getCreatedAt())
+                && codes.get(0).getDeliveryStatus() == DeliveryStatus.SENT));
+        order.verify(jdbcRepository).updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.USED);
+        assertThat(repository.existsByUserIdAndOperationId(1L, "op")).isFalse();
+    }
+
+    @Test
+    void exactlyOneConcurrentValidationConsumesTheCode() throws Exception {
+        OtpCode otpCode = activeCode("op", "333333");
+        repository.save(otpCode);
+
+        List<Optional<OtpStatus>> results = OtpCodeRepositoryImplTest.consumeConcurrently(
+                () -> repository.consumeActiveCode(1L, "op", "333333", LocalDateTime.now()));
+
+        assertThat(results).filteredOn(Optional::isPresent).containsExactly(Optional.of(OtpStatus.USED));
+        verify(jdbcRepository, times(1)).updateStatus(otpCode.getId(), otpCode.getCreatedAt(), OtpStatus.USED);
+    }
+
+    @Test
+    void failedFlushKeepsWritesQueued() {
+        doThrow(new IllegalStateException("database unavailable")).when(jdbcRepository).saveAll(anyList());
+        repository.save(activeCode("op", "222222"));
+
+        assertThatThrownBy(repository::flush).isInstanceOf(IllegalStateException.class);
+        assertThat(repository.getPendingWriteCount()).isEqualTo(1);
+
+        doNothing().when(jdbcRepository).saveAll(anyList());
+        repository.flush();
+        assertThat(repository.getPendingWriteCount()).isZero();
+    }
+
+    @Test
+    void failureInLaterBatchRollsBackTheWholeFlush() {
+        doThrow(new IllegalStateException("database unavailable")).doNothing()
+                .when(jdbcRepository).updateDeliveryStatuses(anyList());
+        OtpCode otpCode = activeCode("op", "333333");
+        repository.save(otpCode);
+        repository.updateDeliveryStatus(otpCode.getId(), otpCode.getCreatedAt(), DeliveryStatus.SENT);
+
+        assertThatThrownBy(repository::flush).isInstanceOf(IllegalStateException.class);
+        // The INSERT batch went through but was rolled back with the failed one, so both are queued again
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertThat(repository.getPendingWriteCount()).isEqualTo(2);
+
+        repository.flush();
+        verify(transactionManager).commit(any());
+        InOrder inOrder = inOrder(jdbcRepository);
+        inOrder.verify(jdbcRepository).saveAll(anyList());
+        inOrder.verify(jdbcRepository).updateDeliveryStatuses(anyList());
+        assertThat(repository.getPendingWriteCount()).isZero();
+    }
+
+    private static OtpCode activeCode(String operationId, String code) {
+        LocalDateTime now = LocalDateTime.now();
+        return new OtpCode(null, 1L, code, operationId, OtpStatus.ACTIVE, now, now.plusMinutes(5));
+    }
+}
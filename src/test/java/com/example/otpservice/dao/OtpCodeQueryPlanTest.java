@@ -0,0 +1,121 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks through EXPLAIN that every repository statement on otp_codes is served by an index.
+ * The table is seeded with 200 000 codes spread over daily partitions, of which 1% are ACTIVE, which
+ * is the usual shape in production: most codes are used or expired soon after they are created.
+ * On partitions the indexes are named after their columns, e.g. {@code otp_codes_p20250101_expires_at_idx}.
+ */
+class OtpCodeQueryPlanTest extends PostgresTestSupport {
+    private static final int USERS = 1_000;
+    private static final int CODES = 200_000;
+
+    private final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    private List<String> populatedPartitions;
+
+    @BeforeEach
+    void seed() {
+        OtpPartitionRepositoryImpl partitionRepository = new OtpPartitionRepositoryImpl(jdbcTemplate, transactionManager);
+        List<LocalDate> existing = partitionRepository.findPartitionDays();
+        for (LocalDate day = LocalDate.now().minusDays(3); !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+            if (!existing.contains(day)) {
+                partitionRepository.createPartition(day);
+            }
+        }
+        jdbcTemplate.update("INSERT INTO users (username, email, phone_number, password_hash, role) "
+                + "SELECT 'user' || i, 'user' || i || '@example.com', '79990000000', 'hash', 'USER' FROM generate_series(1, ?) i", USERS);
+        jdbcTemplate.update("INSERT INTO otp_codes (user_id, code_hash, operation_id, status, created_at, expires_at, delivery_status) "
+                + "SELECT i % ? + 1, sha256(convert_to(lpad((i % 1000000)::text, 6, '0'), 'UTF8')), 'op-' || i, "
+                + "CASE WHEN i % 100 = 0 THEN 'ACTIVE' WHEN i % 2 = 0 THEN 'USED' ELSE 'EXPIRED' END, "
+                + "now() - (? - i) * interval '1 second', now() - (? - i) * interval '1 second' + interval '5 minutes', 'SENT' "
+                + "FROM generate_series(1, ?) i", USERS, CODES, CODES, CODES);
+        jdbcTemplate.execute("VACUUM ANALYZE otp_codes");
+        populatedPartitions = jdbcTemplate.queryForList("SELECT DISTINCT tableoid::regclass::text FROM otp_codes", String.class);
+    }
+
+    @Test
+    void existsActiveUsesPartialIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.EXISTS_ACTIVE_SQL, 42L, "op-4200"))
+                .containsAnyOf("idx_otp_active_user_operation", "_user_id_operation_id_idx");
+    }
+
+    @Test
+    void findActiveHashesUsesPartialIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.FIND_ACTIVE_HASHES_SQL, 42L, "op-4200"))
+                .containsAnyOf("idx_otp_active_user_operation", "_user_id_operation_id_idx");
+    }
+
+    @Test
+    void findActiveOperationsUsesPartialIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.FIND_ACTIVE_OPERATIONS_SQL,
+                new Long[]{42L, 43L, 44L}, new String[]{"op-4200", "op-4300", "op-4400"}))
+                .containsAnyOf("idx_otp_active_user_operation", "_user_id_operation_id_idx");
+    }
+
+    @Test
+    void consumeActiveCodeUsesPrimaryKeyOfOnePartition() {
+        String plan = explain(OtpCodeRepositoryImpl.CONSUME_ACTIVE_CODE_SQL, now, 4200L, now);
+        assertThat(plan).contains("_pkey");
+        // Besides the parent table, only the partition of created_at is updated
+        assertThat(Pattern.compile("Update on otp_codes_").matcher(plan).results().count()).isEqualTo(1);
+    }
+
+    @Test
+    void expireActiveCodeUsesPartialIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.EXPIRE_ACTIVE_CODE_SQL, 42L, "op-4200"))
+                .containsAnyOf("idx_otp_active_user_operation", "_user_id_operation_id_idx");
+    }
+
+    @Test
+    void findLatestUsesUserOperationIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.FIND_LATEST_SQL, 42L, "op-4200"))
+                .containsAnyOf("idx_otp_user_operation_created", "_user_id_operation_id_created_at_idx");
+    }
+
+    @Test
+    void updatesByIdUsePrimaryKeyOfOnePartition() {
+        for (String plan : List.of(explain(OtpCodeRepositoryImpl.UPDATE_STATUS_SQL, "USED", 4200L, now),
+                explain(OtpCodeRepositoryImpl.UPDATE_DELIVERY_STATUS_SQL, "SENT", 4200L, now))) {
+            assertThat(plan).contains("_pkey");
+            assertThat(Pattern.compile("Update on otp_codes_").matcher(plan).results().count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void findAllActiveUsesPartialIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.FIND_ALL_ACTIVE_SQL)).containsAnyOf("idx_otp_active_", "_user_id_operation_id_idx", "_expires_at_idx");
+    }
+
+    @Test
+    void expireBatchUsesExpiresAtIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.EXPIRE_BATCH_SQL, now, 1000))
+                .containsAnyOf("idx_otp_active_expires_at", "_expires_at_idx");
+    }
+
+    @Test
+    void deleteByUserIdUsesUserOperationIndex() {
+        assertThat(explain(OtpCodeRepositoryImpl.DELETE_BY_USER_ID_SQL, 42L))
+                .containsAnyOf("idx_otp_user_operation_created", "_user_id_operation_id_created_at_idx");
+    }
+
+    private String explain(String sql, Object... args) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+        // Empty partitions are scanned sequentially at no cost; only partitions holding codes must use an index
+        for (String partition : populatedPartitions) {
+            assertThat(plan).as("plan of %s", sql).doesNotContainPattern("Seq Scan on " + Pattern.quote(partition) + "\\b");
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.support.OtpCodeHasherSupport;
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpCodeRepositoryImplTest extends PostgresTestSupport {
+    private static final int THREADS = 16;
+
+    @Test
+    void exactlyOneConcurrentValidationConsumesTheCode() throws Exception {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("alice");
+        LocalDateTime now = LocalDateTime.now();
+        OtpCode otpCode = new OtpCode(null, userId, "123456", "op", OtpStatus.ACTIVE, now, now.plusMinutes(5));
+        repository.save(otpCode);
+
+        List<Optional<OtpStatus>> results = consumeConcurrently(
+                () -> repository.consumeActiveCode(userId, "op", "123456", LocalDateTime.now()));
+
+        assertThat(results).filteredOn(Optional::isPresent).containsExactly(Optional.of(OtpStatus.USED));
+        assertThat(repository.findLatest(userId, "op")).get().extracting(OtpCode::getStatus).isEqualTo(OtpStatus.USED);
+    }
+
+    @Test
+    void expiredCodeIsMarkedExpiredInTheSameStatement() {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("bob");
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(new OtpCode(null, userId, "654321", "op", OtpStatus.ACTIVE, now.minusMinutes(10), now.minusMinutes(5)));
+
+        assertThat(repository.consumeActiveCode(userId, "op", "000000", now)).isEmpty();
+        assertThat(repository.consumeActiveCode(userId, "op", "654321", now)).contains(OtpStatus.EXPIRED);
+        assertThat(repository.consumeActiveCode(userId, "op", "654321", now)).isEmpty();
+    }
+
+    @Test
+    void onlyTheHashOfTheCodeIsStored() {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("erin");
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(new OtpCode(null, userId, "424242", "op", OtpStatus.ACTIVE, now, now.plusMinutes(5)));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT octet_length(code_hash) FROM otp_codes WHERE user_id = ?", Integer.class, userId))
+                .isEqualTo(32);
+        assertThat(repository.findLatest(userId, "op")).get().satisfies(otpCode -> {
+            assertThat(otpCode.getCode()).isNull();
+            assertThat(OtpCodeHasherSupport.create().matches("424242", otpCode.getCodeHash())).isTrue();
+        });
+        assertThat(repository.consumeActiveCode(userId, "op", "424243", now)).isEmpty();
+        assertThat(repository.consumeActiveCode(userId, "op", "424242", now)).contains(OtpStatus.USED);
+    }
+
+    @Test
+    void expireActiveCodeBurnsOnlyTheActiveCode() {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("dave");
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(new OtpCode(null, userId, "111111", "op", OtpStatus.USED, now.minusMinutes(2), now.plusMinutes(3)));
+        repository.save(new OtpCode(null, userId, "222222", "op", OtpStatus.ACTIVE, now, now.plusMinutes(5)));
+
+        assertThat(repository.expireActiveCode(userId, "op")).isTrue();
+        assertThat(repository.expireActiveCode(userId, "op")).isFalse();
+        assertThat(repository.consumeActiveCode(userId, "op", "222222", now)).isEmpty();
+        assertThat(jdbcTemplate.queryForList("SELECT status FROM otp_codes WHERE user_id = ? ORDER BY created_at", String.class, userId))
+                .containsExactly("USED", "EXPIRED");
+    }
+
+    @Test
+    void statusUpdatesMatchTheCodeByIdAndCreationTime() {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("grace");
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        OtpCode first = new OtpCode(null, userId, "111111", "op-1", OtpStatus.ACTIVE, now, now.plusMinutes(5));
+        OtpCode second = new OtpCode(null, userId, "222222", "op-2", OtpStatus.ACTIVE, now, now.plusMinutes(5));
+        repository.save(first);
+        repository.save(second);
+
+        repository.updateDeliveryStatus(first.getId(), now, DeliveryStatus.SENT);
+        repository.updateStatus(first.getId(), now.minusSeconds(1), OtpStatus.USED);
+        second.setStatus(OtpStatus.EXPIRED);
+        second.setDeliveryStatus(DeliveryStatus.FAILED);
+        repository.updateStatuses(List.of(second));
+        repository.updateDeliveryStatuses(List.of(second));
+
+        assertThat(repository.findLatest(userId, "op-1")).get().satisfies(otpCode -> {
+            assertThat(otpCode.getDeliveryStatus()).isEqualTo(DeliveryStatus.SENT);
+            // Another creation time is another row, even with the same id
+            assertThat(otpCode.getStatus()).isEqualTo(OtpStatus.ACTIVE);
+        });
+        assertThat(repository.findLatest(userId, "op-2")).get().satisfies(otpCode -> {
+            assertThat(otpCode.getStatus()).isEqualTo(OtpStatus.EXPIRED);
+            assertThat(otpCode.getDeliveryStatus()).isEqualTo(DeliveryStatus.FAILED);
+        });
+    }
+
+    @Test
+    void expireBatchExpiresOnlyOverdueCodesInChunks() {
+        OtpCodeRepositoryImpl repository = new OtpCodeRepositoryImpl(jdbcTemplate, OtpCodeHasherSupport.create());
+        long userId = createUser("carol");
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 25; i++) {
+            repository.save(new OtpCode(null, userId, "1111" + i, "old-" + i, OtpStatus.ACTIVE, now.minusMinutes(10), now.minusMinutes(5)));
+        }
+        repository.save(new OtpCode(null, userId, "222222", "fresh", OtpStatus.ACTIVE, now, now.plusMinutes(5)));
+
+        assertThat(repository.expireBatch(now, 10)).isEqualTo(10);
+        assertThat(repository.expireBatch(now, 10)).isEqualTo(10);
+        assertThat(repository.expireBatch(now, 10)).isEqualTo(5);
+        assertThat(repository.expireBatch(now, 10)).isZero();
+        assertThat(repository.findAllActive()).extracting(OtpCode::getOperationId).containsExactly("fresh");
+    }
+
+    @Test
+    void advisoryLockIsExclusiveAcrossSessions() {
+        AdvisoryLockRepositoryImpl lockRepository = new AdvisoryLockRepositoryImpl(jdbcTemplate);
+        boolean[] nestedRun = new boolean[1];
+
+        boolean outerRun = lockRepository.runWithLock(42L,
+                () -> nestedRun[0] = lockRepository.runWithLock(42L, () -> { }));
+
+        assertThat(outerRun).isTrue();
+        assertThat(nestedRun[0]).isFalse();
+        assertThat(lockRepository.runWithLock(42L, () -> { })).isTrue();
+    }
+
+    static <T> List<T> consumeConcurrently(Callable<T> validation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return validation.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
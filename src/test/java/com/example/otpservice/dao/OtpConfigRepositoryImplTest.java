@@ -0,0 +1,25 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpConfigRepositoryImplTest extends PostgresTestSupport {
+
+    @Test
+    void updateIncrementsVersion() {
+        OtpConfigRepositoryImpl repository = new OtpConfigRepositoryImpl(jdbcTemplate);
+        long before = repository.getVersion();
+
+        OtpConfig updated = repository.updateConfig(new OtpConfig(8, 120));
+
+        assertThat(updated.getVersion()).isEqualTo(before + 1);
+        assertThat(repository.getVersion()).isEqualTo(before + 1);
+        OtpConfig stored = repository.getConfig();
+        assertThat(stored.getCodeLength()).isEqualTo(8);
+        assertThat(stored.getTtlSeconds()).isEqualTo(120);
+        assertThat(stored.getVersion()).isEqualTo(before + 1);
+    }
+}
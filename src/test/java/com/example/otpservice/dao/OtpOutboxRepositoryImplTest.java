@@ -0,0 +1,155 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpOutboxEntry;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpOutboxRepositoryImplTest extends PostgresTestSupport {
+    private OtpOutboxRepositoryImpl repository;
+    private long userId;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        repository = new OtpOutboxRepositoryImpl(jdbcTemplate);
+        userId = createUser("alice");
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void claimLeasesEntriesAndCountsAttempts() {
+        OtpOutboxEntry saved = save(now.minusSeconds(1), DeliveryRoute.parse("SMS,EMAIL", true));
+
+        List<OtpOutboxEntry> claimed = repository.claimBatch(now, now.plusSeconds(30), 10);
+
+        assertThat(claimed).hasSize(1);
+        OtpOutboxEntry entry = claimed.get(0);
+        assertThat(entry.getId()).isEqualTo(saved.getId());
+        assertThat(entry.getAttempts()).isEqualTo(1);
+        assertThat(entry.getCode()).isEqualTo("123456");
+        assertThat(entry.getRecipient().getPhoneNumber()).isEqualTo("79990000000");
+        assertThat(entry.getRoute().getChannels()).containsExactly(DeliveryChannel.SMS, DeliveryChannel.EMAIL);
+        assertThat(entry.getRoute().isFanOut()).isTrue();
+        // Leased until the delivery finishes
+        assertThat(repository.claimBatch(now.plusSeconds(29), now.plusSeconds(60), 10)).isEmpty();
+        assertThat(repository.claimBatch(now.plusSeconds(31), now.plusSeconds(60), 10))
+                .extracting(OtpOutboxEntry::getAttempts).containsExactly(2);
+    }
+
+    @Test
+    void claimTakesOldestDueEntriesUpToLimit() {
+        OtpOutboxEntry oldest = save(now.minusSeconds(3), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        OtpOutboxEntry older = save(now.minusSeconds(2), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        save(now.minusSeconds(1), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        save(now.plusSeconds(10), DeliveryRoute.of(DeliveryChannel.EMAIL));
+
+        assertThat(repository.claimBatch(now, now.plusSeconds(30), 2))
+                .extracting(OtpOutboxEntry::getId).containsExactlyInAnyOrder(oldest.getId(), older.getId());
+        assertThat(repository.claimBatch(now, now.plusSeconds(30), 10)).hasSize(1);
+    }
+
+    @Test
+    void concurrentClaimsSkipLockedEntries() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            save(now.minusSeconds(1), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> first = executor.submit(() -> transactionTemplate.execute(status -> {
+                int size = repository.claimBatch(now, now.plusSeconds(30), 4).size();
+                claimed.countDown();
+                awaitQuietly(release);
+                return size;
+            }));
+            assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // The first claim has not committed yet; its rows are skipped instead of waited for
+            assertThat(repository.claimBatch(now, now.plusSeconds(30), 10)).hasSize(6);
+            release.countDown();
+            assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(4);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rescheduleAndDeadLetter() {
+        OtpOutboxEntry first = save(now.minusSeconds(1), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        OtpOutboxEntry second = save(now.minusSeconds(1), DeliveryRoute.of(DeliveryChannel.EMAIL));
+
+        repository.reschedule(first.getId(), now.plusSeconds(5), "SMTP is down");
+        repository.deadLetter(second.getId(), "gave up");
+
+        assertThat(repository.claimBatch(now, now.plusSeconds(30), 10)).isEmpty();
+        assertThat(repository.claimBatch(now.plusSeconds(6), now.plusSeconds(30), 10))
+                .extracting(OtpOutboxEntry::getId).containsExactly(first.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM otp_delivery_outbox WHERE id = ?", String.class, first.getId()))
+                .isEqualTo("SMTP is down");
+        assertThat(jdbcTemplate.queryForObject("SELECT code FROM otp_delivery_outbox WHERE id = ?", String.class, second.getId()))
+                .isNull();
+    }
+
+    @Test
+    void statsCountPendingAndDeadEntries() {
+        OtpOutboxEntry oldest = save(now.minusSeconds(30), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        save(now.minusSeconds(10), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        OtpOutboxEntry delivered = save(now.minusSeconds(5), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        OtpOutboxEntry dead = save(now.minusSeconds(60), DeliveryRoute.of(DeliveryChannel.EMAIL));
+        repository.delete(delivered.getId());
+        repository.deadLetter(dead.getId(), "gave up");
+
+        OtpOutboxRepository.Stats stats = repository.stats();
+
+        assertThat(stats.pending()).isEqualTo(2);
+        assertThat(stats.dead()).isEqualTo(1);
+        assertThat(stats.oldestPendingCreatedAt()).isEqualTo(oldest.getCreatedAt());
+    }
+
+    @Test
+    void entriesAreRemovedWithTheirUser() {
+        save(now, DeliveryRoute.of(DeliveryChannel.EMAIL));
+
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+
+        assertThat(repository.stats().pending()).isZero();
+    }
+
+    private OtpOutboxEntry save(LocalDateTime createdAt, DeliveryRoute route) {
+        OtpCode otpCode = new OtpCode(null, userId, "123456", "op", OtpStatus.ACTIVE,
+                createdAt.withNano(0), createdAt.withNano(0).plusMinutes(5));
+        otpCode.setId(42L);
+        OtpOutboxEntry entry = new OtpOutboxEntry(otpCode,
+                new OtpRecipient(userId, "alice@example.com", "79990000000"), route);
+        repository.save(entry);
+        return entry;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
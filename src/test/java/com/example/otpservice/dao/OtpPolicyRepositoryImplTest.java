@@ -0,0 +1,63 @@
+package com.example.otpservice.dao;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OtpPolicyRepositoryImplTest extends PostgresTestSupport {
+    private OtpPolicyRepositoryImpl repository;
+    private OtpConfigRepositoryImpl configRepository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE otp_policy RESTART IDENTITY");
+        repository = new OtpPolicyRepositoryImpl(jdbcTemplate);
+        configRepository = new OtpConfigRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void everyChangeIncrementsVersion() {
+        long before = configRepository.getVersion();
+        OtpPolicy policy = new OtpPolicy(null, "payment-", 8, 120, "0123456789ABCDEF", 3, DeliveryChannel.SMS);
+
+        repository.save(policy);
+        assertThat(policy.getId()).isNotNull();
+        assertThat(configRepository.getVersion()).isEqualTo(before + 1);
+
+        policy.setTtlSeconds(60);
+        policy.setDeliveryChannel(null);
+        assertThat(repository.update(policy)).isTrue();
+        assertThat(configRepository.getVersion()).isEqualTo(before + 2);
+        OtpPolicy stored = repository.findAll().get(0);
+        assertThat(stored.getTtlSeconds()).isEqualTo(60);
+        assertThat(stored.getAlphabet()).isEqualTo("0123456789ABCDEF");
+        assertThat(stored.getMaxAttempts()).isEqualTo(3);
+        assertThat(stored.getDeliveryChannel()).isNull();
+
+        assertThat(repository.delete(policy.getId())).isTrue();
+        assertThat(configRepository.getVersion()).isEqualTo(before + 3);
+        assertThat(repository.findAll()).isEmpty();
+    }
+
+    @Test
+    void rejectsSecondPolicyForThePrefix() {
+        repository.save(new OtpPolicy(null, "login-", 6, 300, null, null, null));
+        long before = configRepository.getVersion();
+
+        assertThatThrownBy(() -> repository.save(new OtpPolicy(null, "login-", 4, 60, null, null, null)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(configRepository.getVersion()).isEqualTo(before);
+    }
+
+    @Test
+    void reportsMissingPolicy() {
+        assertThat(repository.update(new OtpPolicy(42L, "login-", 6, 300, null, null, null))).isFalse();
+        assertThat(repository.delete(42L)).isFalse();
+    }
+}
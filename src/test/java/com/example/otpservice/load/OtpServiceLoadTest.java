@@ -0,0 +1,487 @@
+package com.example.otpservice.load;
+
+import com.example.otpservice.model.User;
+import com.example.otpservice.security.JwtUtil;
+import com.example.otpservice.security.OtpCodeHasher;
+import com.example.otpservice.support.LoadStatistics;
+import com.example.otpservice.support.PostgresTestSupport;
+import com.example.otpservice.support.SmppSimulatorStub;
+import com.example.otpservice.support.SmtpServerStub;
+import com.example.otpservice.support.TelegramApiStub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load test: starts the application on a random port against PostgreSQL (see
+ * {@link PostgresTestSupport}) with in-process SMTP, Telegram and SMPP stand-ins, and drives a mix of
+ * registrations, logins and OTP round trips (generate, status, wait for delivery, validate) over HTTP.
+ * Prints throughput, error rate and p50/p99 latency per endpoint; the {@code delivery} row is the time
+ * from the generate response until the code reached the channel stand-in.
+ *
+ * Excluded from the regular build; run with {@code mvn -Pload-test test}. Tunable through system
+ * properties, e.g. {@code -Dload.threads=32 -Dload.duration-seconds=60 -Dload.channel=SMS}:
+ * <ul>
+ *     <li>{@code load.threads} (clients, each on its own virtual thread), {@code load.duration-seconds},
+ *     {@code load.users} (registered before the run)</li>
+ *     <li>{@code load.seed-users}: insert the users directly and issue their tokens without logging in, which
+ *     makes runs with thousands of users start quickly</li>
+ *     <li>{@code load.virtual-threads}: run the application with {@code spring.threads.virtual.enabled}</li>
+ *     <li>{@code load.channel}: EMAIL, SMS, TELEGRAM or FILE</li>
+ *     <li>{@code load.mix}: relative weights of the scenarios, default {@code register:1,login:2,otp:7};
+ *     {@code generate} only requests a code, without waiting for its delivery</li>
+ *     <li>{@code load.smtp-delay-ms}, {@code load.smpp-delay-ms}, {@code load.telegram-delay-ms}: channel latency</li>
+ *     <li>{@code load.max-error-rate}: the test fails above this share of failed requests</li>
+ * </ul>
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OtpServiceLoadTest extends PostgresTestSupport {
+    private static final String PASSWORD = "load-test-password";
+    private static final Pattern EMAIL_CODE = Pattern.compile("Your OTP code is: (\\d+)");
+    // The SMS text is not in the SMPP default alphabet, but the digits of the code survive the encoding
+    private static final Pattern SMS_CODE = Pattern.compile("(\\d{4,})");
+    private static final Pattern FILE_CODE = Pattern.compile("Email: (\\S+), OTP Code: (\\S+)");
+    private static final Path OTP_FILE = Path.of("target/load-test-otp-codes.txt");
+
+    private static final int THREADS = Integer.getInteger("load.threads", 16);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 30);
+    private static final int USERS = Integer.getInteger("load.users", 100);
+    private static final boolean SEED_USERS = Boolean.getBoolean("load.seed-users");
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("load.virtual-threads");
+    private static final String CHANNEL = System.getProperty("load.channel", "EMAIL");
+    private static final String MIX = System.getProperty("load.mix", "register:1,login:2,otp:7");
+    private static final long CODE_TIMEOUT_MS = Long.getLong("load.code-timeout-ms", 10_000);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+
+    private static SmtpServerStub smtp;
+    private static SmppSimulatorStub smsc;
+    private static TelegramApiStub telegram;
+    private static long otpFilePosition;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private OtpCodeHasher otpCodeHasher;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LoadStatistics statistics = new LoadStatistics();
+    private final List<VirtualUser> users = new CopyOnWriteArrayList<>();
+    private final AtomicInteger userSequence = new AtomicInteger();
+    private final Queue<String> telegramCodes = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> fileCodes = new ConcurrentHashMap<>();
+    private final ReentrantLock otpFileLock = new ReentrantLock();
+
+    @BeforeAll
+    static void startChannels() throws IOException {
+        smtp = new SmtpServerStub();
+        smtp.setMessageDelayMs(Long.getLong("load.smtp-delay-ms", 20));
+        smsc = new SmppSimulatorStub();
+        smsc.setSubmitDelayMs(Long.getLong("load.smpp-delay-ms", 20));
+        telegram = new TelegramApiStub();
+        telegram.setResponseDelayMs(Long.getLong("load.telegram-delay-ms", 50));
+        // The file is appended to across runs; only codes written by this run are read
+        otpFilePosition = Files.exists(OTP_FILE) ? Files.size(OTP_FILE) : 0;
+    }
+
+    @AfterAll
+    static void stopChannels() throws IOException {
+        smtp.close();
+        smsc.close();
+        telegram.close();
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> dataSource.getUrl());
+        registry.add("spring.datasource.username", () -> dataSource.getUsername());
+        registry.add("spring.datasource.password", () -> dataSource.getPassword());
+        registry.add("spring.sql.init.mode", () -> "never");
+        registry.add("logging.level.com.example.otpservice", () -> "WARN");
+        registry.add("spring.threads.virtual.enabled", () -> VIRTUAL_THREADS);
+        // Every client keeps a connection open; the thread count, not the connection limit, is what is compared
+        registry.add("server.tomcat.max-connections", () -> Math.max(8192, THREADS + 100));
+        registry.add("server.tomcat.accept-count", () -> Math.max(100, THREADS));
+
+        registry.add("jwt.secret", () -> "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=");
+        registry.add("jwt.expiration", () -> "3600000");
+        registry.add("otp.delivery.channel", () -> CHANNEL);
+        registry.add("otp.file.name", OTP_FILE::toString);
+        registry.add("otp.code.hmac-key", () -> "bG9hZC10ZXN0LW90cC1obWFjLWtleS0yNTYtYml0cyE=");
+
+        registry.add("email.username", () -> "otp");
+        registry.add("email.password", () -> "otp");
+        registry.add("email.from", () -> "otp@example.com");
+        registry.add("mail.smtp.host", () -> "localhost");
+        registry.add("mail.smtp.port", () -> smtp.getPort());
+        registry.add("mail.smtp.auth", () -> "false");
+        registry.add("mail.smtp.starttls.enable", () -> "false");
+
+        registry.add("smpp.host", () -> "localhost");
+        registry.add("smpp.port", () -> smsc.getPort());
+        registry.add("smpp.system_id", () -> "otp");
+        registry.add("smpp.password", () -> "otp");
+        registry.add("smpp.system_type", () -> "OTP");
+        registry.add("smpp.source_addr", () -> "OTPService");
+
+        registry.add("telegram.bot.token", () -> "load-test");
+        registry.add("telegram.chat.id", () -> "1");
+        registry.add("telegram.api.url", () -> telegram.getBaseUrl());
+    }
+
+    @Test
+    void sustainsMixedLoad() throws Exception {
+        if (SEED_USERS) {
+            seedUsers();
+        } else {
+            for (int i = 0; i < USERS; i++) {
+                VirtualUser user = register();
+                if (user != null) {
+                    login(user);
+                }
+            }
+        }
+
+        Map<String, Integer> weights = parseMix();
+        int totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(workers.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    runScenario(pick(weights, totalWeight));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        workers.shutdown();
+
+        System.out.printf("%nLoad test: %d clients, %s threads, %s, channel %s, mix %s%n%s", THREADS,
+                VIRTUAL_THREADS ? "virtual" : "platform", elapsed, CHANNEL, MIX, statistics.report(elapsed));
+
+        long requests = 0;
+        long errors = 0;
+        for (String endpoint : List.of("POST /register", "POST /login", "POST /otp/generate", "GET /otp/status", "delivery", "POST /otp/validate")) {
+            requests += statistics.getRequests(endpoint);
+            errors += statistics.getErrors(endpoint);
+        }
+        assertThat(requests).isPositive();
+        assertThat((double) errors / requests).as("error rate").isLessThanOrEqualTo(MAX_ERROR_RATE);
+    }
+
+    private void runScenario(String scenario) throws Exception {
+        switch (scenario) {
+            case "register" -> register();
+            case "login" -> {
+                VirtualUser user = randomUser();
+                if (user != null) {
+                    login(user);
+                }
+            }
+            case "otp", "generate" -> {
+                VirtualUser user = acquireUser();
+                if (user == null) {
+                    return;
+                }
+                try {
+                    if (user.token == null && !login(user)) {
+                        return;
+                    }
+                    if (scenario.equals("otp")) {
+                        otpRoundTrip(user);
+                    } else {
+                        send("POST /otp/generate", post("/otp/generate",
+                                Map.of("operationId", UUID.randomUUID().toString()), user.token), 201);
+                    }
+                } finally {
+                    user.busy.set(false);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private VirtualUser register() throws Exception {
+        int n = userSequence.incrementAndGet();
+        VirtualUser user = new VirtualUser("load" + n, "load" + n + "@example.com", String.format("7999%07d", n));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("username", user.username);
+        body.put("email", user.email);
+        body.put("phone", user.phone);
+        body.put("password", PASSWORD);
+        body.put("admin", false);
+
+        HttpResponse<String> response = send("POST /register", post("/register", body, null), 201);
+        if (response == null || response.statusCode() != 201) {
+            return null;
+        }
+        users.add(user);
+        return user;
+    }
+
+    /**
+     * Inserts the users with one shared password hash and issues their tokens directly, so that thousands
+     * of users are ready without as many BCrypt hashes and logins.
+     */
+    private void seedUsers() {
+        String passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+        Map<String, VirtualUser> seeded = new LinkedHashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            int n = userSequence.incrementAndGet();
+            VirtualUser user = new VirtualUser("load" + n, "load" + n + "@example.com", String.format("7999%07d", n));
+            seeded.put(user.email, user);
+            rows.add(new Object[]{user.username, user.email, user.phone, passwordHash});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, email, phone_number, password_hash, role) VALUES (?, ?, ?, ?, 'USER')", rows);
+        jdbcTemplate.query("SELECT id, username, email FROM users", rs -> {
+            VirtualUser virtualUser = seeded.get(rs.getString("email"));
+            if (virtualUser != null) {
+                virtualUser.token = jwtUtil.generateToken(
+                        new User(rs.getLong("id"), rs.getString("username"), virtualUser.email, passwordHash, User.Role.USER));
+            }
+        });
+        users.addAll(seeded.values());
+    }
+
+    private boolean login(VirtualUser user) throws Exception {
+        HttpResponse<String> response = send("POST /login",
+                post("/login", Map.of("email", user.email, "password", PASSWORD), null), 200);
+        if (response == null || response.statusCode() != 200) {
+            return false;
+        }
+        user.token = objectMapper.readTree(response.body()).get("token").asText();
+        return true;
+    }
+
+    private void otpRoundTrip(VirtualUser user) throws Exception {
+        String operationId = UUID.randomUUID().toString();
+        HttpResponse<String> generated = send("POST /otp/generate",
+                post("/otp/generate", Map.of("operationId", operationId), user.token), 201);
+        if (generated == null || generated.statusCode() != 201) {
+            return;
+        }
+
+        send("GET /otp/status", request("/otp/status?operationId=" + URLEncoder.encode(operationId, StandardCharsets.UTF_8), user.token)
+                .GET()
+                .build(), 200);
+
+        long start = System.nanoTime();
+        String code = awaitCode(user, operationId);
+        statistics.record("delivery", System.nanoTime() - start, code != null);
+        if (code == null) {
+            return;
+        }
+
+        send("POST /otp/validate",
+                post("/otp/validate", Map.of("operationId", operationId, "code", code), user.token), 200);
+    }
+
+    /**
+     * Waits until the code for the operation has been delivered. EMAIL and SMS codes are read from the
+     * channel stand-ins and FILE codes from the file, each found by the recipient. Telegram messages all
+     * go to one chat, so once the delivery status is SENT the received code matching the HMAC stored in
+     * otp_codes is taken.
+     */
+    private String awaitCode(VirtualUser user, String operationId) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CODE_TIMEOUT_MS);
+        while (System.nanoTime() < deadline) {
+            String code = switch (CHANNEL.toUpperCase()) {
+                case "EMAIL" -> extractCode(smtp.takeLastMessage(user.email), EMAIL_CODE);
+                case "SMS" -> extractCode(smsc.takeLastMessage(user.phone), SMS_CODE);
+                case "FILE" -> takeFileCode(user.email);
+                default -> takeTelegramCode(user, operationId);
+            };
+            if (code != null) {
+                return code;
+            }
+            Thread.sleep(5);
+        }
+        return null;
+    }
+
+    private String takeTelegramCode(VirtualUser user, String operationId) {
+        byte[] codeHash = jdbcTemplate.query("SELECT c.code_hash FROM otp_codes c JOIN users u ON u.id = c.user_id "
+                        + "WHERE u.email = ? AND c.operation_id = ? AND c.delivery_status = 'SENT'",
+                rs -> rs.next() ? rs.getBytes(1) : null, user.email, operationId);
+        if (codeHash == null) {
+            return null;
+        }
+        for (String message : telegram.takeMessages()) {
+            String code = extractCode(message, EMAIL_CODE);
+            if (code != null) {
+                telegramCodes.add(code);
+            }
+        }
+        for (String candidate : telegramCodes) {
+            if (otpCodeHasher.matches(candidate, codeHash) && telegramCodes.remove(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private String takeFileCode(String email) throws IOException {
+        otpFileLock.lock();
+        try (RandomAccessFile file = new RandomAccessFile(OTP_FILE.toFile(), "r")) {
+            file.seek(otpFilePosition);
+            String line;
+            while ((line = file.readLine()) != null) {
+                Matcher matcher = FILE_CODE.matcher(line);
+                if (matcher.find()) {
+                    fileCodes.put(matcher.group(1), matcher.group(2));
+                }
+            }
+            otpFilePosition = file.getFilePointer();
+        } catch (java.io.FileNotFoundException e) {
+            return null;
+        } finally {
+            otpFileLock.unlock();
+        }
+        return fileCodes.remove(email);
+    }
+
+    private static String extractCode(String message, Pattern pattern) {
+        if (message == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(message);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest request, int expectedStatus) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            statistics.record(endpoint, System.nanoTime() - start, response.statusCode() == expectedStatus);
+            return response;
+        } catch (IOException e) {
+            statistics.record(endpoint, System.nanoTime() - start, false);
+            return null;
+        }
+    }
+
+    private HttpRequest post(String path, Map<String, Object> body, String token) throws IOException {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private VirtualUser randomUser() {
+        return users.isEmpty() ? null : users.get(ThreadLocalRandom.current().nextInt(users.size()));
+    }
+
+    /**
+     * Picks a user no other worker is running an OTP round trip for, so delivered codes are not mixed up.
+     */
+    private VirtualUser acquireUser() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            VirtualUser user = randomUser();
+            if (user != null && user.busy.compareAndSet(false, true)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Integer> parseMix() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : MIX.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    private static String pick(Map<String, Integer> weights, int totalWeight) {
+        int n = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            n -= entry.getValue();
+            if (n < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * A registered user. Logins may run for the same user on several workers, OTP round trips only on one.
+     */
+    private static final class VirtualUser {
+        final String username;
+        final String email;
+        final String phone;
+        final AtomicBoolean busy = new AtomicBoolean();
+        volatile String token;
+
+        VirtualUser(String username, String email, String phone) {
+            this.username = username;
+            this.email = email;
+            this.phone = phone;
+        }
+    }
+}
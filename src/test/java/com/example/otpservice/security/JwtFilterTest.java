@@ -0,0 +1,143 @@
+package com.example.otpservice.security;
+
+import com.example.otpservice.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtFilterTest {
+    // jjwt treats a String secret as Base64; this is "mysupersecurekeywith256bitlong!!" encoded
+    private static final String SECRET = "bXlzdXBlcnNlY3VyZWtleXdpdGgyNTZiaXRsb25nISE=";
+
+    private JwtKeyProvider keyProvider;
+    private JwtUtil jwtUtil;
+    private JwtFilter jwtFilter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        keyProvider = new JwtKeyProvider();
+        ReflectionTestUtils.setField(keyProvider, "secret", SECRET);
+        keyProvider.init();
+        jwtUtil = new JwtUtil(keyProvider);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        jwtFilter = new JwtFilter(keyProvider, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtFilter, "cacheMaxSize", 100L);
+        jwtFilter.init();
+
+        user = new User(7L, "alice", "alice@example.com", "hash", User.Role.USER);
+        user.setPhoneNumber("79990000007");
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void publishesUserIdFromToken() throws Exception {
+        AuthenticatedUser principal = authenticate(jwtUtil.generateToken(user));
+
+        assertThat(principal.getUserId()).isEqualTo(7L);
+        assertThat(principal.getEmail()).isEqualTo("alice@example.com");
+        assertThat(principal.getRole()).isEqualTo("USER");
+        assertThat(principal.getPhoneNumber()).isNull();
+    }
+
+    @Test
+    void includesPhoneOnlyWhenEnabled() throws Exception {
+        ReflectionTestUtils.setField(jwtUtil, "includeContact", true);
+
+        assertThat(authenticate(jwtUtil.generateToken(user)).getPhoneNumber()).isEqualTo("79990000007");
+    }
+
+    @Test
+    void acceptsTokensIssuedWithoutUserId() throws Exception {
+        String legacyToken = Jwts.builder()
+                .setSubject("alice@example.com")
+                .claim("role", "USER")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(keyProvider.getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
+
+        AuthenticatedUser principal = authenticate(legacyToken);
+
+        assertThat(principal.getUserId()).isNull();
+        assertThat(principal.getName()).isEqualTo("alice@example.com");
+    }
+
+    @Test
+    void servesRepeatedTokenFromCache() throws Exception {
+        String token = jwtUtil.generateToken(user);
+
+        AuthenticatedUser first = authenticate(token);
+        SecurityContextHolder.clearContext();
+        AuthenticatedUser second = authenticate(token);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void rejectsTokenWithModifiedSignatureAfterOriginalWasCached() throws Exception {
+        String token = jwtUtil.generateToken(user);
+        authenticate(token);
+        SecurityContextHolder.clearContext();
+        int i = token.length() - 5;
+        String tampered = token.substring(0, i) + (token.charAt(i) == 'A' ? 'B' : 'A') + token.substring(i + 1);
+
+        assertThat(filter(tampered).getStatus()).isEqualTo(401);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void rejectsExpiredToken() throws Exception {
+        String expired = Jwts.builder()
+                .setSubject("alice@example.com")
+                .claim("role", "USER")
+                .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                .signWith(keyProvider.getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThat(filter(expired).getStatus()).isEqualTo(401);
+    }
+
+    @Test
+    void rejectsSecretThatIsNotABase64KeyOf256Bits() {
+        JwtKeyProvider keyProvider = new JwtKeyProvider();
+        ReflectionTestUtils.setField(keyProvider, "secret", "mysupersecurekeywith256bitlong!!");
+
+        assertThatThrownBy(keyProvider::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    private MockHttpServletResponse filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/otp/status");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwtFilter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private AuthenticatedUser authenticate(String token) throws Exception {
+        MockHttpServletResponse response = filter(token);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getName()).isEqualTo("alice@example.com");
+        return (AuthenticatedUser) authentication.getPrincipal();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.otpservice.security;
+
+import com.example.otpservice.support.OtpCodeHasherSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OtpCodeHasherTest {
+    private final OtpCodeHasher otpCodeHasher = OtpCodeHasherSupport.create();
+
+    @Test
+    void hashMatchesOnlyTheSameCode() {
+        byte[] hash = otpCodeHasher.hash("123456");
+
+        assertThat(hash).hasSize(OtpCodeHasher.HASH_LENGTH);
+        assertThat(otpCodeHasher.matches("123456", hash)).isTrue();
+        assertThat(otpCodeHasher.matches("123457", hash)).isFalse();
+        assertThat(otpCodeHasher.matches("12345", hash)).isFalse();
+        assertThat(otpCodeHasher.matches("123456", null)).isFalse();
+    }
+
+    @Test
+    void hashIsStandardHmacSha256() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(Base64.getDecoder().decode(OtpCodeHasherSupport.KEY), "HmacSHA256"));
+
+        for (String code : new String[]{"123456", "ABCDEFGHJKLMNPQRSTUV", "ключ42", "\uD83D\uDD1112"}) {
+            assertThat(otpCodeHasher.hash(code)).isEqualTo(mac.doFinal(code.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void storedHashIsNotOverwrittenByLaterCalls() {
+        byte[] first = otpCodeHasher.hash("111111");
+        byte[] copy = first.clone();
+
+        otpCodeHasher.hash("222222");
+        otpCodeHasher.matches("333333", first);
+
+        assertThat(first).isEqualTo(copy);
+    }
+
+    @Test
+    void everyThreadComputesTheSameHash() throws Exception {
+        byte[] hash = otpCodeHasher.hash("ABC123");
+
+        assertThat(CompletableFuture.supplyAsync(() -> otpCodeHasher.hash("ABC123")).get()).isEqualTo(hash);
+    }
+
+    @Test
+    void hashDependsOnTheKey() {
+        OtpCodeHasher other = new OtpCodeHasher();
+        ReflectionTestUtils.setField(other, "key", "b3RoZXItb3RwLWhtYWMta2V5LW9mLTI1Ni1iaXRzISE=");
+        other.init();
+
+        assertThat(other.matches("123456", otpCodeHasher.hash("123456"))).isFalse();
+    }
+
+    @Test
+    void shortKeyIsRejected() {
+        OtpCodeHasher weak = new OtpCodeHasher();
+        ReflectionTestUtils.setField(weak, "key", "c2hvcnQta2V5");
+
+        assertThatThrownBy(weak::init).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("otp.code.hmac-key");
+    }
+}
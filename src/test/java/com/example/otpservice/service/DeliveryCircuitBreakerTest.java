@@ -0,0 +1,131 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.service.DeliveryCircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryCircuitBreakerTest {
+    private DeliveryCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        DeliveryCircuitBreaker.Settings settings = new DeliveryCircuitBreaker.Settings();
+        settings.setWindowSize(10);
+        settings.setMinimumCalls(10);
+        settings.setFailureRateThreshold(50);
+        settings.setOpenDurationMs(100);
+        settings.setHalfOpenCalls(2);
+        settings.setLatencyWindow(50);
+        settings.setMultiplier(2.0);
+        settings.setMinTimeoutMs(100);
+        settings.setMaxTimeoutMs(5000);
+        breaker = new DeliveryCircuitBreaker(settings);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        for (int i = 0; i < 5; i++) {
+            succeed(10);
+            assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+            breaker.onFailure();
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getNotPermittedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void staysClosedBelowThreshold() {
+        for (int i = 0; i < 100; i++) {
+            if (i % 3 == 0) {
+                breaker.onFailure();
+            } else {
+                succeed(10);
+            }
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void closesAfterSuccessfulTrialCalls() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        succeed(10);
+        succeed(10);
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.getFailureRate()).isZero();
+    }
+
+    @Test
+    void reopensWhenTrialCallFails() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void releasedTrialPermissionCanBeReused() throws InterruptedException {
+        open();
+        Thread.sleep(150);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+
+        breaker.releasePermission();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void adaptsTimeoutToObservedLatency() {
+        assertThat(breaker.getTimeoutMs()).isEqualTo(5000);
+
+        for (int i = 0; i < 50; i++) {
+            succeed(i < 49 ? 100 : 300);
+        }
+        // p99 of 50 samples is the largest one
+        assertThat(breaker.getTimeoutMs()).isEqualTo(600);
+
+        for (int i = 0; i < 50; i++) {
+            succeed(10);
+        }
+        assertThat(breaker.getTimeoutMs()).isEqualTo(100);
+    }
+
+    @Test
+    void countsSlowSuccessAsFailure() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(200), 100);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    private void succeed(long millis) {
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(millis), 5000);
+    }
+
+    private void open() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.DeliveryPreferenceRepository;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.OtpPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeliveryRoutingServiceTest {
+    private final OtpPolicy defaultPolicy = new OtpPolicy(null, "", 6, 300, null, null, null);
+    private DeliveryPreferenceRepository preferenceRepository;
+    private DeliveryRoutingService routingService;
+
+    @BeforeEach
+    void setUp() {
+        preferenceRepository = mock(DeliveryPreferenceRepository.class);
+        routingService = new DeliveryRoutingService(preferenceRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(routingService, "defaultChannels", "telegram, email");
+        ReflectionTestUtils.setField(routingService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(routingService, "cacheTtlSeconds", 300L);
+        routingService.init();
+    }
+
+    @Test
+    void cachesRoutesOfUsersWithAndWithoutPreference() {
+        DeliveryRoute chosen = new DeliveryRoute(List.of(DeliveryChannel.SMS, DeliveryChannel.EMAIL), true);
+        when(preferenceRepository.findByUserId(1L)).thenReturn(Optional.of(chosen));
+        when(preferenceRepository.findByUserId(2L)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(routingService.resolve(1L, defaultPolicy)).isSameAs(chosen);
+            assertThat(routingService.resolve(2L, defaultPolicy).getChannels())
+                    .containsExactly(DeliveryChannel.TELEGRAM, DeliveryChannel.EMAIL);
+        }
+
+        verify(preferenceRepository, times(1)).findByUserId(1L);
+        verify(preferenceRepository, times(1)).findByUserId(2L);
+    }
+
+    @Test
+    void policyChannelOverridesUserRoute() {
+        OtpPolicy payment = new OtpPolicy(1L, "payment-", 8, 120, null, null, DeliveryChannel.SMS);
+
+        DeliveryRoute route = routingService.resolve(1L, payment);
+
+        assertThat(route.getChannels()).containsExactly(DeliveryChannel.SMS);
+        verify(preferenceRepository, times(0)).findByUserId(1L);
+    }
+
+    @Test
+    void appliesOwnChangesImmediately() {
+        when(preferenceRepository.findByUserId(1L)).thenReturn(Optional.empty());
+        routingService.resolve(1L, defaultPolicy);
+        DeliveryRoute chosen = DeliveryRoute.of(DeliveryChannel.SMS);
+
+        routingService.updateRoute(1L, chosen);
+        assertThat(routingService.resolve(1L, defaultPolicy)).isSameAs(chosen);
+        verify(preferenceRepository).save(1L, chosen);
+
+        routingService.resetRoute(1L);
+        assertThat(routingService.resolve(1L, defaultPolicy).getChannels())
+                .containsExactly(DeliveryChannel.TELEGRAM, DeliveryChannel.EMAIL);
+        verify(preferenceRepository).deleteByUserId(1L);
+    }
+
+    @Test
+    void preloadLoadsRoutesOfUncachedUsersWithOneQuery() {
+        DeliveryRoute chosen = DeliveryRoute.of(DeliveryChannel.SMS);
+        when(preferenceRepository.findByUserId(1L)).thenReturn(Optional.empty());
+        routingService.getRoute(1L);
+        when(preferenceRepository.findByUserIds(List.of(2L, 3L))).thenReturn(Map.of(2L, chosen));
+
+        routingService.preload(List.of(1L, 2L, 3L));
+
+        assertThat(routingService.getRoute(2L)).isEqualTo(chosen);
+        assertThat(routingService.getRoute(3L).getChannels()).containsExactly(DeliveryChannel.TELEGRAM, DeliveryChannel.EMAIL);
+        verify(preferenceRepository, times(1)).findByUserIds(List.of(2L, 3L));
+        verify(preferenceRepository, times(1)).findByUserId(1L);
+    }
+}
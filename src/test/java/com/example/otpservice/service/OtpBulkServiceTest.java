@@ -0,0 +1,165 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.DeliveryPreferenceRepositoryImpl;
+import com.example.otpservice.dao.OtpCodeRepositoryImpl;
+import com.example.otpservice.dao.OtpOutboxRepositoryImpl;
+import com.example.otpservice.dao.UserRepositoryImpl;
+import com.example.otpservice.dto.OtpBulkGenerateRequest;
+import com.example.otpservice.dto.OtpBulkGenerateResult;
+import com.example.otpservice.dto.OtpBulkGenerateResult.Status;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.security.OtpCodeHasher;
+import com.example.otpservice.support.OtpCodeHasherSupport;
+import com.example.otpservice.support.PostgresTestSupport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OtpBulkServiceTest extends PostgresTestSupport {
+    private final OtpCodeHasher otpCodeHasher = OtpCodeHasherSupport.create();
+    private final List<List<OtpBulkGenerateResult>> chunks = new ArrayList<>();
+    private OtpConfigService otpConfigService;
+    private OtpOutboxService otpOutboxService;
+    private OtpBulkService bulkService;
+
+    @BeforeEach
+    void setUp() {
+        OtpCodeRepositoryImpl otpCodeRepository = new OtpCodeRepositoryImpl(jdbcTemplate, otpCodeHasher);
+        otpConfigService = mock(OtpConfigService.class);
+        when(otpConfigService.resolvePolicy(anyString())).thenReturn(new OtpPolicy(null, "", 6, 300, "0123456789", 3, null));
+        OtpCodeGenerator otpCodeGenerator = mock(OtpCodeGenerator.class);
+        when(otpCodeGenerator.generate(anyInt(), anyString())).thenReturn("123456", "234567", "345678", "456789");
+        DeliveryRoutingService routingService = new DeliveryRoutingService(
+                new DeliveryPreferenceRepositoryImpl(jdbcTemplate), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(routingService, "defaultChannels", "email");
+        ReflectionTestUtils.setField(routingService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(routingService, "cacheTtlSeconds", 300L);
+        routingService.init();
+        OtpAttemptTracker otpAttemptTracker = new OtpAttemptTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otpAttemptTracker, "trackedCodes", 100L);
+        otpAttemptTracker.init();
+        otpOutboxService = mock(OtpOutboxService.class);
+        when(otpOutboxService.isEnabled()).thenReturn(true);
+
+        OtpService otpService = new OtpService(otpCodeRepository, mock(OtpDeliveryDispatcher.class), mock(UserService.class),
+                otpCodeGenerator, otpConfigService, routingService, otpOutboxService, otpAttemptTracker, otpCodeHasher);
+        ReflectionTestUtils.setField(otpService, "defaultMaxAttempts", 5);
+        bulkService = new OtpBulkService(otpService, otpCodeRepository, new OtpOutboxRepositoryImpl(jdbcTemplate),
+                otpOutboxService, new UserRepositoryImpl(jdbcTemplate), otpConfigService, routingService, otpAttemptTracker,
+                transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(bulkService, "batchSize", 2);
+    }
+
+    @Test
+    void savesCodesAndOutboxEntriesChunkByChunk() {
+        long alice = createUser("alice");
+        long bob = createUser("bob");
+
+        int processed = bulkService.generate(List.of(request(alice, "op-1"), request(bob, "op-1"), request(alice, "op-2")).iterator(),
+                chunks::add);
+
+        assertThat(processed).isEqualTo(3);
+        assertThat(chunks).extracting(List::size).containsExactly(2, 1);
+        assertThat(chunks).flatExtracting(chunk -> chunk).extracting(OtpBulkGenerateResult::getStatus).containsOnly(Status.CREATED);
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT c.id, c.code_hash, c.status, o.code, o.channels "
+                + "FROM otp_codes c JOIN otp_delivery_outbox o ON o.otp_code_id = c.id ORDER BY c.id");
+        assertThat(rows).hasSize(3);
+        for (Map<String, Object> row : rows) {
+            assertThat(row.get("status")).isEqualTo("ACTIVE");
+            assertThat(row.get("channels")).isEqualTo("EMAIL");
+            assertThat(otpCodeHasher.matches((String) row.get("code"), (byte[]) row.get("code_hash"))).isTrue();
+        }
+    }
+
+    @Test
+    void reportsEveryRequestThatGetsNoCode() {
+        long alice = createUser("alice");
+        long bob = createUser("bob");
+        bulkService.generate(List.of(request(alice, "op-1")).iterator(), chunks::add);
+        chunks.clear();
+        ReflectionTestUtils.setField(bulkService, "batchSize", 10);
+
+        bulkService.generate(List.of(request(alice, "op-1"), request(999L, "op-1"), request(bob, "op-2"),
+                request(bob, "op-2"), request(null, "op-3"), request(bob, " ")).iterator(), chunks::add);
+
+        assertThat(chunks.get(0)).extracting(OtpBulkGenerateResult::getStatus).containsExactly(
+                Status.ALREADY_EXISTS, Status.USER_NOT_FOUND, Status.CREATED, Status.ALREADY_EXISTS, Status.INVALID, Status.INVALID);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_codes", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_delivery_outbox", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void processesRequestsReadBeforeMalformedInput() {
+        long alice = createUser("alice");
+        Iterator<OtpBulkGenerateRequest> requests = new Iterator<>() {
+            private boolean read;
+
+            @Override
+            public boolean hasNext() {
+                if (read) {
+                    throw new IllegalStateException("malformed");
+                }
+                return true;
+            }
+
+            @Override
+            public OtpBulkGenerateRequest next() {
+                if (read) {
+                    throw new NoSuchElementException();
+                }
+                read = true;
+                return request(alice, "op-1");
+            }
+        };
+
+        assertThatThrownBy(() -> bulkService.generate(requests, chunks::add)).hasMessage("malformed");
+        assertThat(chunks).singleElement().satisfies(chunk ->
+                assertThat(chunk).extracting(OtpBulkGenerateResult::getStatus).containsExactly(Status.CREATED));
+    }
+
+    @Test
+    void withoutOutboxCodesAreGeneratedOneByOne() {
+        when(otpOutboxService.isEnabled()).thenReturn(false);
+        long alice = createUser("alice");
+
+        bulkService.generate(List.of(request(alice, "op-1"), request(alice, "op-2")).iterator(), chunks::add);
+
+        assertThat(chunks.get(0)).extracting(OtpBulkGenerateResult::getStatus).containsExactly(Status.CREATED, Status.CREATED);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_codes", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_delivery_outbox", Integer.class)).isZero();
+    }
+
+    @Test
+    void unexpectedFailureOfOneItemDoesNotAbortTheStream() {
+        when(otpOutboxService.isEnabled()).thenReturn(false);
+        when(otpConfigService.resolvePolicy("op-broken")).thenThrow(new QueryTimeoutException("canceling statement"));
+        long alice = createUser("alice");
+
+        bulkService.generate(List.of(request(alice, "op-1"), request(alice, "op-broken"), request(alice, "op-2")).iterator(),
+                chunks::add);
+
+        assertThat(chunks).flatExtracting(chunk -> chunk).extracting(OtpBulkGenerateResult::getStatus)
+                .containsExactly(Status.CREATED, Status.ERROR, Status.CREATED);
+        assertThat(chunks.get(0).get(1).getMessage()).isEqualTo("canceling statement");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_codes", Integer.class)).isEqualTo(2);
+    }
+
+    private static OtpBulkGenerateRequest request(Long userId, String operationId) {
+        return new OtpBulkGenerateRequest(userId, operationId);
+    }
+}
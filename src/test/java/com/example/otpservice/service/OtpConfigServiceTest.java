@@ -0,0 +1,136 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpConfigRepository;
+import com.example.otpservice.dao.OtpPolicyRepository;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.model.OtpPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class OtpConfigServiceTest {
+    private OtpConfigRepository configRepository;
+    private OtpPolicyRepository policyRepository;
+    private OtpConfigService configService;
+
+    @BeforeEach
+    void setUp() {
+        configRepository = mock(OtpConfigRepository.class);
+        when(configRepository.getConfig()).thenReturn(new OtpConfig(6, 300, 1));
+        policyRepository = mock(OtpPolicyRepository.class);
+        configService = new OtpConfigService(configRepository, policyRepository);
+        configService.init();
+    }
+
+    @Test
+    void servesPolicyWithoutQueryingTheDatabase() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(configService.getConfig().getCodeLength()).isEqualTo(6);
+        }
+
+        verify(configRepository, times(1)).getConfig();
+        verifyNoMoreInteractions(configRepository);
+    }
+
+    @Test
+    void resolvesOperationPolicyWithoutQueryingTheDatabase() {
+        when(configRepository.getConfig()).thenReturn(new OtpConfig(6, 300, 2));
+        when(policyRepository.findAll()).thenReturn(List.of(new OtpPolicy(1L, "payment-", 8, 120, null, 3, DeliveryChannel.SMS)));
+        when(configRepository.getVersion()).thenReturn(2L);
+        configService.refresh();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(configService.resolvePolicy("payment-" + i).getCodeLength()).isEqualTo(8);
+            assertThat(configService.resolvePolicy("login-" + i).getCodeLength()).isEqualTo(6);
+        }
+
+        verify(policyRepository, times(2)).findAll();
+    }
+
+    @Test
+    void reloadsPoliciesAfterOwnChange() {
+        OtpPolicy policy = new OtpPolicy(null, "payment-", 8, 120, null, null, null);
+        when(configRepository.getConfig()).thenReturn(new OtpConfig(6, 300, 2));
+        when(policyRepository.findAll()).thenReturn(List.of(policy));
+
+        configService.createPolicy(policy);
+
+        verify(policyRepository).save(policy);
+        assertThat(configService.resolvePolicy("payment-1")).isSameAs(policy);
+        assertThat(configService.getPolicies()).containsExactly(policy);
+    }
+
+    @Test
+    void keepsPoliciesWhenOnlyTheGlobalConfigChanged() {
+        OtpPolicy policy = new OtpPolicy(1L, "payment-", 8, 120, null, null, null);
+        when(configRepository.getConfig()).thenReturn(new OtpConfig(6, 300, 2));
+        when(policyRepository.findAll()).thenReturn(List.of(policy));
+        when(configRepository.getVersion()).thenReturn(2L);
+        configService.refresh();
+        when(configRepository.updateConfig(any())).thenReturn(new OtpConfig(4, 60, 3));
+
+        configService.updateConfig(4, 60);
+
+        assertThat(configService.resolvePolicy("login-1").getCodeLength()).isEqualTo(4);
+        assertThat(configService.resolvePolicy("payment-1")).isSameAs(policy);
+        verify(policyRepository, times(2)).findAll();
+    }
+
+    @Test
+    void appliesOwnUpdateImmediately() {
+        when(configRepository.updateConfig(any())).thenReturn(new OtpConfig(8, 120, 2));
+
+        configService.updateConfig(8, 120);
+
+        assertThat(configService.getConfig().getCodeLength()).isEqualTo(8);
+        assertThat(configService.getConfig().getTtlSeconds()).isEqualTo(120);
+    }
+
+    @Test
+    void reloadsWhenAnotherInstanceChangedThePolicy() {
+        when(configRepository.getVersion()).thenReturn(2L);
+        when(configRepository.getConfig()).thenReturn(new OtpConfig(4, 60, 2));
+
+        configService.refresh();
+
+        assertThat(configService.getConfig().getCodeLength()).isEqualTo(4);
+        assertThat(configService.getConfig().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsReloadWhileVersionIsUnchanged() {
+        when(configRepository.getVersion()).thenReturn(1L);
+
+        configService.refresh();
+
+        verify(configRepository, times(1)).getConfig();
+    }
+
+    @Test
+    void keepsNewerPolicyWhenAnOlderOneArrivesLate() {
+        when(configRepository.updateConfig(any())).thenReturn(new OtpConfig(8, 120, 3));
+        when(configRepository.getVersion()).thenReturn(3L);
+        // the reload reads version 2 while a local update installs version 3
+        when(configRepository.getConfig())
+                .thenAnswer(invocation -> {
+                    configService.updateConfig(8, 120);
+                    return new OtpConfig(4, 60, 2);
+                })
+                .thenReturn(new OtpConfig(8, 120, 3));
+
+        configService.refresh();
+
+        assertThat(configService.getConfig().getVersion()).isEqualTo(3);
+        assertThat(configService.getConfig().getCodeLength()).isEqualTo(8);
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.exception.OtpDeliveryRejectedException;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpCode;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtpDeliveryDispatcherTest {
+    private final OtpRecipient recipient = new OtpRecipient(7L, "alice@example.com", "79990000007");
+    private final OtpCodeRepository otpCodeRepository = mock(OtpCodeRepository.class);
+    private final TelegramService telegramService = mock(TelegramService.class);
+    private final SmsService smsService = mock(SmsService.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DeliveryCircuitBreakerRegistry circuitBreakers;
+    private OtpDeliveryDispatcher dispatcher;
+    private OtpCode otpCode;
+
+    @BeforeEach
+    void setUp() {
+        OtpDeliveryFactory factory = mock(OtpDeliveryFactory.class);
+        when(factory.getService(DeliveryChannel.TELEGRAM)).thenReturn(telegramService);
+        when(factory.getService(DeliveryChannel.SMS)).thenReturn(smsService);
+        when(factory.getService(DeliveryChannel.EMAIL)).thenReturn(emailService);
+        circuitBreakers = new DeliveryCircuitBreakerRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(circuitBreakers, "windowSize", 4);
+        ReflectionTestUtils.setField(circuitBreakers, "minimumCalls", 4);
+        ReflectionTestUtils.setField(circuitBreakers, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(circuitBreakers, "openDurationMs", 60_000L);
+        ReflectionTestUtils.setField(circuitBreakers, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(circuitBreakers, "latencyWindow", 10);
+        ReflectionTestUtils.setField(circuitBreakers, "multiplier", 2.0);
+        ReflectionTestUtils.setField(circuitBreakers, "minTimeoutMs", 50L);
+        ReflectionTestUtils.setField(circuitBreakers, "maxTimeoutMs", 200L);
+        circuitBreakers.init();
+        dispatcher = new OtpDeliveryDispatcher(factory, otpCodeRepository, circuitBreakers);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 10);
+        ReflectionTestUtils.setField(dispatcher, "emailConcurrency", 1);
+        ReflectionTestUtils.setField(dispatcher, "telegramConcurrency", 1);
+        ReflectionTestUtils.setField(dispatcher, "smsConcurrency", 1);
+        ReflectionTestUtils.setField(dispatcher, "fileConcurrency", 1);
+        ReflectionTestUtils.setField(dispatcher, "shutdownTimeoutSeconds", 1);
+        dispatcher.init();
+
+        otpCode = new OtpCode();
+        otpCode.setId(42L);
+        otpCode.setCreatedAt(LocalDateTime.now());
+        otpCode.setCode("123456");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void fallsBackToNextChannelWhenDeliveryFails() {
+        doThrow(new RuntimeException("bot blocked")).when(telegramService).sendOtp(any(OtpRecipient.class), anyString());
+
+        dispatcher.dispatch(otpCode, route(false, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS, DeliveryChannel.EMAIL), recipient);
+
+        verify(otpCodeRepository, timeout(2000)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.SENT);
+        verify(smsService).sendOtp(recipient, "123456");
+        verify(emailService, never()).sendOtp(any(OtpRecipient.class), anyString());
+    }
+
+    @Test
+    void fallsBackToNextChannelWhenDeadlineIsExceeded() {
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(telegramService).sendOtp(any(OtpRecipient.class), anyString());
+
+        dispatcher.dispatch(otpCode, route(false, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS), recipient);
+
+        verify(smsService, timeout(2000)).sendOtp(recipient, "123456");
+        verify(otpCodeRepository, timeout(2000)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.SENT);
+    }
+
+    @Test
+    void marksFailedWhenEveryChannelFails() {
+        doThrow(new RuntimeException("down")).when(telegramService).sendOtp(any(OtpRecipient.class), anyString());
+        doThrow(new RuntimeException("down")).when(smsService).sendOtp(any(OtpRecipient.class), anyString());
+
+        dispatcher.dispatch(otpCode, route(false, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS), recipient);
+
+        verify(otpCodeRepository, timeout(2000)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.FAILED);
+        verify(otpCodeRepository, never()).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.SENT);
+    }
+
+    @Test
+    void marksFailedWhenFallbackIsRejectedAfterLastSendFailed() throws InterruptedException {
+        CountDownLatch fallingBack = new CountDownLatch(1);
+        CountDownLatch telegramFinished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            fallingBack.await(2, TimeUnit.SECONDS);
+            throw new RuntimeException("down");
+        }).when(telegramService).sendOtp(any(OtpRecipient.class), anyString());
+        ThreadPoolExecutor telegramExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1)) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                telegramFinished.countDown();
+            }
+        };
+        // The deadline moves on to SMS, whose queue rejects the code only once the Telegram send has finished
+        ThreadPoolExecutor smsExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1)) {
+            @Override
+            public void execute(Runnable command) {
+                fallingBack.countDown();
+                try {
+                    assertThat(telegramFinished.await(2, TimeUnit.SECONDS)).isTrue();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RejectedExecutionException("full");
+            }
+        };
+        executors().put(DeliveryChannel.TELEGRAM, telegramExecutor).shutdown();
+        executors().put(DeliveryChannel.SMS, smsExecutor).shutdown();
+
+        dispatcher.dispatch(otpCode, route(false, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS), recipient);
+
+        // Both threads that could report the failure are done once the Telegram worker and the deadline have run
+        assertThat(telegramFinished.await(2, TimeUnit.SECONDS)).isTrue();
+        ScheduledThreadPoolExecutor deadlineTimer = (ScheduledThreadPoolExecutor) ReflectionTestUtils.getField(dispatcher, "deadlineTimer");
+        deadlineTimer.shutdown();
+        assertThat(deadlineTimer.awaitTermination(2, TimeUnit.SECONDS)).isTrue();
+        verify(otpCodeRepository, times(1)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.FAILED);
+    }
+
+    @Test
+    void fanOutCompletesOnFirstSuccess() {
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(telegramService).sendOtp(any(OtpRecipient.class), anyString());
+        doThrow(new RuntimeException("down")).when(smsService).sendOtp(any(OtpRecipient.class), anyString());
+
+        dispatcher.dispatch(otpCode, route(true, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS, DeliveryChannel.EMAIL), recipient);
+
+        verify(otpCodeRepository, timeout(2000)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.SENT);
+        verify(emailService).sendOtp(recipient, "123456");
+        verify(otpCodeRepository, never()).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.FAILED);
+    }
+
+    @Test
+    void skipsChannelWhoseBreakerIsOpen() {
+        DeliveryCircuitBreaker telegramBreaker = circuitBreakers.get(DeliveryChannel.TELEGRAM);
+        for (int i = 0; i < 4; i++) {
+            telegramBreaker.onFailure();
+        }
+
+        dispatcher.dispatch(otpCode, route(false, DeliveryChannel.TELEGRAM, DeliveryChannel.SMS), recipient);
+
+        verify(otpCodeRepository, timeout(2000)).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.SENT);
+        verify(telegramService, never()).sendOtp(any(OtpRecipient.class), anyString());
+        verify(smsService).sendOtp(recipient, "123456");
+    }
+
+    @Test
+    void failsFastWhenEveryBreakerIsOpen() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreakers.get(DeliveryChannel.SMS).onFailure();
+        }
+
+        assertThatThrownBy(() -> dispatcher.dispatch(otpCode, DeliveryChannel.SMS, recipient))
+                .isInstanceOf(OtpDeliveryRejectedException.class);
+        verify(smsService, never()).sendOtp(any(OtpRecipient.class), anyString());
+        verify(otpCodeRepository).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.REJECTED);
+    }
+
+    @Test
+    void rejectsWhenNoChannelAcceptsTheCode() throws InterruptedException {
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1);
+        dispatcher.shutdown();
+        dispatcher.init();
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }).when(smsService).sendOtp(any(OtpRecipient.class), anyString());
+        // one code on the worker, one in the queue
+        dispatcher.dispatch(otpCode, DeliveryChannel.SMS, recipient);
+        started.await(2, TimeUnit.SECONDS);
+        dispatcher.dispatch(otpCode, DeliveryChannel.SMS, recipient);
+
+        assertThatThrownBy(() -> dispatcher.dispatch(otpCode, DeliveryChannel.SMS, recipient))
+                .isInstanceOf(OtpDeliveryRejectedException.class);
+        verify(otpCodeRepository).updateStatus(42L, otpCode.getCreatedAt(), OtpStatus.EXPIRED);
+        verify(otpCodeRepository).updateDeliveryStatus(42L, otpCode.getCreatedAt(), DeliveryStatus.REJECTED);
+    }
+
+    @Test
+    void usesVirtualThreadsExceptForPlatformThreadChannels() throws InterruptedException {
+        ReflectionTestUtils.setField(dispatcher, "virtualThreads", true);
+        ReflectionTestUtils.setField(dispatcher, "platformThreadChannels", List.of(DeliveryChannel.SMS));
+        dispatcher.shutdown();
+        dispatcher.init();
+        Map<DeliveryChannel, Thread> workers = new ConcurrentHashMap<>();
+        doAnswer(invocation -> workers.put(DeliveryChannel.EMAIL, Thread.currentThread()))
+                .when(emailService).sendOtp(any(OtpRecipient.class), anyString());
+        doAnswer(invocation -> workers.put(DeliveryChannel.SMS, Thread.currentThread()))
+                .when(smsService).sendOtp(any(OtpRecipient.class), anyString());
+
+        dispatcher.dispatch(otpCode, DeliveryChannel.EMAIL, recipient);
+        dispatcher.dispatch(otpCode, DeliveryChannel.SMS, recipient);
+
+        verify(emailService, timeout(2000)).sendOtp(recipient, "123456");
+        verify(smsService, timeout(2000)).sendOtp(recipient, "123456");
+        assertThat(workers.get(DeliveryChannel.EMAIL).isVirtual()).isTrue();
+        assertThat(workers.get(DeliveryChannel.EMAIL).getName()).startsWith("otp-delivery-email-");
+        assertThat(workers.get(DeliveryChannel.SMS).isVirtual()).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<DeliveryChannel, ThreadPoolExecutor> executors() {
+        return (Map<DeliveryChannel, ThreadPoolExecutor>) ReflectionTestUtils.getField(dispatcher, "executors");
+    }
+
+    private static DeliveryRoute route(boolean fanOut, DeliveryChannel... channels) {
+        return new DeliveryRoute(List.of(channels), fanOut);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.AdvisoryLockRepository;
+import com.example.otpservice.dao.OtpCodeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtpExpirationServiceTest {
+    private OtpCodeRepository otpCodeRepository;
+    private AdvisoryLockRepository advisoryLockRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private OtpExpirationService service;
+
+    @BeforeEach
+    void setUp() {
+        otpCodeRepository = mock(OtpCodeRepository.class);
+        advisoryLockRepository = mock(AdvisoryLockRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new OtpExpirationService(otpCodeRepository, advisoryLockRepository, meterRegistry);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+    }
+
+    @Test
+    void expiresInBatchesUntilAShortBatch() {
+        when(advisoryLockRepository.runWithLock(anyLong(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+        when(otpCodeRepository.expireBatch(any(LocalDateTime.class), anyInt())).thenReturn(100, 100, 42);
+
+        service.expireOtpCodes();
+
+        verify(otpCodeRepository, times(3)).expireBatch(any(LocalDateTime.class), anyInt());
+        assertThat(meterRegistry.get("otp.expiration.expired").counter().count()).isEqualTo(242);
+        assertThat(meterRegistry.get("otp.expiration.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void skipsWhenAnotherInstanceHoldsTheLock() {
+        when(advisoryLockRepository.runWithLock(anyLong(), any())).thenReturn(false);
+
+        service.expireOtpCodes();
+
+        verify(otpCodeRepository, never()).expireBatch(any(LocalDateTime.class), anyInt());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.dao.OtpOutboxRepository;
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.DeliveryRoute;
+import com.example.otpservice.model.DeliveryStatus;
+import com.example.otpservice.model.OtpOutboxEntry;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtpOutboxServiceTest {
+    private OtpCodeRepository otpCodeRepository;
+    private OtpOutboxRepository outboxRepository;
+    private OtpDeliveryDispatcher dispatcher;
+    private SimpleMeterRegistry meterRegistry;
+    private OtpOutboxService service;
+    private final List<OtpDeliveryDispatcher.DeliveryListener> listeners = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        otpCodeRepository = mock(OtpCodeRepository.class);
+        outboxRepository = mock(OtpOutboxRepository.class);
+        dispatcher = mock(OtpDeliveryDispatcher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new OtpOutboxService(otpCodeRepository, outboxRepository, dispatcher,
+                mock(PlatformTransactionManager.class), meterRegistry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "storeMode", "jdbc");
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "leaseMs", 30_000L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "backoffInitialMs", 1_000L);
+        ReflectionTestUtils.setField(service, "backoffMaxMs", 4_000L);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        when(dispatcher.submit(any(), any(), any(), any())).thenAnswer(invocation -> {
+            listeners.add(invocation.getArgument(3));
+            return true;
+        });
+    }
+
+    @Test
+    void deliveredEntryIsDeleted() {
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(entry(1L, 1)));
+
+        service.poll();
+        listeners.get(0).delivered();
+
+        verify(outboxRepository).delete(1L);
+        assertThat(meterRegistry.get("otp.delivery.outbox.lag").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void drainsWhileBatchesAreFull() {
+        when(outboxRepository.claimBatch(any(), any(), anyInt()))
+                .thenReturn(List.of(entry(1L, 1), entry(2L, 1)))
+                .thenReturn(List.of(entry(3L, 1)));
+
+        service.poll();
+
+        verify(outboxRepository, times(2)).claimBatch(any(), any(), anyInt());
+        verify(dispatcher, times(3)).submit(any(), any(), any(), any());
+    }
+
+    @Test
+    void failedEntryIsRetriedWithBackoff() {
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(entry(1L, 2)));
+        LocalDateTime before = LocalDateTime.now();
+
+        service.poll();
+        listeners.get(0).failed();
+
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).reschedule(eq(1L), nextAttempt.capture(), anyString());
+        // Second attempt: between half and all of 2 s
+        assertThat(nextAttempt.getValue()).isAfterOrEqualTo(before.plusSeconds(1)).isBefore(before.plusSeconds(3));
+        assertThat(meterRegistry.get("otp.delivery.outbox.retried").counter().count()).isEqualTo(1);
+        verify(outboxRepository, never()).deadLetter(any(), any());
+    }
+
+    @Test
+    void rejectedEntryIsRetriedAndStopsTheRound() {
+        when(dispatcher.submit(any(), any(), any(), any())).thenReturn(false);
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(entry(1L, 1), entry(2L, 1)));
+
+        service.poll();
+
+        verify(outboxRepository, times(1)).claimBatch(any(), any(), anyInt());
+        verify(outboxRepository, times(2)).reschedule(any(), any(), anyString());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        OtpOutboxEntry entry = entry(1L, 3);
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(entry));
+
+        service.poll();
+        listeners.get(0).failed();
+
+        verify(outboxRepository).deadLetter(eq(1L), anyString());
+        verify(otpCodeRepository).updateStatus(101L, entry.getCreatedAt(), OtpStatus.EXPIRED);
+        verify(otpCodeRepository).updateDeliveryStatus(101L, entry.getCreatedAt(), DeliveryStatus.FAILED);
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+        assertThat(meterRegistry.get("otp.delivery.outbox.dead-lettered").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredEntryIsNotDelivered() {
+        OtpOutboxEntry expired = entry(1L, 1);
+        expired.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(expired));
+
+        service.poll();
+
+        verify(dispatcher, never()).submit(any(), any(), any(), any());
+        verify(outboxRepository).deadLetter(eq(1L), anyString());
+    }
+
+    @Test
+    void backoffIsCapped() {
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            assertThat(service.backoffMs(attempt)).isBetween(500L, 4_000L);
+        }
+    }
+
+    @Test
+    void disabledWithInMemoryStore() {
+        ReflectionTestUtils.setField(service, "storeMode", "memory");
+        ReflectionTestUtils.invokeMethod(service, "init");
+
+        service.poll();
+
+        assertThat(service.isEnabled()).isFalse();
+        verify(outboxRepository, never()).claimBatch(any(), any(), anyInt());
+    }
+
+    private static OtpOutboxEntry entry(Long id, int attempts) {
+        OtpOutboxEntry entry = new OtpOutboxEntry();
+        entry.setId(id);
+        entry.setOtpCodeId(100L + id);
+        entry.setRecipient(new OtpRecipient(7L, "alice@example.com", null));
+        entry.setCode("123456");
+        entry.setRoute(DeliveryRoute.of(DeliveryChannel.EMAIL));
+        entry.setAttempts(attempts);
+        entry.setCreatedAt(LocalDateTime.now());
+        entry.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        return entry;
+    }
+}
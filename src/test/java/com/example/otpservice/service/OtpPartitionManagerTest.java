@@ -0,0 +1,61 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.AdvisoryLockRepositoryImpl;
+import com.example.otpservice.dao.OtpPartitionRepositoryImpl;
+import com.example.otpservice.support.PostgresTestSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpPartitionManagerTest extends PostgresTestSupport {
+    // Far from the real date so that partitions created by other tests do not interfere
+    private static final LocalDate TODAY = LocalDate.of(2030, 6, 15);
+
+    private OtpPartitionRepositoryImpl partitionRepository;
+    private OtpPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        partitionRepository = new OtpPartitionRepositoryImpl(jdbcTemplate, transactionManager);
+        manager = new OtpPartitionManager(partitionRepository, new AdvisoryLockRepositoryImpl(jdbcTemplate));
+        ReflectionTestUtils.setField(manager, "precreateDays", 2);
+        ReflectionTestUtils.setField(manager, "retentionDays", 3);
+        partitionRepository.findPartitionDays().forEach(partitionRepository::dropPartition);
+    }
+
+    @Test
+    void createsUpcomingPartitionsAndMovesRowsOutOfDefault() {
+        long userId = createUser("dave");
+        insertCode(userId, "early", TODAY.plusDays(1));
+
+        manager.maintainPartitions(TODAY);
+
+        assertThat(partitionRepository.findPartitionDays()).containsExactly(TODAY, TODAY.plusDays(1), TODAY.plusDays(2));
+        assertThat(jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM otp_codes WHERE operation_id = 'early'", String.class))
+                .isEqualTo("otp_codes_p20300616");
+    }
+
+    @Test
+    void dropsPartitionsOlderThanRetention() {
+        long userId = createUser("erin");
+        manager.maintainPartitions(TODAY.minusDays(5));
+        insertCode(userId, "old", TODAY.minusDays(5));
+        insertCode(userId, "kept", TODAY.minusDays(3));
+
+        manager.maintainPartitions(TODAY);
+
+        assertThat(partitionRepository.findPartitionDays()).first().isEqualTo(TODAY.minusDays(3));
+        assertThat(jdbcTemplate.queryForList("SELECT operation_id FROM otp_codes", String.class)).containsExactly("kept");
+    }
+
+    private static void insertCode(long userId, String operationId, LocalDate day) {
+        Timestamp createdAt = Timestamp.valueOf(day.atTime(12, 0));
+        jdbcTemplate.update("INSERT INTO otp_codes (user_id, code_hash, operation_id, status, created_at, expires_at) VALUES (?, sha256('123456'), ?, 'USED', ?, ?)",
+                userId, operationId, createdAt, createdAt);
+    }
+}
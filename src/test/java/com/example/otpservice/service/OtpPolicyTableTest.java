@@ -0,0 +1,46 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.model.DeliveryChannel;
+import com.example.otpservice.model.OtpConfig;
+import com.example.otpservice.model.OtpPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpPolicyTableTest {
+    private final OtpPolicy payment = new OtpPolicy(1L, "payment-", 8, 120, null, 3, DeliveryChannel.SMS);
+    private final OtpPolicy largePayment = new OtpPolicy(2L, "payment-large-", 10, 60, "0123456789ABCDEF", 1, DeliveryChannel.TELEGRAM);
+    private final OtpPolicy login = new OtpPolicy(3L, "login", 4, 600, null, null, null);
+    private final OtpPolicyTable table = OtpPolicyTable.of(new OtpConfig(6, 300, 5), List.of(payment, largePayment, login));
+
+    @Test
+    void longestMatchingPrefixWins() {
+        assertThat(table.resolve("payment-42")).isSameAs(payment);
+        assertThat(table.resolve("payment-large-42")).isSameAs(largePayment);
+        assertThat(table.resolve("payment-larg")).isSameAs(payment);
+        assertThat(table.resolve("login")).isSameAs(login);
+        assertThat(table.resolve("login-7")).isSameAs(login);
+    }
+
+    @Test
+    void fallsBackToGlobalConfig() {
+        for (String operationId : List.of("", "pay", "transfer-1", "Payment-42", "logi")) {
+            OtpPolicy policy = table.resolve(operationId);
+            assertThat(policy.getCodeLength()).as(operationId).isEqualTo(6);
+            assertThat(policy.getTtlSeconds()).as(operationId).isEqualTo(300);
+            assertThat(policy.getAlphabet()).as(operationId).isNull();
+            assertThat(policy.getDeliveryChannel()).as(operationId).isNull();
+        }
+    }
+
+    @Test
+    void withConfigKeepsPolicies() {
+        OtpPolicyTable updated = table.withConfig(new OtpConfig(4, 60, 6));
+
+        assertThat(updated.getVersion()).isEqualTo(6);
+        assertThat(updated.resolve("transfer-1").getCodeLength()).isEqualTo(4);
+        assertThat(updated.resolve("payment-42")).isSameAs(payment);
+    }
+}
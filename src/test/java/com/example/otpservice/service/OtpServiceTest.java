@@ -0,0 +1,150 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.OtpCodeRepository;
+import com.example.otpservice.model.OtpPolicy;
+import com.example.otpservice.model.OtpRecipient;
+import com.example.otpservice.model.OtpStatus;
+import com.example.otpservice.support.OtpCodeHasherSupport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtpServiceTest {
+    private OtpCodeRepository otpCodeRepository;
+    private OtpConfigService otpConfigService;
+    private OtpAttemptTracker otpAttemptTracker;
+    private OtpService otpService;
+
+    @BeforeEach
+    void setUp() {
+        otpCodeRepository = mock(OtpCodeRepository.class);
+        otpConfigService = mock(OtpConfigService.class);
+        OtpCodeGenerator otpCodeGenerator = mock(OtpCodeGenerator.class);
+        when(otpCodeGenerator.generate(anyInt(), anyString())).thenReturn("123456");
+        when(otpConfigService.resolvePolicy(anyString())).thenReturn(new OtpPolicy(null, "", 6, 300, "0123456789", 3, null));
+
+        otpAttemptTracker = new OtpAttemptTracker(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otpAttemptTracker, "trackedCodes", 100L);
+        otpAttemptTracker.init();
+        otpService = new OtpService(otpCodeRepository, mock(OtpDeliveryDispatcher.class), mock(UserService.class),
+                otpCodeGenerator, otpConfigService, mock(DeliveryRoutingService.class), mock(OtpOutboxService.class),
+                otpAttemptTracker, OtpCodeHasherSupport.create());
+        ReflectionTestUtils.setField(otpService, "defaultMaxAttempts", 5);
+    }
+
+    @Test
+    void wrongGuessesForLocalCodeDoNotQueryTheDatabase() {
+        otpService.generateOtp(new OtpRecipient(7L, "alice@example.com", null), "op");
+
+        assertThat(otpService.validateOtp(7L, "op", "000000")).isFalse();
+        assertThat(otpService.validateOtp(7L, "op", "111111")).isFalse();
+        when(otpCodeRepository.consumeActiveCode(eq(7L), eq("op"), eq("123456"), any())).thenReturn(Optional.of(OtpStatus.USED));
+        assertThat(otpService.validateOtp(7L, "op", "123456")).isTrue();
+
+        verify(otpCodeRepository, times(1)).consumeActiveCode(any(), any(), any(), any());
+        verify(otpCodeRepository, never()).expireActiveCode(any(), any());
+    }
+
+    @Test
+    void reachingMaxAttemptsBurnsTheCodeOnce() {
+        otpService.generateOtp(new OtpRecipient(7L, "alice@example.com", null), "op");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(otpService.validateOtp(7L, "op", "00000" + i)).isFalse();
+        }
+        // Even the right code is refused once the limit is reached
+        assertThat(otpService.validateOtp(7L, "op", "123456")).isFalse();
+
+        verify(otpCodeRepository, times(1)).expireActiveCode(7L, "op");
+        verify(otpCodeRepository, never()).consumeActiveCode(any(), any(), any(), any());
+    }
+
+    @Test
+    void attemptsAgainstCodeFromAnotherInstanceAreCountedToo() {
+        when(otpCodeRepository.existsByUserIdAndOperationId(8L, "op")).thenReturn(true);
+        when(otpCodeRepository.consumeActiveCode(any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(otpService.validateOtp(8L, "op", "00000" + i)).isFalse();
+        }
+
+        verify(otpCodeRepository, times(3)).consumeActiveCode(eq(8L), eq("op"), anyString(), any());
+        verify(otpCodeRepository, times(1)).expireActiveCode(8L, "op");
+        verify(otpCodeRepository, times(1)).existsByUserIdAndOperationId(8L, "op");
+    }
+
+    @Test
+    void guessesForOperationsWithoutCodeAreNotTracked() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(otpService.validateOtp(8L, "made-up-" + i, "000000")).isFalse();
+        }
+
+        assertThat(otpAttemptTracker.find(8L, "made-up-0")).isNull();
+        verify(otpCodeRepository, never()).consumeActiveCode(any(), any(), any(), any());
+        verify(otpCodeRepository, never()).expireActiveCode(any(), any());
+    }
+
+    @Test
+    void newCodeResetsAttempts() {
+        otpService.generateOtp(new OtpRecipient(7L, "alice@example.com", null), "op");
+        for (int i = 0; i < 3; i++) {
+            otpService.validateOtp(7L, "op", "00000" + i);
+        }
+
+        otpService.generateOtp(new OtpRecipient(7L, "alice@example.com", null), "op");
+        when(otpCodeRepository.consumeActiveCode(eq(7L), eq("op"), eq("123456"), any())).thenReturn(Optional.of(OtpStatus.USED));
+
+        assertThat(otpService.validateOtp(7L, "op", "123456")).isTrue();
+    }
+
+    @Test
+    void parallelGuessesCannotExceedMaxAttempts() throws Exception {
+        when(otpCodeRepository.existsByUserIdAndOperationId(9L, "op")).thenReturn(true);
+        when(otpCodeRepository.consumeActiveCode(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return Optional.empty();
+        });
+        int guesses = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(guesses);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < guesses; i++) {
+                String guess = String.format("%06d", i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return otpService.validateOtp(9L, "op", guess);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isFalse();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(otpCodeRepository, times(3)).consumeActiveCode(eq(9L), eq("op"), anyString(), any());
+        verify(otpCodeRepository, times(1)).expireActiveCode(9L, "op");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTest {
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHasher passwordHasher;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        passwordHasher = new PasswordHasher(meterRegistry);
+        ReflectionTestUtils.setField(passwordHasher, "cost", 5);
+        ReflectionTestUtils.setField(passwordHasher, "concurrency", 1);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 1);
+        ReflectionTestUtils.setField(passwordHasher, "timeoutMs", 200L);
+        passwordHasher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void encodesWithConfiguredCost() {
+        String hash = passwordHasher.encode("secret");
+
+        assertThat(hash).startsWith("$2a$05$");
+        assertThat(passwordHasher.matches("secret", hash)).isTrue();
+        assertThat(passwordHasher.matches("wrong", hash)).isFalse();
+        assertThat(meterRegistry.get("security.password.hashing.duration").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void needsRehashOnlyForLowerCost() {
+        assertThat(passwordHasher.needsRehash(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+        assertThat(passwordHasher.needsRehash(new BCryptPasswordEncoder(5).encode("secret"))).isFalse();
+        assertThat(passwordHasher.needsRehash(new BCryptPasswordEncoder(6).encode("secret"))).isFalse();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        occupyThreadAndQueue();
+
+        assertThatThrownBy(() -> passwordHasher.encode("secret"))
+                .isInstanceOf(PasswordHashingRejectedException.class)
+                .hasMessageContaining("Too many");
+        assertThat(meterRegistry.get("security.password.hashing.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWhenWaitingTooLong() {
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(passwordHasher, "executor");
+        executor.submit(this::awaitRelease);
+
+        assertThatThrownBy(() -> passwordHasher.matches("secret", "$2a$05$abcdefghijklmnopqrstuu"))
+                .isInstanceOf(PasswordHashingRejectedException.class)
+                .hasMessageContaining("timed out");
+        assertThat(meterRegistry.get("security.password.hashing.rejected").counter().count()).isEqualTo(1);
+    }
+
+    private void occupyThreadAndQueue() {
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(passwordHasher, "executor");
+        executor.submit(this::awaitRelease);
+        executor.submit(this::awaitRelease);
+    }
+
+    private Void awaitRelease() throws InterruptedException {
+        release.await();
+        return null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.model.OtpConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SecureRandomOtpCodeGeneratorTest {
+    private final OtpConfigService otpConfigService = mock(OtpConfigService.class);
+    private SecureRandomOtpCodeGenerator generator;
+
+    @AfterEach
+    void tearDown() {
+        if (generator != null) {
+            generator.shutdown();
+        }
+    }
+
+    @Test
+    void generatesDigitsOfRequestedLength() {
+        generator = generator(SecureRandomOtpCodeGenerator.DIGITS, 0);
+
+        for (int length : new int[]{4, 6, 8, 20}) {
+            assertThat(generator.generate(length)).hasSize(length).matches("\\d+");
+        }
+    }
+
+    @Test
+    void usesConfiguredAlphabet() {
+        generator = generator("ABCDEFGHJKLMNPQRSTUVWXYZ23456789", 0);
+
+        assertThat(generator.generate(12)).matches("[A-HJ-NP-Z2-9]{12}");
+    }
+
+    @Test
+    void distributesCharactersUniformly() {
+        // 7 does not divide 256, so without rejection sampling the first 4 characters would be favoured
+        String alphabet = "abcdefg";
+        generator = generator(alphabet, 0);
+        int samples = 700_000;
+        int[] counts = new int[alphabet.length()];
+        for (char c : generator.generate(samples).toCharArray()) {
+            counts[alphabet.indexOf(c)]++;
+        }
+
+        double expected = (double) samples / alphabet.length();
+        double chiSquare = 0;
+        for (int count : counts) {
+            chiSquare += (count - expected) * (count - expected) / expected;
+        }
+        // 6 degrees of freedom: exceeded with probability below 0.001
+        assertThat(chiSquare).isLessThan(22.46);
+    }
+
+    @Test
+    void servesDefaultLengthFromPrefetchBuffer() throws InterruptedException {
+        generator = generator(SecureRandomOtpCodeGenerator.DIGITS, 32);
+        Queue<String> prefetched = prefetched();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (prefetched.size() < 32 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(prefetched).hasSize(32);
+
+        String head = prefetched.peek();
+        assertThat(generator.generate(6)).isEqualTo(head);
+    }
+
+    @Test
+    void discardsPrefetchedCodesOfAnotherLength() throws InterruptedException {
+        generator = generator(SecureRandomOtpCodeGenerator.DIGITS, 32);
+        Queue<String> prefetched = prefetched();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (prefetched.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        String head = prefetched.peek();
+        when(otpConfigService.getConfig()).thenReturn(new OtpConfig(8, 300, 2));
+        String code = generator.generate(8);
+
+        assertThat(code).hasSize(8).isNotEqualTo(head);
+        assertThat(prefetched).doesNotContain(head);
+    }
+
+    @Test
+    void generatesPolicyCodesDirectly() throws InterruptedException {
+        generator = generator(SecureRandomOtpCodeGenerator.DIGITS, 32);
+        Queue<String> prefetched = prefetched();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (prefetched.size() < 32 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(generator.generate(8)).hasSize(8).matches("\\d+");
+        assertThat(generator.generate(6, "ABCDEF")).matches("[A-F]{6}");
+        assertThat(prefetched).hasSize(32);
+        String head = prefetched.peek();
+        assertThat(generator.generate(6, SecureRandomOtpCodeGenerator.DIGITS)).isEqualTo(head);
+    }
+
+    @Test
+    void virtualThreadsShareStripedGenerators() throws Exception {
+        when(otpConfigService.getConfig()).thenReturn(new OtpConfig(6, 300, 1));
+        generator = new SecureRandomOtpCodeGenerator(otpConfigService);
+        ReflectionTestUtils.setField(generator, "alphabetValue", SecureRandomOtpCodeGenerator.DIGITS);
+        ReflectionTestUtils.setField(generator, "virtualThreads", true);
+        generator.init();
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                futures.add(executor.submit(() -> codes.add(generator.generate(20))));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        // Threads of a stripe draw from one DRBG in turn, so none of them repeats another's bytes
+        assertThat(codes).hasSize(1_000).allMatch(code -> code.matches("\\d{20}"));
+        assertThat((Object[]) ReflectionTestUtils.getField(generator, "stripes"))
+                .hasSize(Runtime.getRuntime().availableProcessors() * SecureRandomOtpCodeGenerator.STRIPES_PER_CPU);
+    }
+
+    @Test
+    void rejectsInvalidPolicyAlphabet() {
+        generator = generator(SecureRandomOtpCodeGenerator.DIGITS, 0);
+
+        assertThatThrownBy(() -> generator.generate(6, "AA")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsAlphabetWithRepeatedCharacters() {
+        SecureRandomOtpCodeGenerator invalid = new SecureRandomOtpCodeGenerator(mock(OtpConfigService.class));
+        ReflectionTestUtils.setField(invalid, "alphabetValue", "0120");
+
+        assertThatThrownBy(invalid::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<String> prefetched() {
+        return (Queue<String>) ReflectionTestUtils.getField(generator, "prefetched");
+    }
+
+    private SecureRandomOtpCodeGenerator generator(String alphabet, int prefetchSize) {
+        when(otpConfigService.getConfig()).thenReturn(new OtpConfig(6, 300, 1));
+        SecureRandomOtpCodeGenerator generator = new SecureRandomOtpCodeGenerator(otpConfigService);
+        ReflectionTestUtils.setField(generator, "alphabetValue", alphabet);
+        ReflectionTestUtils.setField(generator, "prefetchSize", prefetchSize);
+        generator.init();
+        return generator;
+    }
+}
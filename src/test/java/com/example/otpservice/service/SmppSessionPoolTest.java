@@ -0,0 +1,137 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.support.SmppSimulatorStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smpp.Session;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmppSessionPoolTest {
+    private static final int MESSAGES = 50;
+
+    private SmppSimulatorStub smsc;
+    private SmppSessionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smsc = new SmppSimulatorStub();
+        smsc.setBindDelayMs(20);
+        smsc.setSubmitDelayMs(5);
+        pool = new SmppSessionPool(settings());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        smsc.close();
+    }
+
+    @Test
+    void pooledSessionsBindOnceAndCorrelateResponses() {
+        List<CompletableFuture<SubmitSMResp>> futures = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            futures.add(pool.submit(submitSM(i)));
+        }
+
+        List<String> messageIds = futures.stream().map(CompletableFuture::join).map(SubmitSMResp::getMessageId).toList();
+
+        assertThat(messageIds).doesNotHaveDuplicates().hasSize(MESSAGES);
+        assertThat(smsc.getSubmitCount()).isEqualTo(MESSAGES);
+        assertThat(smsc.getBindCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rebindsAfterConnectionLoss() {
+        pool.submit(submitSM(1)).join();
+        pool.submit(submitSM(2)).join();
+        smsc.dropConnections();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        SubmitSMResp response = null;
+        while (response == null && System.currentTimeMillis() < deadline) {
+            try {
+                response = pool.submit(submitSM(3)).join();
+            } catch (RuntimeException e) {
+                // the session notices the dropped connection and is rebound on the next attempt
+            }
+        }
+
+        assertThat(response).isNotNull();
+        assertThat(smsc.getBindCount()).isGreaterThan(2);
+    }
+
+    @Test
+    void pooledSubmitIsFasterThanBindPerMessage() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            sendWithNewSession(submitSM(i));
+        }
+        long perMessageBindNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<CompletableFuture<SubmitSMResp>> futures = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            futures.add(pool.submit(submitSM(i)));
+        }
+        futures.forEach(CompletableFuture::join);
+        long pooledNanos = System.nanoTime() - start;
+
+        System.out.printf("SMPP throughput: bind per message %.0f msg/s, pooled %.0f msg/s%n",
+                MESSAGES * 1e9 / perMessageBindNanos, MESSAGES * 1e9 / pooledNanos);
+        assertThat(pooledNanos).isLessThan(perMessageBindNanos);
+    }
+
+    /**
+     * The way SmsService used to send: connect, bind, submit, unbind and close for every message.
+     */
+    private void sendWithNewSession(SubmitSM submitSM) throws Exception {
+        Session session = new Session(new TCPIPConnection("localhost", smsc.getPort()));
+        BindTransmitter bind = new BindTransmitter();
+        bind.setSystemId("test");
+        bind.setPassword("secret");
+        bind.setSystemType("OTP");
+        bind.setInterfaceVersion((byte) 0x34);
+        bind.setAddressRange("OTPService");
+        session.bind(bind);
+        session.submit(submitSM);
+        session.unbind();
+        session.close();
+    }
+
+    private SmppSessionPool.Settings settings() {
+        SmppSessionPool.Settings settings = new SmppSessionPool.Settings();
+        settings.setHost("localhost");
+        settings.setPort(smsc.getPort());
+        settings.setSystemId("test");
+        settings.setPassword("secret");
+        settings.setSystemType("OTP");
+        settings.setSourceAddress("OTPService");
+        settings.setPoolSize(2);
+        settings.setWindowSize(10);
+        settings.setEnquireLinkIntervalMs(200);
+        settings.setResponseTimeoutMs(2000);
+        return settings;
+    }
+
+    private static SubmitSM submitSM(int n) {
+        try {
+            SubmitSM submitSM = new SubmitSM();
+            submitSM.setSourceAddr("OTPService");
+            submitSM.setDestAddr("7999000" + n);
+            submitSM.setShortMessage("OTP " + n);
+            return submitSM;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
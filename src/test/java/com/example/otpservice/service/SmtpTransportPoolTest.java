@@ -0,0 +1,119 @@
+package com.example.otpservice.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SmtpTransportPoolTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private Session session;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", ServerSetupTest.SMTP.getPort());
+        session = Session.getInstance(props);
+        pool = new SmtpTransportPool(session, "localhost", ServerSetupTest.SMTP.getPort(),
+                null, null, 2, 60000, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void reusesConnectionForConsecutiveMessages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            pool.send(message("user" + i + "@example.com", "12345" + i));
+        }
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(5);
+        assertThat(pool.getConnectionsOpened()).isEqualTo(1);
+        assertThat(pool.getConnectionsReused()).isEqualTo(4);
+    }
+
+    @Test
+    void sendsBatchOverOneConnection() throws Exception {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(message("batch" + i + "@example.com", "00000" + i));
+        }
+
+        pool.sendBatch(messages);
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(10);
+        assertThat(pool.getConnectionsOpened()).isEqualTo(1);
+        assertThat(pool.getMessagesSent()).isEqualTo(10);
+    }
+
+    @Test
+    void reconnectsWhenServerDropsConnection() throws Exception {
+        pool.send(message("first@example.com", "111111"));
+        greenMail.reset();
+
+        pool.send(message("second@example.com", "222222"));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(pool.getConnectionsOpened()).isEqualTo(2);
+    }
+
+    @Test
+    void connectionOpenedForRetryIsClosedWhenRetryRejectsRecipient() throws Exception {
+        Session mockSession = mock(Session.class);
+        Transport dropped = mock(Transport.class);
+        Transport rejecting = mock(Transport.class);
+        Transport next = mock(Transport.class);
+        when(mockSession.getTransport("smtp")).thenReturn(dropped, rejecting, next);
+        doThrow(new MessagingException("[EOF]")).when(dropped).sendMessage(any(), any());
+        doThrow(new SendFailedException("550 mailbox unavailable")).when(rejecting).sendMessage(any(), any());
+        when(rejecting.isConnected()).thenReturn(true);
+        SmtpTransportPool mockPool = new SmtpTransportPool(mockSession, "localhost", 25, null, null, 1, 60000, 100);
+
+        assertThatThrownBy(() -> mockPool.send(message("gone@example.com", "333333"))).isInstanceOf(SendFailedException.class);
+
+        verify(dropped).close();
+        verify(rejecting).close();
+        assertThat(mockPool.getIdleConnections()).isZero();
+        // The single slot is free again and the next message gets a new connection, not a closed one
+        mockPool.send(message("next@example.com", "444444"));
+        verify(next).sendMessage(any(), any());
+        mockPool.close();
+    }
+
+    private Message message(String to, String code) throws MessagingException {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("otp@example.com"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        message.setSubject("Your OTP Code");
+        message.setText("Your OTP code is: " + code);
+        return message;
+    }
+}
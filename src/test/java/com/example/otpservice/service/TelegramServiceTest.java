@@ -0,0 +1,62 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.support.TelegramApiStub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelegramServiceTest {
+    private TelegramApiStub telegramApi;
+    private TelegramService telegramService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        telegramApi = new TelegramApiStub();
+        telegramService = new TelegramService(new ObjectMapper());
+        ReflectionTestUtils.setField(telegramService, "botToken", "test-token");
+        ReflectionTestUtils.setField(telegramService, "chatId", "42");
+        ReflectionTestUtils.setField(telegramService, "apiUrl", telegramApi.getBaseUrl());
+        ReflectionTestUtils.setField(telegramService, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(telegramService, "requestTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(telegramService, "messagesPerSecond", 1000);
+        ReflectionTestUtils.setField(telegramService, "maxRetries", 3);
+        telegramService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        telegramApi.close();
+    }
+
+    @Test
+    void sendsConcurrentMessagesThroughSharedClient() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(telegramService.sendOtpAsync("user@example.com", "12345" + i));
+        }
+
+        futures.forEach(CompletableFuture::join);
+
+        assertThat(telegramApi.getRequestCount()).isEqualTo(20);
+    }
+
+    @Test
+    void waitsForRetryAfterInsteadOfFailing() {
+        telegramApi.rateLimitNext(1, 1);
+
+        long start = System.nanoTime();
+        telegramService.sendOtp("user@example.com", "123456");
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(telegramApi.getRequestCount()).isEqualTo(2);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(1000);
+    }
+}
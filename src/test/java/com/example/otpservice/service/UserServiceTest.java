@@ -0,0 +1,198 @@
+package com.example.otpservice.service;
+
+import com.example.otpservice.dao.UserRepository;
+import com.example.otpservice.exception.LoginBlockedException;
+import com.example.otpservice.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        PasswordHasher passwordHasher = new PasswordHasher(meterRegistry);
+        ReflectionTestUtils.setField(passwordHasher, "cost", 5);
+        ReflectionTestUtils.setField(passwordHasher, "concurrency", 1);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 4);
+        ReflectionTestUtils.setField(passwordHasher, "timeoutMs", 5000L);
+        passwordHasher.init();
+        LoginAttemptLimiter loginAttemptLimiter = new LoginAttemptLimiter(meterRegistry);
+        ReflectionTestUtils.setField(loginAttemptLimiter, "maxFailures", 3);
+        ReflectionTestUtils.setField(loginAttemptLimiter, "blockSeconds", 900L);
+        ReflectionTestUtils.setField(loginAttemptLimiter, "trackedEmails", 100L);
+        loginAttemptLimiter.init();
+        userService = new UserService(userRepository, passwordHasher, loginAttemptLimiter, meterRegistry);
+        ReflectionTestUtils.setField(userService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userService, "cacheTtlSeconds", 300L);
+        userService.init();
+
+        User user = new User(7L, "alice", "alice@example.com", "hash", User.Role.USER);
+        user.setPhoneNumber("79990000007");
+        when(userRepository.findByEmail("alice@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void generateRequestLookupsHitTheDatabaseOnlyOnce() {
+        for (int i = 0; i < 3; i++) {
+            // The lookups made by OtpController, OtpService and SmsService for one generate request
+            assertThat(userService.getUserIdByEmail("alice@example.com")).isEqualTo(7L);
+            assertThat(userService.getEmailByUserId(7L)).isEqualTo("alice@example.com");
+            assertThat(userService.getPhoneByEmail("alice@example.com")).isEqualTo("79990000007");
+        }
+
+        verify(userRepository, times(1)).findByEmail("alice@example.com");
+        verify(userRepository, never()).findById(anyLong());
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users.by-email").tag("result", "hit").functionCounter().count())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void deleteUserEvictsCachedIdentity() {
+        userService.getUserIdByEmail("alice@example.com");
+        when(userRepository.findByEmail("alice@example.com")).thenReturn(Optional.empty());
+
+        userService.deleteUser(7L);
+
+        verify(userRepository).deleteById(7L);
+        assertThatThrownBy(() -> userService.getUserIdByEmail("alice@example.com"))
+                .isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    void unknownEmailIsNotCached() {
+        User bob = new User(8L, "bob", "bob@example.com", "hash", User.Role.USER);
+        // Lookup before registration, the uniqueness check during registration, lookup after it
+        when(userRepository.findByEmail("bob@example.com"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(bob));
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userService.getUserIdByEmail("bob@example.com"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        userService.registerUser("bob", "bob@example.com", "secret", "79990000008", false);
+
+        assertThat(userService.getUserIdByEmail("bob@example.com")).isEqualTo(8L);
+        verify(userRepository).save(any(User.class));
+    }
+
+    @Test
+    void repeatedFailuresBlockLoginBeforeAnyLookup() {
+        User carol = new User(9L, "carol", "carol@example.com", new BCryptPasswordEncoder(5).encode("secret"), User.Role.USER);
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> userService.authenticateUser("carol@example.com", "wrong"))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        // Even the right password is refused while the email is blocked, and no hash is checked
+        assertThatThrownBy(() -> userService.authenticateUser("Carol@example.com", "secret"))
+                .isInstanceOf(LoginBlockedException.class)
+                .satisfies(e -> assertThat(((LoginBlockedException) e).getRetryAfterSeconds()).isPositive());
+
+        verify(userRepository, times(3)).findByEmail("carol@example.com");
+        assertThat(meterRegistry.get("security.login.blocked").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelFailuresCannotExceedMaxFailures() throws Exception {
+        User carol = new User(9L, "carol", "carol@example.com", new BCryptPasswordEncoder(5).encode("secret"), User.Role.USER);
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Class<?>>> outcomes = new ArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            for (int i = 0; i < 10; i++) {
+                outcomes.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        userService.authenticateUser("carol@example.com", "wrong");
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e.getClass();
+                    }
+                }));
+            }
+            start.countDown();
+            List<Class<?>> results = new ArrayList<>();
+            for (Future<Class<?>> outcome : outcomes) {
+                results.add(outcome.get(10, TimeUnit.SECONDS));
+            }
+
+            // Attempts are counted before the password is checked, so the burst gets only three BCrypt checks
+            assertThat(results).filteredOn(IllegalArgumentException.class::equals).hasSize(3);
+            assertThat(results).filteredOn(LoginBlockedException.class::equals).hasSize(7);
+            verify(userRepository, times(3)).findByEmail("carol@example.com");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void successfulLoginResetsFailures() {
+        User carol = new User(9L, "carol", "carol@example.com", new BCryptPasswordEncoder(5).encode("secret"), User.Role.USER);
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 2; i++) {
+                assertThatThrownBy(() -> userService.authenticateUser("carol@example.com", "wrong"))
+                        .isInstanceOf(IllegalArgumentException.class);
+            }
+            assertThat(userService.authenticateUser("carol@example.com", "secret").getId()).isEqualTo(9L);
+        }
+    }
+
+    @Test
+    void loginUpgradesHashMadeWithLowerCost() {
+        User carol = new User(9L, "carol", "carol@example.com", new BCryptPasswordEncoder(4).encode("secret"), User.Role.USER);
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+
+        User authenticated = userService.authenticateUser("carol@example.com", "secret");
+
+        verify(userRepository).updatePasswordHash(eq(9L), anyString());
+        assertThat(authenticated.getPasswordHash()).startsWith("$2a$05$");
+        assertThat(new BCryptPasswordEncoder().matches("secret", authenticated.getPasswordHash())).isTrue();
+    }
+
+    @Test
+    void loginKeepsHashMadeWithCurrentCost() {
+        User carol = new User(9L, "carol", "carol@example.com", new BCryptPasswordEncoder(5).encode("secret"), User.Role.USER);
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+
+        userService.authenticateUser("carol@example.com", "secret");
+
+        verify(userRepository, never()).updatePasswordHash(anyLong(), anyString());
+    }
+}
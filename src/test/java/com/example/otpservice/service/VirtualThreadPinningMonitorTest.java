@@ -0,0 +1,70 @@
+package com.example.otpservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+    private final Object monitor = new Object();
+    private SimpleMeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pinningMonitor = new VirtualThreadPinningMonitor(meterRegistry);
+        ReflectionTestUtils.setField(pinningMonitor, "virtualThreads", true);
+        ReflectionTestUtils.setField(pinningMonitor, "enabled", true);
+        ReflectionTestUtils.setField(pinningMonitor, "thresholdMs", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pinningMonitor.shutdown();
+    }
+
+    @Test
+    void recordsBlockingInsideSynchronized() throws Exception {
+        pinningMonitor.init();
+
+        Thread.ofVirtual().start(() -> {
+            synchronized (monitor) {
+                sleep(50);
+            }
+        }).join();
+
+        // JFR hands events to the stream about once a second
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pinnedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pinnedCount()).isPositive();
+    }
+
+    @Test
+    void idleWithPlatformThreads() {
+        ReflectionTestUtils.setField(pinningMonitor, "virtualThreads", false);
+
+        pinningMonitor.init();
+
+        assertThat(ReflectionTestUtils.getField(pinningMonitor, "recordingStream")).isNull();
+    }
+
+    private long pinnedCount() {
+        return meterRegistry.get("otp.threads.virtual.pinned").timer().count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.otpservice.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects request latencies and failures per endpoint during a load test and renders them as a
+ * table of throughput, error rate and latency percentiles.
+ */
+public class LoadStatistics {
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    /**
+     * Records one request.
+     *
+     * @param endpoint     name the request is reported under, e.g. {@code POST /otp/generate}
+     * @param elapsedNanos time until the response was complete
+     * @param success      whether the response was the expected one
+     */
+    public void record(String endpoint, long elapsedNanos, boolean success) {
+        endpoints.computeIfAbsent(endpoint, e -> new Endpoint()).record(elapsedNanos, success);
+    }
+
+    public long getRequests(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? 0 : stats.snapshot().length;
+    }
+
+    public long getErrors(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? 0 : stats.errors();
+    }
+
+    /**
+     * Formats the statistics of all endpoints.
+     *
+     * @param elapsed duration of the measured phase, used for throughput
+     */
+    public String report(Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        StringBuilder report = new StringBuilder(String.format("%-28s %9s %10s %8s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            long[] latencies = entry.getValue().snapshot();
+            Arrays.sort(latencies);
+            long errors = entry.getValue().errors();
+            report.append(String.format("%-28s %9d %10.1f %7.2f%% %9.1f %9.1f %9.1f%n",
+                    entry.getKey(),
+                    latencies.length,
+                    latencies.length / seconds,
+                    latencies.length == 0 ? 0.0 : 100.0 * errors / latencies.length,
+                    millis(percentile(latencies, 0.50)),
+                    millis(percentile(latencies, 0.99)),
+                    millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1])));
+        }
+        return report.toString();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class Endpoint {
+        private final List<Long> latencies = new ArrayList<>();
+        private long errors;
+
+        synchronized void record(long elapsedNanos, boolean success) {
+            latencies.add(elapsedNanos);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized long[] snapshot() {
+            return latencies.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.otpservice.support;
+
+import com.example.otpservice.security.OtpCodeHasher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Creates an {@link OtpCodeHasher} with a fixed test key.
+ */
+public final class OtpCodeHasherSupport {
+    public static final String KEY = "dGVzdC1vbmx5LW90cC1obWFjLWtleS0yNTYtYml0cyE=";
+
+    private OtpCodeHasherSupport() {
+    }
+
+    public static OtpCodeHasher create() {
+        OtpCodeHasher otpCodeHasher = new OtpCodeHasher();
+        ReflectionTestUtils.setField(otpCodeHasher, "key", KEY);
+        ReflectionTestUtils.invokeMethod(otpCodeHasher, "init");
+        return otpCodeHasher;
+    }
+}
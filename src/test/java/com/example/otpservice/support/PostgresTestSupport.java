@@ -0,0 +1,66 @@
+package com.example.otpservice.support;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Base class for repository tests against a real PostgreSQL.
+ *
+ * By default the database is started in a container shared by all subclasses. A locally started
+ * server can be used instead with {@code -Dtest.postgres.url=jdbc:postgresql://localhost:5432/postgres}
+ * (and optionally {@code test.postgres.username} / {@code test.postgres.password}); its public schema is
+ * recreated before the first test. The database is initialised with the application's schema.sql.
+ * Tests are skipped when neither is available.
+ */
+public abstract class PostgresTestSupport {
+    private static final String EXTERNAL_URL = System.getProperty("test.postgres.url");
+
+    private static PostgreSQLContainer<?> postgres;
+
+    protected static DriverManagerDataSource dataSource;
+    protected static JdbcTemplate jdbcTemplate;
+    protected static DataSourceTransactionManager transactionManager;
+
+    @BeforeAll
+    static void startPostgres() {
+        if (dataSource != null) {
+            return;
+        }
+        if (EXTERNAL_URL != null) {
+            dataSource = new DriverManagerDataSource(EXTERNAL_URL,
+                    System.getProperty("test.postgres.username", "postgres"), System.getProperty("test.postgres.password", ""));
+            new JdbcTemplate(dataSource).execute("DROP SCHEMA public CASCADE; CREATE SCHEMA public");
+        } else {
+            assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+            postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+            postgres.start();
+            dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    @BeforeEach
+    void cleanTables() {
+        jdbcTemplate.execute("TRUNCATE otp_codes, users RESTART IDENTITY CASCADE");
+    }
+
+    /**
+     * Inserts a user and returns its id.
+     */
+    protected static long createUser(String username) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO users (username, email, phone_number, password_hash, role) VALUES (?, ?, ?, ?, 'USER') RETURNING id",
+                Long.class, username, username + "@example.com", "79990000000", "hash");
+    }
+}
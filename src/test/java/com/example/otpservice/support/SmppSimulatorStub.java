@@ -0,0 +1,176 @@
+package com.example.otpservice.support;
+
+import org.smpp.Data;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.Response;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.SubmitSMResp;
+import org.smpp.util.ByteBuffer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMSC for tests. Accepts bind_transmitter, submit_sm, enquire_link and unbind,
+ * answering each request after a configurable delay. Submit responses are written asynchronously,
+ * so several submits can be outstanding on one connection. The last short message is kept per
+ * destination address.
+ */
+public class SmppSimulatorStub implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(4);
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final AtomicInteger bindCount = new AtomicInteger();
+    private final AtomicInteger submitCount = new AtomicInteger();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private final Map<String, String> lastMessages = new ConcurrentHashMap<>();
+    private volatile long bindDelayMs;
+    private volatile long submitDelayMs;
+
+    public SmppSimulatorStub() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "smpp-stub-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void setBindDelayMs(long bindDelayMs) {
+        this.bindDelayMs = bindDelayMs;
+    }
+
+    public void setSubmitDelayMs(long submitDelayMs) {
+        this.submitDelayMs = submitDelayMs;
+    }
+
+    public int getBindCount() {
+        return bindCount.get();
+    }
+
+    public int getSubmitCount() {
+        return submitCount.get();
+    }
+
+    /**
+     * Removes and returns the text of the last message submitted to the destination, or null if
+     * nothing arrived since the previous call.
+     */
+    public String takeLastMessage(String destination) {
+        return lastMessages.remove(destination);
+    }
+
+    /**
+     * Closes all client connections without unbinding, as a crashed or restarted SMSC would.
+     */
+    public void dropConnections() {
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        connections.clear();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread reader = new Thread(() -> readLoop(socket), "smpp-stub-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (!socket.isClosed()) {
+                int length = in.readInt();
+                byte[] data = new byte[length];
+                java.nio.ByteBuffer.wrap(data).putInt(length);
+                in.readFully(data, 4, length - 4);
+
+                PDU pdu = PDU.createPDU(new ByteBuffer(data));
+                if (!pdu.isRequest()) {
+                    continue;
+                }
+                Response response = ((Request) pdu).getResponse();
+                long delay = 0;
+                switch (pdu.getCommandId()) {
+                    case Data.BIND_TRANSMITTER -> {
+                        bindCount.incrementAndGet();
+                        delay = bindDelayMs;
+                    }
+                    case Data.SUBMIT_SM -> {
+                        submitCount.incrementAndGet();
+                        SubmitSM submit = (SubmitSM) pdu;
+                        lastMessages.put(submit.getDestAddr().getAddress(), submit.getShortMessage());
+                        ((SubmitSMResp) response).setMessageId(String.valueOf(messageIds.incrementAndGet()));
+                        delay = submitDelayMs;
+                    }
+                    default -> {
+                    }
+                }
+                boolean unbind = pdu.getCommandId() == Data.UNBIND;
+                byte[] bytes = response.getData().getBuffer();
+                if (delay > 0) {
+                    responder.schedule(() -> write(out, bytes), delay, TimeUnit.MILLISECONDS);
+                } else {
+                    write(out, bytes);
+                }
+                if (unbind) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // connection closed by the client or dropped by the test
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void write(OutputStream out, byte[] bytes) {
+        synchronized (out) {
+            try {
+                out.write(bytes);
+                out.flush();
+            } catch (IOException e) {
+                // the client has gone away
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+        responder.shutdownNow();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.otpservice.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the Telegram Bot API. Answers {@code /bot<token>/sendMessage} after a
+ * configurable delay and can be told to answer the next requests with 429 Too Many Requests.
+ * The text of every accepted message is kept until {@link #takeMessages()} is called.
+ */
+public class TelegramApiStub implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger rateLimitedResponses = new AtomicInteger();
+    private final Queue<String> messages = new ConcurrentLinkedQueue<>();
+    private volatile long responseDelayMs;
+    private volatile int retryAfterSeconds = 1;
+
+    public TelegramApiStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void setResponseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+    }
+
+    /**
+     * Makes the next {@code count} requests fail with 429 and the given retry_after.
+     */
+    public void rateLimitNext(int count, int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        rateLimitedResponses.set(count);
+    }
+
+    /**
+     * Returns the texts of the messages accepted since the previous call.
+     */
+    public List<String> takeMessages() {
+        List<String> taken = new ArrayList<>();
+        String message;
+        while ((message = messages.poll()) != null) {
+            taken.add(message);
+        }
+        return taken;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            if (responseDelayMs > 0) {
+                Thread.sleep(responseDelayMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (rateLimitedResponses.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            respond(exchange, 429, "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after "
+                    + retryAfterSeconds + "\",\"parameters\":{\"retry_after\":" + retryAfterSeconds + "}}");
+        } else if (exchange.getRequestURI().getPath().endsWith("/sendMessage")) {
+            String text = queryParameter(exchange, "text");
+            if (text != null) {
+                messages.add(text);
+            }
+            respond(exchange, 200, "{\"ok\":true,\"result\":{\"message_id\":" + requestCount.get() + "}}");
+        } else {
+            respond(exchange, 404, "{\"ok\":false,\"error_code\":404}");
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}